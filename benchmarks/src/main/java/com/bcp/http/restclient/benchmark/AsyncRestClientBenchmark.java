@@ -0,0 +1,101 @@
+package com.bcp.http.restclient.benchmark;
+
+import com.bcp.http.restclient.AsyncRestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the fixed thread pool and the virtual thread modes of {@link AsyncRestClient} against
+ * a local server answering after a fixed latency. Each invocation sends a batch of concurrent
+ * requests and waits for all of them. Virtual threads fall back to a fixed pool on JVMs that
+ * don't support them
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncRestClientBenchmark {
+
+  private static final int BATCH = 200;
+
+  @Param({"pool", "virtual"})
+  private String mode;
+
+  @Param({"0", "50"})
+  private int latency;
+
+  @Param({"1024"})
+  private int size;
+
+  private LocalServer server;
+  private AsyncRestClient client;
+  private RestRequest slowRequest;
+  private RestRequest payloadRequest;
+
+  @Setup
+  public void setUp() throws IOException {
+    server = new LocalServer();
+    client = "virtual".equals(mode) ?
+        AsyncRestClient.withVirtualThreads(server.baseUrl(), 1000) :
+        new AsyncRestClient(server.baseUrl(), 64);
+    slowRequest = RestRequest.builder("slow").parameter("latency", latency).build();
+    payloadRequest = RestRequest.builder("payload").parameter("size", size).build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    client.shutDown();
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public int executeBatch() {
+    List<CompletableFuture<RestResponse<Void>>> futures = new ArrayList<>(BATCH);
+    for (int i = 0; i < BATCH; i++) {
+      futures.add(client.executeAsync(slowRequest));
+    }
+    return countErrors(futures);
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public RestResponse<String> executeOne() {
+    return client.executeAsync(payloadRequest, ResponseHandlers.string()).join();
+  }
+
+  private static int countErrors(List<CompletableFuture<RestResponse<Void>>> futures) {
+    int errors = 0;
+    for (CompletableFuture<RestResponse<Void>> future : futures) {
+      if (!future.join().isSuccessful()) {
+        errors++;
+      }
+    }
+    return errors;
+  }
+}
@@ -0,0 +1,31 @@
+package com.bcp.http.restclient.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, measuring the allocation per operation with the gc profiler, and writes
+ * the results as json into jmh-result.json, or the file given by the result system property,
+ * so that the results of two releases can be compared. The usual JMH options, such as a
+ * benchmark name pattern or -p size=1024, can be given as arguments
+ */
+public final class BenchmarkMain {
+
+  private BenchmarkMain() { }
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class)
+        .resultFormat(ResultFormatType.JSON)
+        .result(System.getProperty("result", "jmh-result.json"))
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,101 @@
+package com.bcp.http.restclient.benchmark;
+
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.request.body.BodyProcessor;
+import com.bcp.http.restclient.request.body.BodyProcessors;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+import com.bcp.http.restclient.util.BytesContainer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the upload of request bodies with each of the {@link BodyProcessors}, for several
+ * sizes of body
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BodyProcessorBenchmark {
+
+  @Param({"1024", "65536", "1048576"})
+  private int size;
+
+  @Param({"string", "bytes", "file", "stream", "multipartFile", "multipartBytes", "multipartStream",
+      "gzip", "deflate"})
+  private String processor;
+
+  private LocalServer server;
+  private RestClient client;
+  private byte[] content;
+  private File file;
+
+  @Setup
+  public void setUp() throws IOException {
+    server = new LocalServer();
+    client = new RestClient(server.baseUrl());
+    content = LocalServer.payload(size);
+    file = File.createTempFile("benchmark", ".json");
+    Files.write(file.toPath(), content);
+  }
+
+  @TearDown
+  public void tearDown() {
+    client.close();
+    server.close();
+    file.delete();
+  }
+
+  @Benchmark
+  public RestResponse<String> upload() {
+    // processors are created for each request, as applications do
+    RestRequest request = RestRequest.builder("upload").POST().body(bodyProcessor()).build();
+    return client.execute(request, ResponseHandlers.string());
+  }
+
+  private BodyProcessor bodyProcessor() {
+    switch (processor) {
+      case "string":
+        return BodyProcessors.string(new String(content));
+      case "bytes":
+        return BodyProcessors.bytes(content);
+      case "file":
+        return BodyProcessors.file(file);
+      case "stream":
+        return BodyProcessors.stream(() -> new ByteArrayInputStream(content));
+      case "multipartFile":
+        return BodyProcessors.multipartFile(file);
+      case "multipartBytes":
+        return BodyProcessors.multipartBytes(new BytesContainer(content), "payload.json");
+      case "multipartStream":
+        return BodyProcessors.multipartStream(() -> new ByteArrayInputStream(content), "payload.json");
+      case "gzip":
+        return BodyProcessors.gzip(BodyProcessors.bytes(content));
+      case "deflate":
+        return BodyProcessors.deflate(BodyProcessors.bytes(content));
+      default:
+        throw new IllegalArgumentException("Unknown body processor " + processor);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package com.bcp.http.restclient.benchmark;
+
+import com.bcp.http.restclient.util.IOUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for the REST services, so that the benchmarks measure the client and not the
+ * network. It serves:
+ * <ul>
+ *   <li>/payload?size=n: a json object whose data field holds n characters</li>
+ *   <li>/payloads?size=n: a json array of objects whose data fields hold n characters in all</li>
+ *   <li>/count?size=n: the number n</li>
+ *   <li>/unit: the json string of a time unit</li>
+ *   <li>/upload: reads the request body and answers its length</li>
+ *   <li>/slow?latency=ms: answers "ok" after the given latency</li>
+ * </ul>
+ */
+final class LocalServer implements AutoCloseable {
+
+  static {
+    // without it, the delayed acks of small responses dominate the measures
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  /**
+   * Number of characters in the data field of each object of /payloads
+   */
+  static final int ITEM_SIZE = 64;
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final HttpServer server;
+
+  LocalServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+    server.setExecutor(executor);
+    server.createContext("/payload", exchange ->
+        respond(exchange, payload(intParameter(exchange.getRequestURI().getQuery(), "size"))));
+    server.createContext("/payloads", exchange ->
+        respond(exchange, payloads(intParameter(exchange.getRequestURI().getQuery(), "size"))));
+    server.createContext("/count", exchange ->
+        respond(exchange, Integer.toString(intParameter(exchange.getRequestURI().getQuery(), "size")).getBytes()));
+    server.createContext("/unit", exchange -> respond(exchange, "\"MILLISECONDS\"".getBytes()));
+    server.createContext("/upload", exchange -> {
+      long length = 0;
+      byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+      try (InputStream body = exchange.getRequestBody()) {
+        for (int read; (read = body.read(buffer)) >= 0; ) {
+          length += read;
+        }
+      }
+      respond(exchange, Long.toString(length).getBytes());
+    });
+    server.createContext("/slow", exchange -> {
+      try {
+        TimeUnit.MILLISECONDS.sleep(intParameter(exchange.getRequestURI().getQuery(), "latency"));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      respond(exchange, "ok".getBytes());
+    });
+    server.start();
+  }
+
+  /**
+   * Returns the base URL of the server
+   * @return the base URL
+   */
+  String baseUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  /**
+   * Returns a json object whose data field holds the given number of characters
+   * @param size the number of characters
+   * @return the json bytes
+   */
+  static byte[] payload(int size) {
+    char[] data = new char[size];
+    Arrays.fill(data, 'x');
+    return ("{\"data\":\"" + new String(data) + "\"}").getBytes();
+  }
+
+  /**
+   * Returns a json array of objects whose data fields hold the given number of characters in all,
+   * {@link #ITEM_SIZE} per object
+   * @param size the number of characters
+   * @return the json bytes
+   */
+  static byte[] payloads(int size) {
+    StringBuilder json = new StringBuilder(size + size / ITEM_SIZE * 12 + 16).append('[');
+    for (int remaining = size; remaining > 0 || json.length() == 1; remaining -= ITEM_SIZE) {
+      if (json.length() > 1) {
+        json.append(',');
+      }
+      char[] data = new char[Math.max(0, Math.min(remaining, ITEM_SIZE))];
+      Arrays.fill(data, 'x');
+      json.append("{\"data\":\"").append(data).append("\"}");
+    }
+    return json.append(']').toString().getBytes();
+  }
+
+  private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(body);
+    }
+  }
+
+  private static int intParameter(String query, String name) {
+    if (query != null) {
+      for (String parameter : query.split("&")) {
+        if (parameter.startsWith(name + "=")) {
+          return Integer.parseInt(parameter.substring(name.length() + 1));
+        }
+      }
+    }
+    return 0;
+  }
+}
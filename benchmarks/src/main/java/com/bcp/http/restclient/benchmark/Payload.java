@@ -0,0 +1,13 @@
+package com.bcp.http.restclient.benchmark;
+
+/**
+ * Object served by the /payload endpoint of the {@link LocalServer}
+ */
+public class Payload {
+
+  private String data;
+
+  public String getData() {
+    return data;
+  }
+}
@@ -0,0 +1,176 @@
+package com.bcp.http.restclient.benchmark;
+
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.response.handler.ResponseHandler;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+import com.bcp.http.restclient.util.BytesContainer;
+import com.bcp.http.restclient.util.ObjectListParser;
+import com.bcp.http.restclient.util.ObjectParser;
+import com.bcp.http.restclient.util.ObjectSetParser;
+import com.bcp.http.restclient.util.StreamObjectListParser;
+import com.bcp.http.restclient.util.StreamObjectParser;
+import com.bcp.http.restclient.util.StreamObjectSetParser;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link RestClient#execute(RestRequest, ResponseHandler)} with each of the
+ * {@link ResponseHandlers}, for several sizes of response. The list and set handlers read an
+ * array of objects holding the same number of characters in all, integer and enumeration read a
+ * short body whatever the size
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseHandlerBenchmark {
+
+  @Param({"0", "1024", "65536", "1048576"})
+  private int size;
+
+  @Param({"noResponse", "string", "integer", "enumeration", "bytes", "spilledBytes", "multipartBytes",
+      "multipartFile", "object", "objectList", "objectSetHandler", "streamedObject", "streamedObjectList",
+      "streamedObjectSet"})
+  private String handler;
+
+  private static final long SPILL_THRESHOLD = 16384;
+
+  private LocalServer server;
+  private RestClient client;
+  private RestRequest request;
+  private ResponseHandler<?> responseHandler;
+  private File file;
+
+  @Setup
+  public void setUp() throws IOException {
+    server = new LocalServer();
+    client = new RestClient(server.baseUrl());
+    request = RestRequest.builder(endpoint(handler)).parameter("size", size).build();
+    file = File.createTempFile("benchmark", ".json");
+    responseHandler = handler(handler, file);
+  }
+
+  @TearDown
+  public void tearDown() {
+    client.close();
+    server.close();
+    file.delete();
+  }
+
+  @Benchmark
+  public RestResponse<?> execute() {
+    RestResponse<?> response = client.execute(request, responseHandler);
+    if (response.getData() instanceof BytesContainer) {
+      // otherwise the spilled bodies pile up on disk until they are collected
+      ((BytesContainer) response.getData()).release();
+    }
+    return response;
+  }
+
+  private static String endpoint(String handler) {
+    switch (handler) {
+      case "integer":
+        return "count";
+      case "enumeration":
+        return "unit";
+      case "objectList":
+      case "objectSetHandler":
+      case "streamedObjectList":
+      case "streamedObjectSet":
+        return "payloads";
+      default:
+        return "payload";
+    }
+  }
+
+  private static ResponseHandler<?> handler(String name, File file) {
+    Gson gson = new Gson();
+    switch (name) {
+      case "noResponse":
+        return ResponseHandlers.noResponse();
+      case "string":
+        return ResponseHandlers.string();
+      case "integer":
+        return ResponseHandlers.integer();
+      case "enumeration":
+        return ResponseHandlers.enumeration(TimeUnit.class);
+      case "bytes":
+        return ResponseHandlers.bytes();
+      case "spilledBytes":
+        // the two largest sizes go to a temporary file
+        return ResponseHandlers.bytes(SPILL_THRESHOLD);
+      case "multipartBytes":
+        return ResponseHandlers.multipartBytes();
+      case "multipartFile":
+        return ResponseHandlers.multipartFile(file);
+      case "object":
+        return ResponseHandlers.object(Payload.class, new ObjectParser() {
+          @Override
+          public <T> T parse(Class<T> clazz, String data) {
+            return gson.fromJson(data, clazz);
+          }
+        });
+      case "objectList":
+        return ResponseHandlers.objectList(Payload.class, new ObjectListParser() {
+          @Override
+          public <T> List<T> parse(Class<T> clazz, String data) {
+            return gson.fromJson(data, TypeToken.getParameterized(List.class, clazz).getType());
+          }
+        });
+      case "objectSetHandler":
+        return ResponseHandlers.objectSetHandler(Payload.class, new ObjectSetParser() {
+          @Override
+          public <T> Set<T> parse(Class<T> clazz, String data) {
+            return gson.fromJson(data, TypeToken.getParameterized(Set.class, clazz).getType());
+          }
+        });
+      case "streamedObject":
+        return ResponseHandlers.streamedObject(Payload.class, new StreamObjectParser() {
+          @Override
+          public <T> T parse(Class<T> clazz, Reader reader) {
+            return gson.fromJson(reader, clazz);
+          }
+        });
+      case "streamedObjectList":
+        return ResponseHandlers.streamedObjectList(Payload.class, new StreamObjectListParser() {
+          @Override
+          public <T> List<T> parse(Class<T> clazz, Reader reader) {
+            return gson.fromJson(reader, TypeToken.getParameterized(List.class, clazz).getType());
+          }
+        });
+      case "streamedObjectSet":
+        return ResponseHandlers.streamedObjectSet(Payload.class, new StreamObjectSetParser() {
+          @Override
+          public <T> Set<T> parse(Class<T> clazz, Reader reader) {
+            return gson.fromJson(reader, TypeToken.getParameterized(Set.class, clazz).getType());
+          }
+        });
+      default:
+        throw new IllegalArgumentException("Unknown handler " + name);
+    }
+  }
+}
@@ -1,40 +1,121 @@
 package com.bcp.http.restclient;
 
+import com.bcp.http.restclient.auth.TokenProvider;
+import com.bcp.http.restclient.cache.CachedResponse;
+import com.bcp.http.restclient.cache.ResponseCache;
+import com.bcp.http.restclient.circuit.CircuitBreaker;
+import com.bcp.http.restclient.circuit.CircuitBreakers;
+import com.bcp.http.restclient.metrics.ExchangeListener;
+import com.bcp.http.restclient.metrics.ExchangeTimings;
+import com.bcp.http.restclient.ratelimit.RateLimits;
 import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.request.body.AbstractBodyProcessor;
+import com.bcp.http.restclient.request.body.BodyProcessor;
+import com.bcp.http.restclient.response.BodyLimits;
 import com.bcp.http.restclient.response.HttpHeaders;
 import com.bcp.http.restclient.response.RestResponse;
 import com.bcp.http.restclient.response.handler.ResponseHandler;
+import com.bcp.http.restclient.retry.RetryBudget;
+import com.bcp.http.restclient.retry.RetryPolicy;
+import com.bcp.http.restclient.transport.Transport;
+import com.bcp.http.restclient.transport.Transports;
+import com.bcp.http.restclient.util.Abortable;
+import com.bcp.http.restclient.util.BoundedInputStream;
+import com.bcp.http.restclient.util.BytesContainer;
+import com.bcp.http.restclient.util.ContentEncodings;
+import com.bcp.http.restclient.util.CountingInputStream;
+import com.bcp.http.restclient.util.HttpDates;
 import com.bcp.http.restclient.util.IOUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.bcp.http.restclient.request.HttpMethods.GET;
 
 /**
  * Abstract class for a rest client
  */
 public class AbstractRestClient {
 
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
   // should
   private final String baseUrl;
-  private String jwt = null;
+  private final URL base;
+  private final String basePath;
+  private final Transport transport;
+  private volatile TokenProvider tokenProvider = null;
+  private ResponseCache responseCache = null;
+  private volatile ConcurrentMap<CoalescingKey, CompletableFuture<RestResponse<?>>> inFlight = null;
+  private final LongAdder coalesced = new LongAdder();
+  private boolean compression = true;
+  private RetryPolicy retryPolicy = RetryPolicy.none();
+  private RetryBudget retryBudget = new RetryBudget(10, 0.1);
+  private volatile CircuitBreakers circuitBreakers = null;
+  private volatile RateLimits rateLimits = null;
+  private volatile ExchangeListener exchangeListener = null;
+  private BodyLimits bodyLimits = BodyLimits.defaults();
+  private final LongAdder wireBytesReceived = new LongAdder();
+  private final LongAdder bytesReceived = new LongAdder();
 
   /**
    *
    * @param baseUrl the base url of the rest api
    */
   protected AbstractRestClient(String baseUrl) {
+    this(baseUrl, Transports.urlConnection());
+  }
+
+  /**
+   *
+   * @param baseUrl the base url of the rest api
+   * @param transport the transport carrying the requests
+   */
+  protected AbstractRestClient(String baseUrl, Transport transport) {
+    if (transport == null) {
+      throw new IllegalArgumentException("transport cannot be null");
+    }
     this.baseUrl = baseUrl;
+    this.transport = transport;
+    this.base = parseBase(baseUrl);
+    this.basePath = base == null ? null :
+        base.getPath().endsWith("/") ? base.getPath().substring(0, base.getPath().length() - 1) : base.getPath();
+  }
+
+  /**
+   * Parses the base url once, so that the urls of the requests are built from its parts
+   * @param baseUrl the base url
+   * @return the parsed url, null if it can't be used as a prefix, requests then failing or
+   * concatenating strings
+   */
+  private static URL parseBase(String baseUrl) {
+    try {
+      URL url = new URL(baseUrl);
+      return url.getQuery() == null && url.getRef() == null && url.getUserInfo() == null ? url : null;
+    } catch (MalformedURLException e) {
+      return null;
+    }
   }
 
   private URL getUrl(String endpoint) throws MalformedURLException {
+    if (base != null) {
+      String file = endpoint.startsWith("/") ? basePath + endpoint : basePath + '/' + endpoint;
+      return new URL(base.getProtocol(), base.getHost(), base.getPort(), file);
+    }
     if (baseUrl.endsWith("/")) {
       return new URL(endpoint.startsWith("/") ? baseUrl + endpoint.substring(1) : baseUrl + endpoint);
     } else {
@@ -42,67 +123,777 @@ public class AbstractRestClient {
     }
   }
 
-  private HttpURLConnection prepareConnection(RestRequest request) throws IOException {
-    HttpURLConnection connection =
-        (HttpURLConnection) getUrl(request.getEndpoint()).openConnection();
-    connection.setRequestMethod(request.getMethod());
-    for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
-      connection.setRequestProperty(header.getKey(), header.getValue());
+  private HttpURLConnection prepareConnection(RestRequest request, String token) throws IOException {
+    HttpURLConnection connection = transport.openConnection(getUrl(request.getEndpoint()));
+    try {
+      connection.setRequestMethod(request.getMethod());
+      for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+        connection.setRequestProperty(header.getKey(), header.getValue());
+      }
+      if (compression && !hasHeader(request, "Accept-Encoding")) {
+        connection.setRequestProperty("Accept-Encoding", ContentEncodings.ACCEPTED_ENCODINGS);
+      }
+      if (token != null) {
+        connection.setRequestProperty("Authorization", "Bearer " + token);
+      }
+      if (request.getTimeout() != null) {
+        connection.setConnectTimeout(request.getTimeout());
+      }
+      return connection;
+    } catch (IOException | RuntimeException e) {
+      transport.release(connection, false);
+      throw e;
+    }
+  }
+
+  protected  <T> RestResponse<T> doExecute(RestRequest request, ResponseHandler<T> successResponseHandler) {
+    return doExecute(request, successResponseHandler, null, false);
+  }
+
+  /**
+   * Returns whether the request would share the exchange of identical requests in flight
+   * @param request the request
+   * @return whether the request can be coalesced
+   */
+  boolean isCoalescable(RestRequest request) {
+    return inFlight != null && GET.equals(request.getMethod()) && !request.hasOutput();
+  }
+
+  /**
+   * Executes the request, the cancellation allowing another thread to abort it. Cancellable
+   * requests are never coalesced, as they are duplicates sent on purpose. When permitReserved
+   * is true, the caller already waited for the rate limits of the first attempt
+   */
+  <T> RestResponse<T> doExecute(RestRequest request, ResponseHandler<T> successResponseHandler,
+                                Cancellation cancellation, boolean permitReserved) {
+    ConcurrentMap<CoalescingKey, CompletableFuture<RestResponse<?>>> calls = inFlight;
+    if (calls == null || cancellation != null || !isCoalescable(request)) {
+      return executeCached(request, successResponseHandler, cancellation, permitReserved);
     }
-    if (jwt != null) {
-      connection.setRequestProperty("Authorization", "Bearer " + jwt);
+    CoalescingKey key = new CoalescingKey(request, successResponseHandler, getJwt());
+    CompletableFuture<RestResponse<?>> call = new CompletableFuture<>();
+    CompletableFuture<RestResponse<?>> leader = calls.putIfAbsent(key, call);
+    if (leader != null) {
+      coalesced.increment();
+      try {
+        @SuppressWarnings("unchecked")
+        RestResponse<T> response = (RestResponse<T>) leader.join();
+        return response;
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw e;
+      }
     }
-    if (request.getTimeout() != null) {
-      connection.setConnectTimeout(request.getTimeout());
+    try {
+      RestResponse<T> response = executeCached(request, successResponseHandler, null, permitReserved);
+      call.complete(response);
+      return response;
+    } catch (RuntimeException | Error e) {
+      call.completeExceptionally(e);
+      throw e;
+    } finally {
+      calls.remove(key, call);
     }
-    return connection;
   }
 
-  protected  <T> RestResponse<T> doExecute(RestRequest request, ResponseHandler<T> successResponseHandler) {
-    HttpURLConnection connection;
+  private <T> RestResponse<T> executeCached(RestRequest request, ResponseHandler<T> successResponseHandler,
+                                            Cancellation cancellation, boolean permitReserved) {
+    ResponseCache cache = responseCache;
+    if (cache == null || !cache.isCacheable(request)) {
+      return exchangeWithRetries(request, successResponseHandler, cancellation, permitReserved);
+    }
+    CachedResponse cached = cache.lookup(request);
+    if (cached != null && cache.isFresh(request, cached)) {
+      return fromCache(cached, successResponseHandler);
+    }
+    boolean revalidating = cached != null && cached.hasValidators();
+    CachingHandler<T> handler = new CachingHandler<>(successResponseHandler, cache);
+    RestResponse<T> response = exchangeWithRetries(revalidating ? cache.revalidationRequest(request, cached) : request,
+        handler, cancellation, permitReserved);
+    if (revalidating && response.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+      return fromCache(cache.revalidated(request, cached, response), successResponseHandler);
+    }
+    if (!response.isErrorResponse()) {
+      cache.store(request, response.getResponseCode(), response.getHeaders(), handler.getCapturedBody(), cached);
+    }
+    return response;
+  }
+
+  private <T> RestResponse<T> exchangeWithRetries(RestRequest request, ResponseHandler<T> successResponseHandler,
+                                                  Cancellation cancellation, boolean permitReserved) {
+    RetryPolicy policy = request.getRetryPolicy() != null ? request.getRetryPolicy() : retryPolicy;
+    if (!policy.canRetry(request)) {
+      return guardedExchange(request, successResponseHandler, cancellation, !permitReserved);
+    }
+    RetryBudget budget = retryBudget;
+    for (int attempt = 1; ; attempt++) {
+      RestResponse<T> response = guardedExchange(request, successResponseHandler, cancellation,
+          attempt > 1 || !permitReserved);
+      if (response.getResponseCode() == RestResponse.CIRCUIT_OPEN
+          || response.getResponseCode() == RestResponse.RATE_LIMITED) {
+        return response;
+      }
+      if (!policy.isRetryable(response)) {
+        budget.onSuccess();
+        return response;
+      }
+      if (attempt >= policy.getMaxAttempts() || (cancellation != null && cancellation.isCancelled())) {
+        return response;
+      }
+      long delay = policy.delayBeforeRetry(attempt, response);
+      if (delay < 0 || !budget.tryRetry()) {
+        return response;
+      }
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return response;
+      }
+    }
+  }
+
+  private <T> RestResponse<T> guardedExchange(RestRequest request, ResponseHandler<T> successResponseHandler,
+                                              Cancellation cancellation, boolean acquirePermit) {
+    RateLimits limits = rateLimits;
+    if (limits != null && acquirePermit) {
+      long wait = limits.reserve(request);
+      if (wait < 0) {
+        return errorResponse(RestResponse.RATE_LIMITED, "Rate limit exceeded for " + request.getEndpoint());
+      }
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return errorResponse(RestResponse.REQUEST_NOT_SENT, "Interrupted");
+      }
+    }
+    RestResponse<T> response = breakerExchange(request, successResponseHandler, cancellation);
+    if (limits != null && response.getResponseCode() == HTTP_TOO_MANY_REQUESTS) {
+      limits.onThrottled(request, HttpDates.retryAfterMillis(response.getHeaders().getValue("Retry-After")));
+    }
+    return response;
+  }
+
+  private <T> RestResponse<T> breakerExchange(RestRequest request, ResponseHandler<T> successResponseHandler,
+                                              Cancellation cancellation) {
+    CircuitBreakers breakers = circuitBreakers;
+    if (breakers == null) {
+      return exchange(request, successResponseHandler, cancellation);
+    }
+    CircuitBreaker breaker = breakers.forRequest(request);
+    long permission = breaker.tryAcquire();
+    if (permission < 0) {
+      return errorResponse(RestResponse.CIRCUIT_OPEN, "Circuit open for " + breaker.getKey());
+    }
+    long start = System.nanoTime();
+    RestResponse<T> response = null;
+    try {
+      response = exchange(request, successResponseHandler, cancellation);
+      return response;
+    } finally {
+      // a handler throwing an unchecked exception counts as a failure, so that the permit is given back
+      if (response != null && cancellation != null && cancellation.isCancelled()) {
+        breaker.onIgnored(permission);
+      } else {
+        int code = response == null ? RestResponse.REQUEST_NOT_SENT : response.getResponseCode();
+        breaker.onResult(permission, code >= 0 && code < 500, System.nanoTime() - start);
+      }
+    }
+  }
+
+  private <T> RestResponse<T> exchange(RestRequest request, ResponseHandler<T> successResponseHandler,
+                                       Cancellation cancellation) {
+    TokenProvider provider = tokenProvider;
+    String token = provider == null ? null : provider.getToken();
+    RestResponse<T> response = exchange(request, successResponseHandler, cancellation, token);
+    if (token == null || response.getResponseCode() != HttpURLConnection.HTTP_UNAUTHORIZED
+        || (request.hasOutput() && !request.getOutputProcessor().isReplayable())
+        || (cancellation != null && cancellation.isCancelled())) {
+      return response;
+    }
+    // concurrent 401s share the refresh of the provider, the request is then sent once more
+    String refreshed = provider.refresh(token);
+    if (refreshed == null || refreshed.equals(token)) {
+      return response;
+    }
+    return exchange(request, successResponseHandler, cancellation, refreshed);
+  }
+
+  private <T> RestResponse<T> exchange(RestRequest request, ResponseHandler<T> successResponseHandler,
+                                       Cancellation cancellation, String token) {
+    ExchangeListener listener = exchangeListener;
+    if (listener == null) {
+      return exchange(request, successResponseHandler, cancellation, token, null);
+    }
+    Phases phases = new Phases();
+    RestResponse<T> response = null;
+    try {
+      response = exchange(request, successResponseHandler, cancellation, token, phases);
+      return response;
+    } finally {
+      listener.onExchange(phases.timings(request,
+          response == null ? RestResponse.REQUEST_NOT_SENT : response.getResponseCode()));
+    }
+  }
+
+  private <T> RestResponse<T> exchange(RestRequest request, ResponseHandler<T> successResponseHandler,
+                                       Cancellation cancellation, String token, Phases phases) {
+    HttpURLConnection connection = null;
+    boolean sent = false;
     try {
-      connection = prepareConnection(request);
+      connection = prepareConnection(request, token);
+      if (cancellation != null && !cancellation.attach(connection)) {
+        throw new IOException("Request cancelled");
+      }
+      if (phases != null) {
+        if (!request.hasOutput()) {
+          // otherwise the connection is opened while the body is sent
+          connection.connect();
+        }
+        phases.connected = System.nanoTime();
+      }
       if (request.hasOutput()) {
-        request.getOutputProcessor().prepareConnection(connection);
+        BodyProcessor processor = request.getOutputProcessor();
+        if (phases != null && processor instanceof AbstractBodyProcessor) {
+          ((AbstractBodyProcessor) processor).prepareConnection(connection, phases.bytesSent);
+        } else {
+          processor.prepareConnection(connection);
+        }
       }
+      if (phases != null) {
+        phases.sent = System.nanoTime();
+      }
+      sent = true;
     } catch (IOException e) {
-      return new ErrorResponse<>(e.getMessage().getBytes());
+      return new ErrorResponse<>(messageOf(e));
+    } finally {
+      if (!sent && connection != null) {
+        // also on runtime exceptions, e.g. an illegal header value or a failing body processor
+        if (cancellation != null) {
+          cancellation.detach();
+        }
+        transport.release(connection, false);
+      }
     }
 
-    Map<String, List<String>> responseHeaders = new HashMap<>();
+    HttpHeaders responseHeaders = HttpHeaders.empty();
     int responseCode = RestResponse.REQUEST_NOT_SENT;
+    boolean reusable = false;
     try {
       responseCode = connection.getResponseCode();
-      responseHeaders.putAll(connection.getHeaderFields());
+      if (phases != null) {
+        phases.headers = System.nanoTime();
+      }
       boolean isErrorCode = IOUtils.isErrorCode(responseCode);
-      try (InputStream is = isErrorCode ?
+      String contentEncoding = compression && !hasHeader(request, "Accept-Encoding") ?
+          connection.getContentEncoding() : null;
+      // the handlers see the decoded body, whose length is unknown
+      responseHeaders = ContentEncodings.isSupported(contentEncoding) ?
+          HttpHeaders.of(connection, "Content-Encoding", "Content-Length") :
+          HttpHeaders.of(connection);
+      try (InputStream is = responseStream(isErrorCode ?
           connection.getErrorStream() :
-          connection.getInputStream()) {
+          connection.getInputStream(), contentEncoding, phases, connection)) {
+        BodyLimits limits = request.getBodyLimits() != null ? request.getBodyLimits() : bodyLimits;
+        RestResponse<T> response;
         if (isErrorCode) {
-          return  new ErrorResponse<>(responseCode, new HttpHeaders(responseHeaders), IOUtils.toBytes(is));
+          response = new ErrorResponse<>(responseCode, responseHeaders,
+              is == null ? new BytesContainer(new byte[0]) : readErrorBody(is, limits));
         } else {
-          return new SuccessResponse<>(responseCode, new HttpHeaders(responseHeaders), successResponseHandler.convert(is));
+          InputStream body = is == null || limits.getMaxSize() == BodyLimits.UNLIMITED ? is :
+              new BoundedInputStream(is, limits.getMaxSize(), true);
+          if (successResponseHandler instanceof CachingHandler) {
+            body = ((CachingHandler<T>) successResponseHandler).capture(responseCode, responseHeaders, body);
+          }
+          response = new SuccessResponse<>(responseCode, responseHeaders, successResponseHandler.convert(body));
         }
+        reusable = !(is instanceof AbortableInputStream && ((AbortableInputStream) is).aborted);
+        return response;
       }
     } catch (IOException e) {
-      return new ErrorResponse<>(responseCode, new HttpHeaders(responseHeaders), e.getMessage().getBytes());
+      return new ErrorResponse<>(responseCode, responseHeaders, messageOf(e));
     } finally {
-      connection.disconnect();
+      if (cancellation != null) {
+        reusable &= cancellation.detach();
+      }
+      transport.release(connection, reusable);
+    }
+  }
+
+  private static BytesContainer readErrorBody(InputStream is, BodyLimits limits) throws IOException {
+    BoundedInputStream bounded = new BoundedInputStream(is, limits.getMaxErrorSize(), false);
+    BytesContainer body = IOUtils.toByteArray(bounded, limits.getMemoryThreshold(), limits.getSpillDirectory());
+    if (bounded.isTruncated() && is instanceof Abortable) {
+      // don't drain the rest of a huge error page
+      ((Abortable) is).abort();
+    }
+    return body;
+  }
+
+  private InputStream responseStream(InputStream raw, String contentEncoding, Phases phases,
+                                     HttpURLConnection connection) throws IOException {
+    if (raw == null) {
+      return null;
+    }
+    InputStream wire = new CountingInputStream(raw, wireBytesReceived);
+    if (phases != null) {
+      wire = new CountingInputStream(wire, phases.bytesReceived);
+    }
+    return new AbortableInputStream(
+        new CountingInputStream(ContentEncodings.decode(wire, contentEncoding), bytesReceived), connection);
+  }
+
+  private static boolean hasHeader(RestRequest request, String name) {
+    for (String header : request.getHeaders().keySet()) {
+      if (header.equalsIgnoreCase(name)) {
+        return true;
+      }
     }
+    return false;
+  }
+
+  private static <T> RestResponse<T> fromCache(CachedResponse cached, ResponseHandler<T> successResponseHandler) {
+    return fromBytes(cached.getResponseCode(), cached.getHeaders(), cached.getBody(), successResponseHandler);
+  }
+
+  private static <T> RestResponse<T> fromBytes(int responseCode, HttpHeaders headers, byte[] body,
+                                               ResponseHandler<T> successResponseHandler) {
+    try (InputStream is = new ByteArrayInputStream(body)) {
+      return new SuccessResponse<>(responseCode, headers, successResponseHandler.convert(is));
+    } catch (IOException e) {
+      return new ErrorResponse<>(responseCode, headers, messageOf(e));
+    }
+  }
+
+  private static byte[] messageOf(IOException e) {
+    return String.valueOf(e.getMessage()).getBytes();
+  }
+
+  /**
+   * Creates an error response for a request that didn't get a response from the server
+   * @param responseCode the response code, one of the negative codes of {@link RestResponse}
+   * @param message the error message
+   * @return the error response
+   */
+  protected static <T> RestResponse<T> errorResponse(int responseCode, String message) {
+    return new ErrorResponse<>(responseCode, HttpHeaders.empty(), String.valueOf(message).getBytes());
+  }
+
+  /**
+   * Returns the transport carrying the requests of this client
+   * @return the transport
+   */
+  public Transport getTransport() {
+    return transport;
+  }
+
+  /**
+   * Closes the transport of this client and the connections it keeps alive
+   */
+  public void close() {
+    transport.close();
+  }
+
+  /**
+   * Sets the cache serving the responses of the GET requests of this client, null to disable it
+   * @param responseCache the response cache
+   */
+  public void setResponseCache(ResponseCache responseCache) {
+    this.responseCache = responseCache;
+  }
+
+  public ResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  /**
+   * Enables or disables the coalescing of identical GET requests: while a GET is in flight, the
+   * same GET (same endpoint, headers and response handler instance) sent by another thread waits
+   * for its response instead of calling the server. The callers then share the same response
+   * object, so its data must not be modified
+   * @param enabled whether identical GET requests are coalesced
+   */
+  public void setRequestCoalescing(boolean enabled) {
+    this.inFlight = enabled ? new ConcurrentHashMap<CoalescingKey, CompletableFuture<RestResponse<?>>>() : null;
+  }
+
+  public boolean isRequestCoalescing() {
+    return inFlight != null;
+  }
+
+  /**
+   * Returns the number of requests that got the response of an identical request in flight
+   * @return the number of coalesced requests
+   */
+  public long getCoalescedRequestCount() {
+    return coalesced.sum();
+  }
+
+  /**
+   * Sets the retry policy of the requests that don't have their own, no retry by default
+   * @param retryPolicy the retry policy
+   */
+  public void setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy == null ? RetryPolicy.none() : retryPolicy;
+  }
+
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /**
+   * Sets the budget limiting the retries of all the requests of this client
+   * @param retryBudget the retry budget
+   */
+  public void setRetryBudget(RetryBudget retryBudget) {
+    if (retryBudget == null) {
+      throw new IllegalArgumentException("retryBudget cannot be null");
+    }
+    this.retryBudget = retryBudget;
+  }
+
+  public RetryBudget getRetryBudget() {
+    return retryBudget;
   }
 
+  /**
+   * Sets the circuit breakers guarding the requests of this client, null to disable them.
+   * Requests to an open circuit fail fast with a {@link RestResponse#CIRCUIT_OPEN} response;
+   * connection failures and 5xx responses count as failures
+   * @param circuitBreakers the circuit breakers
+   */
+  public void setCircuitBreakers(CircuitBreakers circuitBreakers) {
+    this.circuitBreakers = circuitBreakers;
+  }
+
+  public CircuitBreakers getCircuitBreakers() {
+    return circuitBreakers;
+  }
+
+  /**
+   * Sets the rate limits of the requests of this client, null to disable them. Requests wait
+   * for their permits, up to the max wait of the limits, then fail with a
+   * {@link RestResponse#RATE_LIMITED} response
+   * @param rateLimits the rate limits
+   */
+  public void setRateLimits(RateLimits rateLimits) {
+    this.rateLimits = rateLimits;
+  }
+
+  public RateLimits getRateLimits() {
+    return rateLimits;
+  }
+
+  /**
+   * Sets the listener notified of the timings of each exchange with the server, null to
+   * disable it. The timings aren't measured when there is no listener
+   * @param exchangeListener the listener, such as {@link com.bcp.http.restclient.metrics.ExchangeMetrics}
+   */
+  public void setExchangeListener(ExchangeListener exchangeListener) {
+    this.exchangeListener = exchangeListener;
+  }
+
+  public ExchangeListener getExchangeListener() {
+    return exchangeListener;
+  }
+
+  /**
+   * Sets the limits on the size of the response bodies of the requests that don't have their own
+   * @param bodyLimits the body limits, null for {@link BodyLimits#defaults()}
+   */
+  public void setBodyLimits(BodyLimits bodyLimits) {
+    this.bodyLimits = bodyLimits == null ? BodyLimits.defaults() : bodyLimits;
+  }
+
+  public BodyLimits getBodyLimits() {
+    return bodyLimits;
+  }
+
+  /**
+   * Enables or disables the negotiation of compressed responses, enabled by default. When enabled
+   * and the request doesn't set its own Accept-Encoding header, gzip and deflate responses are
+   * decoded before reaching the response handlers
+   * @param compression whether compressed responses are accepted
+   */
+  public void setCompression(boolean compression) {
+    this.compression = compression;
+  }
+
+  public boolean isCompression() {
+    return compression;
+  }
+
+  /**
+   * Returns the number of response body bytes received from the server, as sent on the wire
+   * @return the number of bytes received
+   */
+  public long getWireBytesReceived() {
+    return wireBytesReceived.sum();
+  }
+
+  /**
+   * Returns the number of response body bytes read by the response handlers, once decoded
+   * @return the number of decoded bytes
+   */
+  public long getDecodedBytesReceived() {
+    return bytesReceived.sum();
+  }
+
+  /**
+   * Sets a fixed token sent as bearer in the Authorization header of the requests, replacing the
+   * token provider
+   * @param jwt the token, null not to send one
+   */
   public void setJwt(String jwt) {
-    this.jwt = jwt;
+    this.tokenProvider = jwt == null ? null : new FixedToken(jwt);
   }
 
   public void removeJwt() {
     setJwt(null);
   }
 
+  /**
+   * Returns the token sent with the requests
+   * @return the token of the token provider, null if there is none
+   */
   public String getJwt() {
-    return jwt;
+    TokenProvider provider = tokenProvider;
+    return provider == null ? null : provider.getToken();
+  }
+
+  /**
+   * Sets the provider of the bearer tokens sent in the Authorization header of the requests,
+   * null not to send one. When the server answers 401, the provider is asked for a new token
+   * and the request is sent once more if it got one and the request body can be replayed
+   * @param tokenProvider the token provider, such as {@link com.bcp.http.restclient.auth.RefreshingTokenProvider}
+   */
+  public void setTokenProvider(TokenProvider tokenProvider) {
+    this.tokenProvider = tokenProvider;
+  }
+
+  public TokenProvider getTokenProvider() {
+    return tokenProvider;
+  }
+
+
+  /**
+   * Handler copying the body read by the handler of the caller, when the headers of the response
+   * allow the cache to store it, so that the responses that can't be stored are never buffered
+   */
+  private static final class CachingHandler<T> implements ResponseHandler<T> {
+
+    private final ResponseHandler<T> handler;
+    private final ResponseCache cache;
+    private CapturingInputStream capture;
+
+    private CachingHandler(ResponseHandler<T> handler, ResponseCache cache) {
+      this.handler = handler;
+      this.cache = cache;
+    }
+
+    private InputStream capture(int responseCode, HttpHeaders headers, InputStream is) {
+      capture = is != null && cache.isStorable(responseCode, headers) ?
+          new CapturingInputStream(is, cache.getMaxEntryBytes()) : null;
+      return capture != null ? capture : is;
+    }
+
+    @Override
+    public T convert(InputStream inputStream) throws IOException {
+      return handler.convert(inputStream);
+    }
+
+    /**
+     * Returns the body read by the handler, null if it wasn't read in full or is too big
+     */
+    private byte[] getCapturedBody() {
+      return capture == null ? null : capture.getCaptured();
+    }
+  }
+
+  /**
+   * Input stream copying the bytes read up to a limit
+   */
+  private static final class CapturingInputStream extends FilterInputStream implements Abortable {
+
+    private final long limit;
+    private byte[] captured = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+    private int size;
+    private boolean complete;
+
+    private CapturingInputStream(InputStream in, long limit) {
+      super(in);
+      this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b == -1) {
+        complete = true;
+      } else if (captured != null) {
+        append(new byte[] {(byte) b}, 0, 1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read == -1) {
+        complete = true;
+      } else if (read > 0 && captured != null) {
+        append(b, off, read);
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // the skipped bytes are missing from the copy
+      captured = null;
+      return super.skip(n);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void abort() {
+      captured = null;
+      if (in instanceof Abortable) {
+        ((Abortable) in).abort();
+      }
+    }
+
+    private void append(byte[] b, int off, int len) {
+      if (size + (long) len > limit) {
+        captured = null;
+        return;
+      }
+      if (size + len > captured.length) {
+        captured = Arrays.copyOf(captured, (int) Math.min(limit, Math.max(size + len, captured.length * 2L)));
+      }
+      System.arraycopy(b, off, captured, size, len);
+      size += len;
+    }
+
+    private byte[] getCaptured() {
+      return complete && captured != null ? Arrays.copyOf(captured, size) : null;
+    }
   }
 
+  private static final class FixedToken implements TokenProvider {
+
+    private final String token;
+
+    private FixedToken(String token) {
+      this.token = token;
+    }
+
+    @Override
+    public String getToken() {
+      return token;
+    }
+
+    @Override
+    public String refresh(String rejected) {
+      return null;
+    }
+  }
+
+  /**
+   * Timestamps and counters of an exchange, only allocated when there is a listener
+   */
+  private static final class Phases {
+
+    private final long start = System.nanoTime();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private long connected;
+    private long sent;
+    private long headers;
+
+    private ExchangeTimings timings(RestRequest request, int responseCode) {
+      return new ExchangeTimings(request.getMethod(), request.getEndpoint(), responseCode, start,
+          connected, sent, headers, System.nanoTime(),
+          request.hasOutput() && !(request.getOutputProcessor() instanceof AbstractBodyProcessor) ? -1 : bytesSent.sum(),
+          bytesReceived.sum());
+    }
+  }
+
+  /**
+   * Response stream disconnecting before it is closed when the handler aborts it, so that the
+   * rest of the body isn't drained
+   */
+  private static final class AbortableInputStream extends FilterInputStream implements Abortable {
+
+    private final HttpURLConnection connection;
+    private boolean aborted;
+
+    private AbortableInputStream(InputStream in, HttpURLConnection connection) {
+      super(in);
+      this.connection = connection;
+    }
+
+    @Override
+    public void abort() {
+      aborted = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (aborted) {
+        connection.disconnect();
+      }
+      try {
+        super.close();
+      } catch (IOException e) {
+        if (!aborted) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  private static final class CoalescingKey {
+
+    private final String endpoint;
+    private final Map<String, String> headers;
+    private final ResponseHandler<?> handler;
+    private final String jwt;
+    private final int hash;
+
+    CoalescingKey(RestRequest request, ResponseHandler<?> handler, String jwt) {
+      this.endpoint = request.getEndpoint();
+      this.headers = request.getHeaders();
+      this.handler = handler;
+      this.jwt = jwt;
+      this.hash = Objects.hash(endpoint, headers, System.identityHashCode(handler), jwt);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CoalescingKey)) {
+        return false;
+      }
+      CoalescingKey other = (CoalescingKey) o;
+      return handler == other.handler && endpoint.equals(other.endpoint)
+          && headers.equals(other.headers) && Objects.equals(jwt, other.jwt);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
 
   private static abstract class AbstractRestResponse<T> implements RestResponse<T> {
 
@@ -159,19 +950,28 @@ public class AbstractRestClient {
     public byte[] getRawErrorData() {
       return null;
     }
+
+    @Override
+    public BytesContainer getErrorBody() {
+      return null;
+    }
   }
 
   private static class ErrorResponse<T> extends AbstractRestResponse<T> {
 
-    private final byte[] bytes;
+    private final BytesContainer body;
 
     ErrorResponse(byte[] bytes) { //no response
-      this(REQUEST_NOT_SENT, new HttpHeaders(Collections.<String, List<String>>emptyMap()), bytes);
+      this(REQUEST_NOT_SENT, HttpHeaders.empty(), bytes);
     }
 
     ErrorResponse(int responseCode, HttpHeaders headers, byte[] bytes) {
+      this(responseCode, headers, bytes == null ? null : new BytesContainer(bytes));
+    }
+
+    ErrorResponse(int responseCode, HttpHeaders headers, BytesContainer body) {
       super(responseCode, headers);
-      this.bytes = bytes;
+      this.body = body;
     }
 
     @Override
@@ -191,10 +991,10 @@ public class AbstractRestClient {
 
     @Override
     public <ErrorT> ErrorT getErrorData(ResponseHandler<ErrorT> responseHandler) {
-      if (bytes == null) {
+      if (body == null) {
         return null;
       }
-      try (ByteArrayInputStream is = new ByteArrayInputStream(bytes)) {
+      try (InputStream is = body.openStream()) {
         return responseHandler.convert(is);
       } catch (IOException e) {
         return null;
@@ -203,7 +1003,12 @@ public class AbstractRestClient {
 
     @Override
     public byte[] getRawErrorData() {
-      return bytes;
+      return body == null ? null : body.getBytes();
+    }
+
+    @Override
+    public BytesContainer getErrorBody() {
+      return body;
     }
 
   }
@@ -1,12 +1,31 @@
 package com.bcp.http.restclient;
 
+import com.bcp.http.restclient.ratelimit.RateLimits;
+import com.bcp.http.restclient.request.HttpMethods;
 import com.bcp.http.restclient.request.RestRequest;
 import com.bcp.http.restclient.response.RestResponse;
 import com.bcp.http.restclient.response.handler.ResponseHandler;
 import com.bcp.http.restclient.response.handler.ResponseHandlers;
+import com.bcp.http.restclient.transport.Transport;
+import com.bcp.http.restclient.transport.Transports;
+import com.bcp.http.restclient.util.VirtualThreads;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Class that sends asynchronous REST requests
@@ -14,6 +33,8 @@ import java.util.concurrent.Executors;
 public class AsyncRestClient extends AbstractRestClient {
 
   private final ExecutorService executor;
+  private final Semaphore concurrencyLimit;
+  private volatile HedgingPolicy hedgingPolicy = null;
 
   public AsyncRestClient(String baseUrl) {
     this(baseUrl, 1);
@@ -34,8 +55,75 @@ public class AsyncRestClient extends AbstractRestClient {
    * @param executor the executor that will execute the requests
    */
   public AsyncRestClient(String baseUrl, ExecutorService executor) {
-    super(baseUrl);
+    this(baseUrl, executor, Transports.urlConnection());
+  }
+
+  /**
+   *
+   * @param baseUrl the base url of the rest api
+   * @param nbThreads the number of possible simultaneous requests
+   * @param transport the transport carrying the requests
+   */
+  public AsyncRestClient(String baseUrl, int nbThreads, Transport transport) {
+    this(baseUrl, Executors.newFixedThreadPool(nbThreads), transport);
+  }
+
+  /**
+   *
+   * @param baseUrl the base url of the rest api
+   * @param executor the executor that will execute the requests
+   * @param transport the transport carrying the requests
+   */
+  public AsyncRestClient(String baseUrl, ExecutorService executor, Transport transport) {
+    this(baseUrl, executor, transport, null);
+  }
+
+  private AsyncRestClient(String baseUrl, ExecutorService executor, Transport transport,
+                          Semaphore concurrencyLimit) {
+    super(baseUrl, transport);
     this.executor = executor;
+    this.concurrencyLimit = concurrencyLimit;
+  }
+
+  /**
+   * Creates a client running each request on its own virtual thread, the number of requests in
+   * flight being limited by a semaphore instead of a number of threads. On JVMs without virtual
+   * threads (before Java 21) the client falls back to a fixed pool of maxConcurrency threads
+   * @param baseUrl the base url of the rest api
+   * @param maxConcurrency the maximum number of simultaneous requests
+   * @return the client
+   */
+  public static AsyncRestClient withVirtualThreads(String baseUrl, int maxConcurrency) {
+    return withVirtualThreads(baseUrl, maxConcurrency, Transports.urlConnection());
+  }
+
+  /**
+   * Creates a client running each request on its own virtual thread, the number of requests in
+   * flight being limited by a semaphore instead of a number of threads. On JVMs without virtual
+   * threads (before Java 21) the client falls back to a fixed pool of maxConcurrency threads
+   * @param baseUrl the base url of the rest api
+   * @param maxConcurrency the maximum number of simultaneous requests
+   * @param transport the transport carrying the requests
+   * @return the client
+   */
+  public static AsyncRestClient withVirtualThreads(String baseUrl, int maxConcurrency,
+                                                   Transport transport) {
+    if (maxConcurrency <= 0) {
+      throw new IllegalArgumentException("maxConcurrency must be positive");
+    }
+    ExecutorService executor = VirtualThreads.newPerTaskExecutor();
+    if (executor == null) {
+      return new AsyncRestClient(baseUrl, maxConcurrency, transport);
+    }
+    return new AsyncRestClient(baseUrl, executor, transport, new Semaphore(maxConcurrency));
+  }
+
+  /**
+   * Returns whether the requests run on virtual threads
+   * @return whether the requests run on virtual threads
+   */
+  public boolean usesVirtualThreads() {
+    return concurrencyLimit != null;
   }
 
   /**
@@ -46,16 +134,262 @@ public class AsyncRestClient extends AbstractRestClient {
     execute(request, ResponseHandlers.noResponse(), null);
   }
 
+  /**
+   * Execute asynchronously the given request, the callback is called on the thread that
+   * executed the request
+   * @param request the request
+   * @param successResponseHandler the response handler
+   * @param callback the callback receiving the response, may be null
+   */
   public <T> void execute(final RestRequest request,
                                               final ResponseHandler<T> successResponseHandler,
                                               final Callback<T> callback) {
-    executor.submit(new Runnable() {
-      @Override
-      public void run() {
-        RestResponse<T> response = doExecute(request, successResponseHandler);
-        if (callback != null) callback.call(response);
+    CompletableFuture<RestResponse<T>> future = new CompletableFuture<>();
+    if (callback != null) {
+      future.thenAccept(callback::call);
+    }
+    submit(request, successResponseHandler, future, null);
+  }
+
+  /**
+   * Execute asynchronously the given request
+   * @param request the request
+   * @return the future response of the server
+   */
+  public CompletableFuture<RestResponse<Void>> executeAsync(RestRequest request) {
+    return executeAsync(request, ResponseHandlers.noResponse());
+  }
+
+  /**
+   * Execute asynchronously the given request. Cancelling the returned future cancels the
+   * request, unless it is coalesced with identical ones. See {@link ResponseFutures} to combine
+   * the returned futures
+   * @param request the request
+   * @param successResponseHandler the response handler
+   * @return the future response of the server
+   */
+  public <T> CompletableFuture<RestResponse<T>> executeAsync(RestRequest request,
+                                                             ResponseHandler<T> successResponseHandler) {
+    HedgingPolicy hedging = hedgingPolicy;
+    if (hedging != null && HttpMethods.isIdempotent(request.getMethod())
+        && (!request.hasOutput() || request.getOutputProcessor().isReplayable())) {
+      return executeHedged(request, successResponseHandler, hedging);
+    }
+    final CompletableFuture<RestResponse<T>> future = new CompletableFuture<>();
+    // coalesced requests share their exchange, which one caller alone can't cancel
+    final Cancellation cancellation = isCoalescable(request) ? null : new Cancellation();
+    if (cancellation != null) {
+      future.whenComplete((response, error) -> {
+        if (future.isCancelled()) {
+          cancellation.cancel();
+        }
+      });
+    }
+    submit(request, successResponseHandler, future, cancellation);
+    return future;
+  }
+
+  private <T> CompletableFuture<RestResponse<T>> executeHedged(final RestRequest request,
+                                                              final ResponseHandler<T> successResponseHandler,
+                                                              final HedgingPolicy hedging) {
+    final CompletableFuture<RestResponse<T>> result = new CompletableFuture<>();
+    final Cancellation original = new Cancellation();
+    final Cancellation hedge = new Cancellation();
+    final AtomicBoolean settled = new AtomicBoolean();
+    final long start = System.nanoTime();
+    hedging.recordRequest();
+
+    CompletableFuture<RestResponse<T>> first = new CompletableFuture<>();
+    submit(request, successResponseHandler, first, original);
+    first.whenComplete((response, error) -> {
+      if (settled.compareAndSet(false, true)) {
+        hedging.recordLatency(System.nanoTime() - start);
+        hedge.cancel();
+        complete(result, response, error);
+      }
+    });
+
+    final ScheduledFuture<?> timer = ResponseFutures.timer().schedule(() -> {
+      if (result.isDone() || !hedging.tryHedge()) {
+        return;
+      }
+      CompletableFuture<RestResponse<T>> second = new CompletableFuture<>();
+      submit(request, successResponseHandler, second, hedge);
+      second.whenComplete((response, error) -> {
+        // a hedge refused by the client itself never reached the server, the original keeps running
+        if (error == null && isRejectedLocally(response)) {
+          return;
+        }
+        if (settled.compareAndSet(false, true)) {
+          hedging.recordLatency(System.nanoTime() - start);
+          hedging.recordHedgeWon();
+          original.cancel();
+          complete(result, response, error);
+        }
+      });
+    }, hedging.delayNanos(), TimeUnit.NANOSECONDS);
+    result.whenComplete((response, error) -> {
+      timer.cancel(false);
+      if (result.isCancelled()) {
+        original.cancel();
+        hedge.cancel();
       }
     });
+    return result;
+  }
+
+  private static boolean isRejectedLocally(RestResponse<?> response) {
+    int code = response.getResponseCode();
+    return code == RestResponse.RATE_LIMITED || code == RestResponse.CIRCUIT_OPEN;
+  }
+
+  private static <T> void complete(CompletableFuture<RestResponse<T>> future,
+                                   RestResponse<T> response, Throwable error) {
+    if (error == null) {
+      future.complete(response);
+    } else {
+      future.completeExceptionally(error);
+    }
+  }
+
+  /**
+   * Enables hedged requests: idempotent requests executed with {@link #executeAsync} that don't
+   * get a response within the delay of the policy are sent a second time, the first response
+   * being kept and the other request cancelled. Null disables hedging
+   * @param hedgingPolicy the hedging policy
+   */
+  public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+    this.hedgingPolicy = hedgingPolicy;
+  }
+
+  public HedgingPolicy getHedgingPolicy() {
+    return hedgingPolicy;
+  }
+
+  /**
+   * Execute all the given requests, at most maxInFlight at the same time, and wait for their
+   * responses. Failed requests keep their error response, requests without a response
+   * when the deadline is reached are cancelled and get a {@link RestResponse#DEADLINE_EXCEEDED}
+   * response
+   * @param requests the requests
+   * @param successResponseHandler the response handler
+   * @param maxInFlight the maximum number of requests executed at the same time
+   * @param timeout the overall timeout, 0 means no deadline
+   * @param unit the unit of the timeout
+   * @return the responses, in the order of the requests
+   */
+  public <T> List<RestResponse<T>> executeAll(List<RestRequest> requests,
+                                              ResponseHandler<T> successResponseHandler,
+                                              int maxInFlight, long timeout, TimeUnit unit) {
+    // the callback is called on this thread
+    final List<RestResponse<T>> responses = new ArrayList<>(Collections.nCopies(requests.size(), null));
+    executeAll(requests, successResponseHandler, maxInFlight, timeout, unit, responses::set);
+    return Collections.unmodifiableList(responses);
+  }
+
+  /**
+   * Execute all the given requests, at most maxInFlight at the same time, handing each response
+   * to the callback as soon as it arrives, so that responses don't need to be kept in memory.
+   * The callback is called on the calling thread, once per request. Requests without a response
+   * when the deadline is reached are cancelled and get a {@link RestResponse#DEADLINE_EXCEEDED}
+   * response
+   * @param requests the requests
+   * @param successResponseHandler the response handler
+   * @param maxInFlight the maximum number of requests executed at the same time
+   * @param timeout the overall timeout, 0 means no deadline
+   * @param unit the unit of the timeout
+   * @param callback the callback receiving the index of each request with its response
+   */
+  public <T> void executeAll(List<RestRequest> requests,
+                             ResponseHandler<T> successResponseHandler,
+                             int maxInFlight, long timeout, TimeUnit unit,
+                             IndexedCallback<T> callback) {
+    if (maxInFlight <= 0) {
+      throw new IllegalArgumentException("maxInFlight must be positive");
+    }
+    long deadline = timeout > 0 ? System.nanoTime() + unit.toNanos(timeout) : Long.MAX_VALUE;
+    BlockingQueue<IndexedResponse<T>> completed = new LinkedBlockingQueue<>();
+    // only the requests still in flight are kept, so that memory doesn't grow with the batch
+    Map<Integer, CompletableFuture<RestResponse<T>>> inFlight = new HashMap<>();
+    int next = 0;
+    String failure = "Deadline exceeded";
+    while (next < requests.size() || !inFlight.isEmpty()) {
+      while (inFlight.size() < maxInFlight && next < requests.size()) {
+        final int index = next++;
+        CompletableFuture<RestResponse<T>> future = executeAsync(requests.get(index), successResponseHandler);
+        inFlight.put(index, future);
+        future.whenComplete((response, error) ->
+            completed.add(new IndexedResponse<>(index, error == null ? response :
+                AbstractRestClient.<T>errorResponse(RestResponse.REQUEST_NOT_SENT, String.valueOf(error)))));
+      }
+      IndexedResponse<T> response;
+      try {
+        long remaining = deadline - System.nanoTime();
+        response = remaining > 0 ? completed.poll(remaining, TimeUnit.NANOSECONDS) : completed.poll();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        failure = "Interrupted";
+        break;
+      }
+      if (response == null) {
+        break;
+      }
+      inFlight.remove(response.index);
+      callback.call(response.index, response.response);
+    }
+    for (Map.Entry<Integer, CompletableFuture<RestResponse<T>>> entry : new TreeMap<>(inFlight).entrySet()) {
+      // frees the connection and the worker of the requests still in flight
+      entry.getValue().cancel(true);
+      callback.call(entry.getKey(), AbstractRestClient.<T>errorResponse(RestResponse.DEADLINE_EXCEEDED, failure));
+    }
+    for (int index = next; index < requests.size(); index++) {
+      callback.call(index, AbstractRestClient.<T>errorResponse(RestResponse.DEADLINE_EXCEEDED, failure));
+    }
+  }
+
+  private <T> void submit(final RestRequest request,
+                          final ResponseHandler<T> successResponseHandler,
+                          final CompletableFuture<RestResponse<T>> future,
+                          final Cancellation cancellation) {
+    // over-quota requests wait on the timer, not on a worker thread
+    final RateLimits limits = getRateLimits();
+    long wait = limits == null ? 0 : limits.reserve(request);
+    if (wait < 0) {
+      future.complete(AbstractRestClient.<T>errorResponse(RestResponse.RATE_LIMITED,
+          "Rate limit exceeded for " + request.getEndpoint()));
+      return;
+    }
+    Runnable task = () -> {
+      if (concurrencyLimit != null) {
+        try {
+          concurrencyLimit.acquire();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          future.completeExceptionally(e);
+          return;
+        }
+      }
+      try {
+        future.complete(doExecute(request, successResponseHandler, cancellation, limits != null));
+      } catch (RuntimeException | Error e) {
+        future.completeExceptionally(e);
+      } finally {
+        if (concurrencyLimit != null) {
+          concurrencyLimit.release();
+        }
+      }
+    };
+    if (wait > 0) {
+      ResponseFutures.timer().schedule(() -> {
+        try {
+          executor.execute(task);
+        } catch (RejectedExecutionException e) {
+          future.completeExceptionally(e);
+        }
+      }, wait, TimeUnit.NANOSECONDS);
+    } else {
+      executor.execute(task);
+    }
   }
 
   public void shutDown() {
@@ -67,4 +401,18 @@ public class AsyncRestClient extends AbstractRestClient {
   public interface Callback<T> {
     void call(RestResponse<T> response);
   }
+
+  public interface IndexedCallback<T> {
+    void call(int index, RestResponse<T> response);
+  }
+
+  private static final class IndexedResponse<T> {
+    private final int index;
+    private final RestResponse<T> response;
+
+    IndexedResponse(int index, RestResponse<T> response) {
+      this.index = index;
+      this.response = response;
+    }
+  }
 }
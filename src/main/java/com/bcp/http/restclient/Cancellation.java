@@ -0,0 +1,48 @@
+package com.bcp.http.restclient;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Allows a thread to abort a request executed by another one, by disconnecting its connection
+ */
+final class Cancellation {
+
+  private HttpURLConnection connection;
+  private boolean cancelled = false;
+
+  /**
+   * Registers the connection of the request
+   * @param connection the connection
+   * @return false if the request was already cancelled
+   */
+  synchronized boolean attach(HttpURLConnection connection) {
+    this.connection = connection;
+    return !cancelled;
+  }
+
+  /**
+   * Unregisters the connection once the exchange is over, so that it can't be disconnected
+   * after being given back to the transport
+   * @return false if the request was cancelled
+   */
+  synchronized boolean detach() {
+    connection = null;
+    return !cancelled;
+  }
+
+  /**
+   * Cancels the request, disconnecting its connection if it is in progress
+   */
+  synchronized void cancel() {
+    cancelled = true;
+    if (connection != null) {
+      // under the lock, so that the connection can't be given back to the transport meanwhile
+      connection.disconnect();
+      connection = null;
+    }
+  }
+
+  synchronized boolean isCancelled() {
+    return cancelled;
+  }
+}
@@ -0,0 +1,188 @@
+package com.bcp.http.restclient;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Policy of the hedged requests of an {@link AsyncRestClient}: when an idempotent request
+ * doesn't get a response within a delay, a duplicate is sent and the first response wins.
+ * The delay is either fixed or a percentile of the latencies observed by the policy, and a
+ * budget caps the hedges to a fraction of the requests. The policy keeps the latencies and
+ * counters of the requests it hedges, so it should be shared only by requests to the same upstream
+ */
+public class HedgingPolicy {
+
+  private static final int WINDOW = 1024;
+  private static final int MIN_SAMPLES = 32;
+  private static final int REFRESH_PERIOD = 64;
+
+  private final long fixedDelayNanos;
+  private final double percentile;
+  private final double maxHedgeRatio;
+  private final int burst;
+
+  private final AtomicLongArray latencies = new AtomicLongArray(WINDOW);
+  private final AtomicLong samples = new AtomicLong();
+  private volatile long percentileDelayNanos;
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder hedges = new LongAdder();
+  private final LongAdder hedgesWon = new LongAdder();
+  private final LongAdder hedgesRejected = new LongAdder();
+
+  private HedgingPolicy(Builder builder) {
+    this.fixedDelayNanos = TimeUnit.MILLISECONDS.toNanos(builder.delay);
+    this.percentile = builder.percentile;
+    this.maxHedgeRatio = builder.maxHedgeRatio;
+    this.burst = builder.burst;
+    this.percentileDelayNanos = fixedDelayNanos;
+  }
+
+  /**
+   * Returns a new hedging policy builder
+   * @return the hedging policy builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the time to wait for a response before sending a hedge
+   * @return the delay in nanoseconds
+   */
+  long delayNanos() {
+    return percentile > 0 ? percentileDelayNanos : fixedDelayNanos;
+  }
+
+  void recordRequest() {
+    requests.increment();
+  }
+
+  void recordLatency(long nanos) {
+    long sample = samples.getAndIncrement();
+    latencies.set((int) (sample % WINDOW), nanos);
+    if (percentile > 0 && sample >= MIN_SAMPLES && sample % REFRESH_PERIOD == 0) {
+      int count = (int) Math.min(sample + 1, WINDOW);
+      long[] sorted = new long[count];
+      for (int i = 0; i < count; i++) {
+        sorted[i] = latencies.get(i);
+      }
+      Arrays.sort(sorted);
+      percentileDelayNanos = sorted[Math.min(count - 1, (int) (percentile * count))];
+    }
+  }
+
+  /**
+   * Takes a hedge from the budget
+   * @return whether a hedge can be sent
+   */
+  boolean tryHedge() {
+    if (hedges.sum() >= requests.sum() * maxHedgeRatio + burst) {
+      hedgesRejected.increment();
+      return false;
+    }
+    hedges.increment();
+    return true;
+  }
+
+  void recordHedgeWon() {
+    hedgesWon.increment();
+  }
+
+  /**
+   * Returns the number of hedges sent
+   * @return the number of hedges
+   */
+  public long getHedgesIssued() {
+    return hedges.sum();
+  }
+
+  /**
+   * Returns the number of hedges that got their response before the original request
+   * @return the number of hedges won
+   */
+  public long getHedgesWon() {
+    return hedgesWon.sum();
+  }
+
+  /**
+   * Returns the number of hedges not sent because the budget was exhausted
+   * @return the number of rejected hedges
+   */
+  public long getHedgesRejected() {
+    return hedgesRejected.sum();
+  }
+
+  /**
+   * Returns the current hedging delay
+   * @param unit the time unit
+   * @return the delay
+   */
+  public long getDelay(TimeUnit unit) {
+    return unit.convert(delayNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Class allowing to build a hedging policy
+   */
+  public static class Builder {
+
+    private long delay = 100;
+    private double percentile = 0;
+    private double maxHedgeRatio = 0.05;
+    private int burst = 10;
+
+    private Builder() {}
+
+    /**
+     * Sets the fixed delay after which a hedge is sent. When a percentile is set, this delay is
+     * used until enough latencies have been observed
+     * @param durationInMillis the duration in milliseconds
+     * @return this
+     */
+    public Builder delay(long durationInMillis) {
+      this.delay = durationInMillis;
+      return this;
+    }
+
+    /**
+     * Sends the hedges after the given percentile of the observed latencies, 0.95 for the p95
+     * @param percentile the percentile, between 0 and 1
+     * @return this
+     */
+    public Builder percentile(double percentile) {
+      if (percentile <= 0 || percentile >= 1) {
+        throw new IllegalArgumentException("percentile must be between 0 and 1");
+      }
+      this.percentile = percentile;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of hedges, as a fraction of the requests, plus a burst of hedges
+     * allowed before enough requests were sent
+     * @param maxHedgeRatio the fraction of the requests that can be hedged
+     * @param burst the number of hedges allowed on top of the fraction
+     * @return this
+     */
+    public Builder budget(double maxHedgeRatio, int burst) {
+      if (maxHedgeRatio < 0 || burst < 0) {
+        throw new IllegalArgumentException("invalid hedge budget");
+      }
+      this.maxHedgeRatio = maxHedgeRatio;
+      this.burst = burst;
+      return this;
+    }
+
+    /**
+     * Build the hedging policy
+     * @return the hedging policy
+     */
+    public HedgingPolicy build() {
+      return new HedgingPolicy(this);
+    }
+  }
+}
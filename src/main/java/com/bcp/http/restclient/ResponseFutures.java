@@ -0,0 +1,130 @@
+package com.bcp.http.restclient;
+
+import com.bcp.http.restclient.response.RestResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Util class combining the futures returned by {@link AsyncRestClient#executeAsync}
+ */
+public final class ResponseFutures {
+
+  private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "restclient-future-timer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private ResponseFutures() {}
+
+  static ScheduledExecutorService timer() {
+    return TIMER;
+  }
+
+  /**
+   * Returns a future completed when all the given futures are, with the responses in the order
+   * of the futures
+   * @param futures the futures
+   * @param <T> the type of the responses
+   * @return the future list of responses
+   */
+  public static <T> CompletableFuture<List<RestResponse<T>>> allOf(
+      final List<CompletableFuture<RestResponse<T>>> futures) {
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+        .thenApply(ignored -> {
+          List<RestResponse<T>> responses = new ArrayList<>(futures.size());
+          for (CompletableFuture<RestResponse<T>> future : futures) {
+            responses.add(future.join());
+          }
+          return Collections.unmodifiableList(responses);
+        });
+  }
+
+  /**
+   * Returns a future completed with the first response received, successful or not
+   * @param futures the futures
+   * @param <T> the type of the responses
+   * @return the future first response
+   */
+  public static <T> CompletableFuture<RestResponse<T>> anyOf(
+      List<CompletableFuture<RestResponse<T>>> futures) {
+    CompletableFuture<RestResponse<T>> first = new CompletableFuture<>();
+    for (CompletableFuture<RestResponse<T>> future : futures) {
+      future.whenComplete((response, error) -> {
+        if (error != null) {
+          first.completeExceptionally(error);
+        } else {
+          first.complete(response);
+        }
+      });
+    }
+    return first;
+  }
+
+  /**
+   * Returns a future completed with the first successful response, or with the last response
+   * received if none of them is successful
+   * @param futures the futures
+   * @param <T> the type of the responses
+   * @return the future first successful response
+   */
+  public static <T> CompletableFuture<RestResponse<T>> anySuccessful(
+      List<CompletableFuture<RestResponse<T>>> futures) {
+    CompletableFuture<RestResponse<T>> first = new CompletableFuture<>();
+    AtomicInteger remaining = new AtomicInteger(futures.size());
+    if (futures.isEmpty()) {
+      first.complete(null);
+    }
+    for (CompletableFuture<RestResponse<T>> future : futures) {
+      future.whenComplete((response, error) -> {
+        boolean last = remaining.decrementAndGet() == 0;
+        if (error == null && response.isSuccessful()) {
+          first.complete(response);
+        } else if (last) {
+          if (error != null) {
+            first.completeExceptionally(error);
+          } else {
+            first.complete(response);
+          }
+        }
+      });
+    }
+    return first;
+  }
+
+  /**
+   * Returns a future completed like the given one, or exceptionally with a
+   * {@link TimeoutException} if it doesn't complete in time. The request itself isn't interrupted
+   * @param future the future
+   * @param timeout the timeout
+   * @param unit the unit of the timeout
+   * @param <T> the type of the future
+   * @return the future with a timeout
+   */
+  public static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future,
+                                                     final long timeout, final TimeUnit unit) {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    final ScheduledFuture<?> timer = TIMER.schedule(
+        () -> result.completeExceptionally(
+            new TimeoutException("No response after " + timeout + " " + unit)),
+        timeout, unit);
+    future.whenComplete((value, error) -> {
+      timer.cancel(false);
+      if (error != null) {
+        result.completeExceptionally(error);
+      } else {
+        result.complete(value);
+      }
+    });
+    return result;
+  }
+}
@@ -4,6 +4,7 @@ import com.bcp.http.restclient.request.RestRequest;
 import com.bcp.http.restclient.response.RestResponse;
 import com.bcp.http.restclient.response.handler.ResponseHandler;
 import com.bcp.http.restclient.response.handler.ResponseHandlers;
+import com.bcp.http.restclient.transport.Transport;
 
 /**
  * Class that sends synchronous REST requests
@@ -18,6 +19,15 @@ public class RestClient extends AbstractRestClient {
     super(baseUrl);
   }
 
+  /**
+   *
+   * @param baseUrl the base url of the rest api
+   * @param transport the transport carrying the requests
+   */
+  public RestClient(String baseUrl, Transport transport) {
+    super(baseUrl, transport);
+  }
+
   /**
    * Execute an http request
    * @param request the request to execute
@@ -0,0 +1,57 @@
+package com.bcp.http.restclient.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Reads the claims of a JWT needed to refresh it, without verifying its signature
+ */
+public final class Jwts {
+
+  /**
+   * Value returned for the tokens without expiration
+   */
+  public static final long NO_EXPIRATION = Long.MAX_VALUE;
+
+  private Jwts() {}
+
+  /**
+   * Returns the expiration time of a token, given by the exp claim of its payload
+   * @param token the token
+   * @return the expiration time in milliseconds since the epoch, {@link #NO_EXPIRATION} if the
+   * token isn't a JWT or has no exp claim
+   */
+  public static long expiresAt(String token) {
+    int payloadStart = token.indexOf('.') + 1;
+    int payloadEnd = token.indexOf('.', payloadStart);
+    if (payloadStart == 0 || payloadEnd < 0) {
+      return NO_EXPIRATION;
+    }
+    String payload;
+    try {
+      payload = new String(Base64.getUrlDecoder().decode(token.substring(payloadStart, payloadEnd)),
+          StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      return NO_EXPIRATION;
+    }
+    int claim = payload.indexOf("\"exp\"");
+    int colon = claim < 0 ? -1 : payload.indexOf(':', claim + 5);
+    if (colon < 0) {
+      return NO_EXPIRATION;
+    }
+    int start = colon + 1;
+    while (start < payload.length() && Character.isWhitespace(payload.charAt(start))) {
+      start++;
+    }
+    long seconds = 0;
+    int end = start;
+    // a NumericDate may have a fraction, which is ignored
+    for (; end < payload.length() && payload.charAt(end) >= '0' && payload.charAt(end) <= '9'; end++) {
+      seconds = seconds * 10 + (payload.charAt(end) - '0');
+      if (seconds > NO_EXPIRATION / 1000) {
+        return NO_EXPIRATION;
+      }
+    }
+    return end == start ? NO_EXPIRATION : seconds * 1000;
+  }
+}
@@ -0,0 +1,269 @@
+package com.bcp.http.restclient.auth;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token provider caching the token of a {@link TokenSource}. The token is refreshed in the
+ * background ahead of its expiration, read from its exp claim, and after a 401 response.
+ * Concurrent refreshes share the same call to the source, and reading a valid token takes a
+ * single volatile read. After a failed call, the source isn't called again on demand for the
+ * failure backoff, the stale token being returned meanwhile
+ */
+public final class RefreshingTokenProvider implements TokenProvider, AutoCloseable {
+
+  private final TokenSource source;
+  private final long refreshAhead;
+  private final long defaultLifetime;
+  private final long failureBackoff;
+  private final ScheduledExecutorService scheduler;
+  private final AtomicReference<CompletableFuture<Token>> refreshing = new AtomicReference<>();
+  private final LongAdder refreshes = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private volatile Token current = null;
+  private volatile CompletableFuture<Token> failed = null;
+  private volatile long retryAfter = 0;
+  private volatile boolean closed = false;
+  private ScheduledFuture<?> scheduled = null; // only used by the thread refreshing the token
+
+  private RefreshingTokenProvider(Builder builder) {
+    this.source = builder.source;
+    this.refreshAhead = builder.refreshAhead;
+    this.defaultLifetime = builder.defaultLifetime;
+    this.failureBackoff = builder.failureBackoff;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "restclient-token-refresh");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Returns a new provider builder
+   * @param source the source of the tokens
+   * @return the provider builder
+   */
+  public static Builder builder(TokenSource source) {
+    if (source == null) {
+      throw new IllegalArgumentException("source cannot be null");
+    }
+    return new Builder(source);
+  }
+
+  /**
+   * Returns the cached token, fetching a new one first if there is none or it expired
+   * @return the token, the expired one or null if it can't be fetched
+   */
+  @Override
+  public String getToken() {
+    Token token = current;
+    if (token != null && System.currentTimeMillis() < token.expiresAt) {
+      return token.value;
+    }
+    return awaitRefresh();
+  }
+
+  /**
+   * Fetches a new token, unless the rejected one was already replaced
+   * @param rejected the token rejected by the server
+   * @return the new token, null if it can't be fetched
+   */
+  @Override
+  public String refresh(String rejected) {
+    Token token = current;
+    if (token != null && !token.value.equals(rejected)) {
+      return token.value;
+    }
+    return awaitRefresh();
+  }
+
+  /**
+   * Returns the number of tokens fetched from the source
+   * @return the number of refreshes
+   */
+  public long getRefreshCount() {
+    return refreshes.sum();
+  }
+
+  /**
+   * Returns the number of calls to the source that failed
+   * @return the number of failures
+   */
+  public long getFailureCount() {
+    return failures.sum();
+  }
+
+  /**
+   * Stops the background refreshes
+   */
+  @Override
+  public void close() {
+    closed = true;
+    scheduler.shutdownNow();
+  }
+
+  private String awaitRefresh() {
+    try {
+      return refreshOnce(true).join().value;
+    } catch (CompletionException e) {
+      Token token = current;
+      return token == null ? null : token.value;
+    }
+  }
+
+  /**
+   * Fetches a new token in the calling thread, or returns the refresh already in progress
+   * @param throttled whether a recent failure is returned instead of calling the source again
+   */
+  private CompletableFuture<Token> refreshOnce(boolean throttled) {
+    CompletableFuture<Token> lastFailure = failed;
+    if (throttled && lastFailure != null && System.currentTimeMillis() < retryAfter) {
+      return lastFailure;
+    }
+    CompletableFuture<Token> refresh = new CompletableFuture<>();
+    while (!refreshing.compareAndSet(null, refresh)) {
+      CompletableFuture<Token> inProgress = refreshing.get();
+      if (inProgress != null) {
+        return inProgress;
+      }
+    }
+    try {
+      String value = source.fetchToken();
+      if (value == null) {
+        throw new IOException("The token source returned no token");
+      }
+      long expiresAt = Jwts.expiresAt(value);
+      if (expiresAt == Jwts.NO_EXPIRATION && defaultLifetime > 0) {
+        expiresAt = System.currentTimeMillis() + defaultLifetime;
+      }
+      Token token = new Token(value, expiresAt);
+      current = token;
+      refreshes.increment();
+      scheduleRefresh(token.expiresAt, refreshAhead);
+      failed = null;
+      refreshing.set(null);
+      refresh.complete(token);
+    } catch (IOException | RuntimeException e) {
+      failures.increment();
+      Token token = current;
+      // try again halfway to the expiration of the current token
+      scheduleRefresh(token == null ? Jwts.NO_EXPIRATION : token.expiresAt, Long.MAX_VALUE);
+      refresh.completeExceptionally(e);
+      // written before the failure, which is read first, so that it never comes with an older deadline
+      retryAfter = System.currentTimeMillis() + failureBackoff;
+      failed = refresh;
+      refreshing.set(null);
+    } catch (Error e) {
+      refreshing.set(null);
+      refresh.completeExceptionally(e);
+      throw e;
+    }
+    return refresh;
+  }
+
+  private void scheduleRefresh(long expiresAt, long ahead) {
+    if (scheduled != null) {
+      scheduled.cancel(false);
+      scheduled = null;
+    }
+    long lifetime = expiresAt - System.currentTimeMillis();
+    if (closed || expiresAt == Jwts.NO_EXPIRATION || lifetime <= 1) {
+      return;
+    }
+    // tokens living less than the refresh ahead time are refreshed halfway
+    long delay = Math.max(lifetime - ahead, lifetime / 2);
+    try {
+      scheduled = scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          refreshOnce(false);
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // closed meanwhile
+    }
+  }
+
+  private static final class Token {
+
+    private final String value;
+    private final long expiresAt;
+
+    private Token(String value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * Class allowing to build a refreshing token provider
+   */
+  public static class Builder {
+
+    private final TokenSource source;
+    private long refreshAhead = 60000;
+    private long defaultLifetime = 0;
+    private long failureBackoff = 1000;
+
+    private Builder(TokenSource source) {
+      this.source = source;
+    }
+
+    /**
+     * Sets how long before its expiration the token is refreshed, one minute by default
+     * @param durationInMillis the duration in milliseconds
+     * @return this
+     */
+    public Builder refreshAhead(long durationInMillis) {
+      if (durationInMillis < 0) {
+        throw new IllegalArgumentException("refreshAhead cannot be negative");
+      }
+      this.refreshAhead = durationInMillis;
+      return this;
+    }
+
+    /**
+     * Sets the lifetime of the tokens without exp claim. By default they don't expire and are
+     * only refreshed after a 401 response
+     * @param durationInMillis the duration in milliseconds, 0 for no expiration
+     * @return this
+     */
+    public Builder defaultLifetime(long durationInMillis) {
+      if (durationInMillis < 0) {
+        throw new IllegalArgumentException("defaultLifetime cannot be negative");
+      }
+      this.defaultLifetime = durationInMillis;
+      return this;
+    }
+
+    /**
+     * Sets how long after a failed call the source isn't called again on demand, one second by
+     * default. The background refreshes aren't throttled
+     * @param durationInMillis the duration in milliseconds, 0 to call the source on each demand
+     * @return this
+     */
+    public Builder failureBackoff(long durationInMillis) {
+      if (durationInMillis < 0) {
+        throw new IllegalArgumentException("failureBackoff cannot be negative");
+      }
+      this.failureBackoff = durationInMillis;
+      return this;
+    }
+
+    public RefreshingTokenProvider build() {
+      return new RefreshingTokenProvider(this);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package com.bcp.http.restclient.auth;
+
+/**
+ * Provider of the bearer token sent in the Authorization header of the requests of a client.
+ * {@link #getToken()} is called for every request and must be cheap
+ */
+public interface TokenProvider {
+
+  /**
+   * Returns the token to send
+   * @return the token, null not to send an Authorization header
+   */
+  String getToken();
+
+  /**
+   * Called when the server answered 401 to a request sent with the given token
+   * @param rejected the token rejected by the server
+   * @return the token to send the request again with, null or the rejected token not to retry
+   */
+  String refresh(String rejected);
+}
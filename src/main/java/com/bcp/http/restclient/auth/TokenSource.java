@@ -0,0 +1,17 @@
+package com.bcp.http.restclient.auth;
+
+import java.io.IOException;
+
+/**
+ * Obtains new tokens, usually from an authorization server
+ */
+@FunctionalInterface
+public interface TokenSource {
+
+  /**
+   * Fetches a new token
+   * @return the token
+   * @throws IOException if the token can't be obtained
+   */
+  String fetchToken() throws IOException;
+}
@@ -0,0 +1,91 @@
+package com.bcp.http.restclient.cache;
+
+import com.bcp.http.restclient.response.HttpHeaders;
+
+/**
+ * A response stored in a {@link ResponseCache}, with its raw body
+ */
+public class CachedResponse {
+
+  private final int responseCode;
+  private final HttpHeaders headers;
+  private final byte[] body;
+  private final String etag;
+  private final String lastModified;
+  private final long expiresAt;
+
+  CachedResponse(int responseCode, HttpHeaders headers, byte[] body, String etag,
+                 String lastModified, long expiresAt) {
+    this.responseCode = responseCode;
+    this.headers = headers;
+    this.body = body;
+    this.etag = etag;
+    this.lastModified = lastModified;
+    this.expiresAt = expiresAt;
+  }
+
+  /**
+   * Returns the response code
+   * @return the response code
+   */
+  public int getResponseCode() {
+    return responseCode;
+  }
+
+  /**
+   * Returns the headers of the response
+   * @return the headers
+   */
+  public HttpHeaders getHeaders() {
+    return headers;
+  }
+
+  /**
+   * Returns the raw body of the response. The array is shared and must not be modified
+   * @return the body
+   */
+  public byte[] getBody() {
+    return body;
+  }
+
+  /**
+   * Returns the entity tag of the response, used to revalidate it
+   * @return the entity tag, or null
+   */
+  public String getEtag() {
+    return etag;
+  }
+
+  /**
+   * Returns the last modification date of the response, used to revalidate it
+   * @return the last modification date, or null
+   */
+  public String getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Returns whether the response can be served without contacting the server
+   * @param now the current time in milliseconds
+   * @return whether the response is fresh
+   */
+  public boolean isFresh(long now) {
+    return now < expiresAt;
+  }
+
+  /**
+   * Returns whether the response can be revalidated with a conditional request
+   * @return whether the response has validators
+   */
+  public boolean hasValidators() {
+    return etag != null || lastModified != null;
+  }
+
+  long getExpiresAt() {
+    return expiresAt;
+  }
+
+  long weight() {
+    return body.length + 256;
+  }
+}
@@ -0,0 +1,444 @@
+package com.bcp.http.restclient.cache;
+
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.HttpHeaders;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.util.HttpDates;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.bcp.http.restclient.request.HttpMethods.GET;
+
+/**
+ * In-memory cache of GET responses, honoring the Cache-Control and Expires headers and
+ * revalidating stale responses with If-None-Match / If-Modified-Since.
+ * Entries are keyed by method, endpoint and the request headers selected when building the
+ * cache, and evicted in least recently used order once the cached bodies exceed a byte cap
+ */
+public class ResponseCache {
+
+  private final long maxBytes;
+  private final long maxEntryBytes;
+  private final String[] keyHeaders;
+  private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long size = 0;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder revalidations = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  private ResponseCache(Builder builder) {
+    this.maxBytes = builder.maxBytes;
+    this.maxEntryBytes = builder.maxEntryBytes > 0 ? builder.maxEntryBytes : builder.maxBytes / 8;
+    this.keyHeaders = builder.keyHeaders.toArray(new String[0]);
+  }
+
+  /**
+   * Returns a new cache builder
+   * @return the cache builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns whether the response of the request may come from the cache
+   * @param request the request
+   * @return whether the request is cacheable
+   */
+  public boolean isCacheable(RestRequest request) {
+    return GET.equals(request.getMethod()) && !request.hasOutput()
+        && requestHeader(request, "Range") == null
+        && !hasDirective(requestHeader(request, "Cache-Control"), "no-store");
+  }
+
+  /**
+   * Looks up the cached response of a request, fresh or not
+   * @param request the request
+   * @return the cached response, or null if there is none
+   */
+  public CachedResponse lookup(RestRequest request) {
+    CachedResponse response;
+    synchronized (entries) {
+      response = entries.get(key(request));
+    }
+    if (response == null) {
+      misses.increment();
+    } else if (isFresh(request, response)) {
+      hits.increment();
+    }
+    return response;
+  }
+
+  /**
+   * Returns whether the cached response can be served for the request without revalidation
+   * @param request the request
+   * @param response the cached response
+   * @return whether the response is fresh for the request
+   */
+  public boolean isFresh(RestRequest request, CachedResponse response) {
+    return response.isFresh(System.currentTimeMillis())
+        && !hasDirective(requestHeader(request, "Cache-Control"), "no-cache");
+  }
+
+  /**
+   * Builds the conditional request revalidating a stale cached response
+   * @param request the original request
+   * @param response the stale cached response
+   * @return the conditional request
+   */
+  public RestRequest revalidationRequest(RestRequest request, CachedResponse response) {
+    RestRequest.Builder builder = request.toBuilder();
+    if (response.getEtag() != null) {
+      builder.header("If-None-Match", response.getEtag());
+    }
+    if (response.getLastModified() != null) {
+      builder.header("If-Modified-Since", response.getLastModified());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Refreshes a cached response after the server answered 304 Not Modified. The headers of the
+   * 304 response replace the stored ones (RFC 9111 section 4.3.4), except those describing the
+   * stored body, and the freshness is computed from the merged headers
+   * @param request the request
+   * @param stale the cached response
+   * @param notModified the 304 response of the server
+   * @return the refreshed cached response
+   */
+  public CachedResponse revalidated(RestRequest request, CachedResponse stale,
+                                    RestResponse<?> notModified) {
+    revalidations.increment();
+    HttpHeaders headers = stale.getHeaders().updatedWith(notModified.getHeaders(),
+        "Content-Length", "Content-Encoding", "Transfer-Encoding");
+    CachedResponse refreshed = new CachedResponse(stale.getResponseCode(), headers, stale.getBody(),
+        header(headers, "ETag"), header(headers, "Last-Modified"), expiresAt(headers, System.currentTimeMillis()));
+    put(key(request), refreshed);
+    return refreshed;
+  }
+
+  /**
+   * Returns whether a response could be stored, judging from its status and headers only, so
+   * that the body of the responses that can't be stored isn't buffered
+   * @param responseCode the response code
+   * @param headers the response headers
+   * @return whether the response may be stored once its body is read
+   */
+  public boolean isStorable(int responseCode, HttpHeaders headers) {
+    if (responseCode != 200 && responseCode != 203) {
+      return false;
+    }
+    String cacheControl = header(headers, "Cache-Control");
+    if (hasDirective(cacheControl, "no-store") || !varyMatchesKey(header(headers, "Vary"))) {
+      return false;
+    }
+    String contentLength = headers.getValue("Content-Length");
+    if (contentLength != null) {
+      try {
+        if (Long.parseLong(contentLength.trim()) > maxEntryBytes) {
+          return false;
+        }
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
+    return header(headers, "ETag") != null || header(headers, "Last-Modified") != null
+        || expiresAt(headers, System.currentTimeMillis()) > System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the max size of the body of a cached response
+   * @return the max size in bytes
+   */
+  public long getMaxEntryBytes() {
+    return maxEntryBytes;
+  }
+
+  /**
+   * Stores the response of a request if its headers allow it
+   * @param request the request
+   * @param response the response, with its raw body
+   * @param stale the stale cached response replaced by this one, null if there was none
+   * @return the cached response, or null if the response can't be stored
+   */
+  public CachedResponse store(RestRequest request, RestResponse<byte[]> response, CachedResponse stale) {
+    return store(request, response.getResponseCode(), response.getHeaders(), response.getData(), stale);
+  }
+
+  /**
+   * Stores the response of a request if its headers allow it
+   * @param request the request
+   * @param responseCode the response code
+   * @param headers the response headers
+   * @param body the raw body of the response, null if it wasn't read in full
+   * @param stale the stale cached response replaced by this one, null if there was none
+   * @return the cached response, or null if the response can't be stored
+   */
+  public CachedResponse store(RestRequest request, int responseCode, HttpHeaders headers, byte[] body,
+                              CachedResponse stale) {
+    if (stale != null) {
+      misses.increment();
+    }
+    String cacheControl = header(headers, "Cache-Control");
+    if ((responseCode != 200 && responseCode != 203) || body == null || body.length > maxEntryBytes
+        || hasDirective(cacheControl, "no-store") || !varyMatchesKey(header(headers, "Vary"))) {
+      return null;
+    }
+    CachedResponse cached = new CachedResponse(responseCode, headers, body, header(headers, "ETag"),
+        header(headers, "Last-Modified"), expiresAt(headers, System.currentTimeMillis()));
+    if (!cached.hasValidators() && !cached.isFresh(System.currentTimeMillis())) {
+      return null;
+    }
+    put(key(request), cached);
+    return cached;
+  }
+
+  /**
+   * Removes all the cached responses of the given endpoint
+   * @param endpoint the endpoint
+   */
+  public void invalidate(String endpoint) {
+    String prefix = GET + ' ' + endpoint + '\n';
+    synchronized (entries) {
+      Iterator<Map.Entry<String, CachedResponse>> iterator = entries.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, CachedResponse> entry = iterator.next();
+        if (entry.getKey().startsWith(prefix)) {
+          size -= entry.getValue().weight();
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes all the cached responses
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+      size = 0;
+    }
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getRevalidationCount() {
+    return revalidations.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the weight of the cached responses, mostly their body size
+   * @return the size in bytes
+   */
+  public long getSize() {
+    synchronized (entries) {
+      return size;
+    }
+  }
+
+  public int getEntryCount() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private void put(String key, CachedResponse response) {
+    synchronized (entries) {
+      CachedResponse previous = entries.put(key, response);
+      if (previous != null) {
+        size -= previous.weight();
+      }
+      size += response.weight();
+      Iterator<CachedResponse> eldest = entries.values().iterator();
+      while (size > maxBytes && eldest.hasNext()) {
+        size -= eldest.next().weight();
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+  }
+
+  private String key(RestRequest request) {
+    StringBuilder key = new StringBuilder(64)
+        .append(request.getMethod()).append(' ').append(request.getEndpoint()).append('\n');
+    for (String name : keyHeaders) {
+      String value = requestHeader(request, name);
+      if (value != null) {
+        key.append(name).append('=').append(value).append('\n');
+      }
+    }
+    return key.toString();
+  }
+
+  private boolean varyMatchesKey(String vary) {
+    if (vary == null) {
+      return true;
+    }
+    for (String name : vary.split(",")) {
+      name = name.trim().toLowerCase(Locale.ROOT);
+      if (name.equals("*")) {
+        return false;
+      }
+      if (!name.isEmpty() && !name.equals("accept-encoding") && Arrays.binarySearch(keyHeaders, name) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long expiresAt(HttpHeaders headers, long now) {
+    String cacheControl = header(headers, "Cache-Control");
+    if (hasDirective(cacheControl, "no-cache")) {
+      return now;
+    }
+    long age = 0;
+    String ageHeader = header(headers, "Age");
+    if (ageHeader != null) {
+      try {
+        age = Long.parseLong(ageHeader.trim()) * 1000;
+      } catch (NumberFormatException e) {
+        age = 0;
+      }
+    }
+    String maxAge = directiveValue(cacheControl, "max-age");
+    if (maxAge != null) {
+      try {
+        return now + Long.parseLong(maxAge) * 1000 - age;
+      } catch (NumberFormatException e) {
+        return now;
+      }
+    }
+    String expires = header(headers, "Expires");
+    if (expires != null) {
+      long expiresTime = HttpDates.parse(expires);
+      String date = header(headers, "Date");
+      long dateTime = date != null ? HttpDates.parse(date) : now;
+      if (expiresTime < 0 || dateTime < 0) {
+        return now;
+      }
+      return now + (expiresTime - dateTime) - age;
+    }
+    return now;
+  }
+
+  private static boolean hasDirective(String cacheControl, String directive) {
+    if (cacheControl == null) {
+      return false;
+    }
+    for (String token : cacheControl.split(",")) {
+      String name = token.trim();
+      int equals = name.indexOf('=');
+      if ((equals < 0 ? name : name.substring(0, equals).trim()).equalsIgnoreCase(directive)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String directiveValue(String cacheControl, String directive) {
+    if (cacheControl == null) {
+      return null;
+    }
+    for (String token : cacheControl.split(",")) {
+      int equals = token.indexOf('=');
+      if (equals > 0 && token.substring(0, equals).trim().equalsIgnoreCase(directive)) {
+        return token.substring(equals + 1).trim().replace("\"", "");
+      }
+    }
+    return null;
+  }
+
+  private static String requestHeader(RestRequest request, String name) {
+    for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+      if (header.getKey().equalsIgnoreCase(name)) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static String header(HttpHeaders headers, String name) {
+    List<String> values = headers.getAllValues(name);
+    if (values.size() <= 1) {
+      return values.isEmpty() ? null : values.get(0);
+    }
+    StringBuilder joined = new StringBuilder(values.get(0));
+    for (int i = 1; i < values.size(); i++) {
+      joined.append(", ").append(values.get(i));
+    }
+    return joined.toString();
+  }
+
+  /**
+   * Class allowing to build a response cache
+   */
+  public static class Builder {
+
+    private long maxBytes = 16 * 1024 * 1024;
+    private long maxEntryBytes = 0;
+    private final TreeSet<String> keyHeaders = new TreeSet<>();
+
+    private Builder() {}
+
+    /**
+     * Sets the maximum weight of the cached responses
+     * @param maxBytes the maximum size in bytes
+     * @return this
+     */
+    public Builder maxBytes(long maxBytes) {
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Sets the maximum body size of a cached response, an eighth of the cache size by default
+     * @param maxEntryBytes the maximum size in bytes
+     * @return this
+     */
+    public Builder maxEntryBytes(long maxEntryBytes) {
+      this.maxEntryBytes = maxEntryBytes;
+      return this;
+    }
+
+    /**
+     * Adds request headers to the cache key, responses to requests with different values
+     * for these headers are cached separately
+     * @param names the names of the headers
+     * @return this
+     */
+    public Builder keyHeaders(String... names) {
+      for (String name : names) {
+        keyHeaders.add(name.toLowerCase(Locale.ROOT));
+      }
+      return this;
+    }
+
+    /**
+     * Build the response cache
+     * @return the response cache
+     */
+    public ResponseCache build() {
+      return new ResponseCache(this);
+    }
+  }
+}
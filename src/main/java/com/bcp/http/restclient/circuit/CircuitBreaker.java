@@ -0,0 +1,184 @@
+package com.bcp.http.restclient.circuit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breaker of an endpoint. The outcomes of the last calls are kept in a lock-free
+ * sliding window; the circuit opens when the failure rate or the slow call rate of the window
+ * reaches its threshold, rejects calls while open, then lets a few probe calls through
+ * (half-open) to decide whether to close again
+ */
+public class CircuitBreaker {
+
+  private static final int EMPTY = 0;
+  private static final int SUCCESS = 1;
+  private static final int FAILURE = 2;
+  private static final int SLOW = 4;
+
+  private final String key;
+  private final CircuitBreakers.Config config;
+  private final CircuitBreakers owner;
+  private final AtomicReference<Snapshot> snapshot;
+
+  private final AtomicIntegerArray window;
+  private final AtomicLong position = new AtomicLong();
+  private final AtomicInteger calls = new AtomicInteger();
+  private final AtomicInteger failures = new AtomicInteger();
+  private final AtomicInteger slowCalls = new AtomicInteger();
+
+  private final AtomicInteger probePermits = new AtomicInteger();
+  private final AtomicInteger probesDone = new AtomicInteger();
+  private final AtomicInteger probesFailed = new AtomicInteger();
+
+  CircuitBreaker(String key, CircuitBreakers.Config config, CircuitBreakers owner) {
+    this.key = key;
+    this.config = config;
+    this.owner = owner;
+    this.window = new AtomicIntegerArray(config.windowSize);
+    this.snapshot = new AtomicReference<>(new Snapshot(CircuitState.CLOSED, 0, 0));
+  }
+
+  /**
+   * Asks for the permission to send a call
+   * @return the permission, to give back with {@link #onResult}, or -1 if the call is rejected
+   */
+  public long tryAcquire() {
+    while (true) {
+      Snapshot current = snapshot.get();
+      switch (current.state) {
+        case CLOSED:
+          return current.generation;
+        case OPEN:
+          if (System.nanoTime() - current.openedAt < config.openDurationNanos) {
+            return -1;
+          }
+          transition(current, CircuitState.HALF_OPEN);
+          break;
+        default:
+          if (probePermits.decrementAndGet() >= 0) {
+            return current.generation;
+          }
+          probePermits.incrementAndGet();
+          return -1;
+      }
+    }
+  }
+
+  /**
+   * Records the outcome of a permitted call
+   * @param permission the permission returned by {@link #tryAcquire()}
+   * @param success whether the call succeeded
+   * @param durationNanos the duration of the call
+   */
+  public void onResult(long permission, boolean success, long durationNanos) {
+    Snapshot current = snapshot.get();
+    if (permission != current.generation) {
+      return; // the call started before the last transition
+    }
+    boolean slow = durationNanos >= config.slowCallNanos;
+    if (current.state == CircuitState.HALF_OPEN) {
+      if (!success || slow) {
+        probesFailed.incrementAndGet();
+      }
+      if (probesDone.incrementAndGet() == config.probeCalls) {
+        boolean reopen = probesFailed.get() >= config.failureRateThreshold * config.probeCalls;
+        transition(current, reopen ? CircuitState.OPEN : CircuitState.CLOSED);
+      }
+      return;
+    }
+    record((success ? SUCCESS : FAILURE) | (slow ? SLOW : 0));
+    int total = calls.get();
+    if (total >= config.minimumCalls
+        && (failures.get() >= config.failureRateThreshold * total
+        || slowCalls.get() >= config.slowCallRateThreshold * total)) {
+      transition(current, CircuitState.OPEN);
+    }
+  }
+
+  /**
+   * Gives back a permission without recording an outcome, for a call that was cancelled
+   * @param permission the permission returned by {@link #tryAcquire()}
+   */
+  public void onIgnored(long permission) {
+    Snapshot current = snapshot.get();
+    if (permission == current.generation && current.state == CircuitState.HALF_OPEN) {
+      probePermits.incrementAndGet();
+    }
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public CircuitState getState() {
+    return snapshot.get().state;
+  }
+
+  /**
+   * Returns the failure rate of the sliding window
+   * @return the failure rate, between 0 and 1
+   */
+  public double getFailureRate() {
+    int total = calls.get();
+    return total == 0 ? 0 : (double) failures.get() / total;
+  }
+
+  /**
+   * Returns the slow call rate of the sliding window
+   * @return the slow call rate, between 0 and 1
+   */
+  public double getSlowCallRate() {
+    int total = calls.get();
+    return total == 0 ? 0 : (double) slowCalls.get() / total;
+  }
+
+  private void record(int outcome) {
+    int slot = (int) (position.getAndIncrement() % window.length());
+    int previous = window.getAndSet(slot, outcome);
+    if (previous == EMPTY) {
+      calls.incrementAndGet();
+    }
+    failures.addAndGet(((outcome & FAILURE) >> 1) - ((previous & FAILURE) >> 1));
+    slowCalls.addAndGet(((outcome & SLOW) >> 2) - ((previous & SLOW) >> 2));
+  }
+
+  private void transition(Snapshot from, CircuitState to) {
+    if (snapshot.get() != from) {
+      return;
+    }
+    // the counters are reset before the new state is published, so that the threads seeing it
+    // never read the counters of the previous cycle
+    if (to == CircuitState.HALF_OPEN) {
+      probesDone.set(0);
+      probesFailed.set(0);
+      probePermits.set(config.probeCalls);
+    } else if (to == CircuitState.CLOSED) {
+      for (int i = 0; i < window.length(); i++) {
+        window.set(i, EMPTY);
+      }
+      calls.set(0);
+      failures.set(0);
+      slowCalls.set(0);
+    }
+    Snapshot next = new Snapshot(to, from.generation + 1, System.nanoTime());
+    if (!snapshot.compareAndSet(from, next)) {
+      return;
+    }
+    owner.fireTransition(key, from.state, to);
+  }
+
+  private static final class Snapshot {
+    private final CircuitState state;
+    private final long generation;
+    private final long openedAt;
+
+    Snapshot(CircuitState state, long generation, long openedAt) {
+      this.state = state;
+      this.generation = generation;
+      this.openedAt = openedAt;
+    }
+  }
+}
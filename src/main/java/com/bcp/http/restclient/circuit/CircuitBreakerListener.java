@@ -0,0 +1,15 @@
+package com.bcp.http.restclient.circuit;
+
+/**
+ * Listener notified of the state transitions of the circuit breakers of {@link CircuitBreakers}
+ */
+public interface CircuitBreakerListener {
+
+  /**
+   * Called when a circuit breaker changes state, on the thread that caused the transition
+   * @param key the key of the circuit breaker
+   * @param from the previous state
+   * @param to the new state
+   */
+  void onStateTransition(String key, CircuitState from, CircuitState to);
+}
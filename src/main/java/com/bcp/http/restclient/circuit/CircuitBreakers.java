@@ -0,0 +1,208 @@
+package com.bcp.http.restclient.circuit;
+
+import com.bcp.http.restclient.request.RestRequest;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Registry of the {@link CircuitBreaker}s of a client, one per key. By default the key of a
+ * request is its endpoint without the query string; a key function can map endpoints to
+ * templates, so that "users/1" and "users/2" share the same circuit
+ */
+public class CircuitBreakers {
+
+  private final Config config;
+  private final Function<RestRequest, String> keyFunction;
+  private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+  private final List<CircuitBreakerListener> listeners = new CopyOnWriteArrayList<>();
+
+  private CircuitBreakers(Builder builder) {
+    this.config = new Config(builder);
+    this.keyFunction = builder.keyFunction;
+  }
+
+  /**
+   * Returns a new circuit breakers builder
+   * @return the circuit breakers builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the circuit breaker of the given request, created on first use
+   * @param request the request
+   * @return the circuit breaker
+   */
+  public CircuitBreaker forRequest(RestRequest request) {
+    return get(keyFunction.apply(request));
+  }
+
+  /**
+   * Returns the circuit breaker of the given key, created on first use
+   * @param key the key
+   * @return the circuit breaker
+   */
+  public CircuitBreaker get(String key) {
+    CircuitBreaker breaker = breakers.get(key);
+    if (breaker == null) {
+      CircuitBreaker newBreaker = new CircuitBreaker(key, config, this);
+      breaker = breakers.putIfAbsent(key, newBreaker);
+      if (breaker == null) {
+        breaker = newBreaker;
+      }
+    }
+    return breaker;
+  }
+
+  /**
+   * Returns the circuit breakers created so far, by key
+   * @return the circuit breakers
+   */
+  public Map<String, CircuitBreaker> getAll() {
+    return Collections.unmodifiableMap(breakers);
+  }
+
+  public void addListener(CircuitBreakerListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(CircuitBreakerListener listener) {
+    listeners.remove(listener);
+  }
+
+  void fireTransition(String key, CircuitState from, CircuitState to) {
+    for (CircuitBreakerListener listener : listeners) {
+      listener.onStateTransition(key, from, to);
+    }
+  }
+
+  private static String endpointKey(RestRequest request) {
+    String endpoint = request.getEndpoint();
+    int query = endpoint.indexOf('?');
+    return query < 0 ? endpoint : endpoint.substring(0, query);
+  }
+
+  static final class Config {
+    final int windowSize;
+    final int minimumCalls;
+    final double failureRateThreshold;
+    final double slowCallRateThreshold;
+    final long slowCallNanos;
+    final long openDurationNanos;
+    final int probeCalls;
+
+    private Config(Builder builder) {
+      this.windowSize = builder.windowSize;
+      this.minimumCalls = Math.min(builder.minimumCalls, builder.windowSize);
+      this.failureRateThreshold = builder.failureRateThreshold;
+      this.slowCallRateThreshold = builder.slowCallRateThreshold;
+      this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(builder.slowCallDuration);
+      this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(builder.openDuration);
+      this.probeCalls = builder.probeCalls;
+    }
+  }
+
+  /**
+   * Class allowing to build circuit breakers
+   */
+  public static class Builder {
+
+    private int windowSize = 100;
+    private int minimumCalls = 20;
+    private double failureRateThreshold = 0.5;
+    private double slowCallRateThreshold = 1;
+    private long slowCallDuration = 10000;
+    private long openDuration = 30000;
+    private int probeCalls = 5;
+    private Function<RestRequest, String> keyFunction = CircuitBreakers::endpointKey;
+
+    private Builder() {}
+
+    /**
+     * Sets the number of calls of the sliding window, and the minimum number of calls
+     * recorded before the rates are evaluated
+     * @param windowSize the number of calls of the window
+     * @param minimumCalls the minimum number of calls
+     * @return this
+     */
+    public Builder window(int windowSize, int minimumCalls) {
+      if (windowSize <= 0 || minimumCalls <= 0) {
+        throw new IllegalArgumentException("window sizes must be positive");
+      }
+      this.windowSize = windowSize;
+      this.minimumCalls = minimumCalls;
+      return this;
+    }
+
+    /**
+     * Sets the failure rate opening the circuit
+     * @param threshold the failure rate, between 0 and 1
+     * @return this
+     */
+    public Builder failureRateThreshold(double threshold) {
+      this.failureRateThreshold = threshold;
+      return this;
+    }
+
+    /**
+     * Sets the slow call rate opening the circuit, and the duration above which a call is slow
+     * @param threshold the slow call rate, between 0 and 1
+     * @param durationInMillis the duration in milliseconds
+     * @return this
+     */
+    public Builder slowCallRateThreshold(double threshold, long durationInMillis) {
+      this.slowCallRateThreshold = threshold;
+      this.slowCallDuration = durationInMillis;
+      return this;
+    }
+
+    /**
+     * Sets the time an open circuit rejects calls before letting probes through
+     * @param durationInMillis the duration in milliseconds
+     * @return this
+     */
+    public Builder openDuration(long durationInMillis) {
+      this.openDuration = durationInMillis;
+      return this;
+    }
+
+    /**
+     * Sets the number of probe calls sent while half-open
+     * @param probeCalls the number of probe calls
+     * @return this
+     */
+    public Builder probeCalls(int probeCalls) {
+      if (probeCalls <= 0) {
+        throw new IllegalArgumentException("probeCalls must be positive");
+      }
+      this.probeCalls = probeCalls;
+      return this;
+    }
+
+    /**
+     * Sets the function giving the key of the circuit of a request, such as an endpoint template
+     * @param keyFunction the key function
+     * @return this
+     */
+    public Builder keyFunction(Function<RestRequest, String> keyFunction) {
+      this.keyFunction = keyFunction;
+      return this;
+    }
+
+    /**
+     * Build the circuit breakers
+     * @return the circuit breakers
+     */
+    public CircuitBreakers build() {
+      return new CircuitBreakers(this);
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package com.bcp.http.restclient.circuit;
+
+/**
+ * States of a {@link CircuitBreaker}
+ */
+public enum CircuitState {
+  /**
+   * Requests are sent and their outcomes recorded
+   */
+  CLOSED,
+  /**
+   * Requests fail fast without being sent
+   */
+  OPEN,
+  /**
+   * A limited number of probe requests are sent to decide whether to close the circuit
+   */
+  HALF_OPEN
+}
@@ -0,0 +1,118 @@
+package com.bcp.http.restclient.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Progress of a segmented download, saved in a small sidecar file next to the target so that
+ * an interrupted download can be resumed. It records the length and validator of the remote
+ * file and the segments already written
+ */
+final class DownloadProgress {
+
+  private final File file;
+  private final long length;
+  private final long segmentSize;
+  private final String validator;
+  private final BitSet done;
+
+  private DownloadProgress(File file, long length, long segmentSize, String validator, BitSet done) {
+    this.file = file;
+    this.length = length;
+    this.segmentSize = segmentSize;
+    this.validator = validator;
+    this.done = done;
+  }
+
+  /**
+   * Returns the progress saved in a sidecar file if it matches the remote file, a new progress
+   * otherwise
+   * @param file the sidecar file
+   * @param length the length of the remote file
+   * @param segmentSize the size of the segments
+   * @param validator the ETag or Last-Modified of the remote file, may be null
+   * @return the progress
+   */
+  static DownloadProgress load(File file, long length, long segmentSize, String validator) {
+    if (file.isFile() && validator != null) {
+      Properties properties = new Properties();
+      try (InputStream is = Files.newInputStream(file.toPath())) {
+        properties.load(is);
+        if (Long.parseLong(properties.getProperty("length")) == length
+            && Long.parseLong(properties.getProperty("segmentSize")) == segmentSize
+            && Objects.equals(properties.getProperty("validator"), validator)) {
+          BitSet done = new BitSet();
+          for (String segment : properties.getProperty("done", "").split(",")) {
+            if (!segment.isEmpty()) {
+              done.set(Integer.parseInt(segment));
+            }
+          }
+          return new DownloadProgress(file, length, segmentSize, validator, done);
+        }
+      } catch (IOException | RuntimeException e) {
+        // unreadable or stale progress, the download starts over
+      }
+    }
+    return new DownloadProgress(file, length, segmentSize, validator, new BitSet());
+  }
+
+  int getSegmentCount() {
+    return (int) ((length + segmentSize - 1) / segmentSize);
+  }
+
+  long getSegmentStart(int segment) {
+    return segment * segmentSize;
+  }
+
+  long getSegmentLength(int segment) {
+    return Math.min(segmentSize, length - getSegmentStart(segment));
+  }
+
+  synchronized boolean isDone(int segment) {
+    return done.get(segment);
+  }
+
+  synchronized boolean isComplete() {
+    return done.cardinality() == getSegmentCount();
+  }
+
+  /**
+   * Records that a segment was written and saves the progress. It is written to a temporary
+   * file first, so that a crash never leaves a truncated sidecar
+   * @param segment the segment
+   * @throws IOException in case of I/O error
+   */
+  synchronized void markDone(int segment) throws IOException {
+    done.set(segment);
+    if (validator == null) {
+      // the remote file can't be identified, so the download can't be resumed
+      return;
+    }
+    Properties properties = new Properties();
+    properties.setProperty("length", Long.toString(length));
+    properties.setProperty("segmentSize", Long.toString(segmentSize));
+    properties.setProperty("validator", validator);
+    StringBuilder segments = new StringBuilder();
+    for (int i = done.nextSetBit(0); i >= 0; i = done.nextSetBit(i + 1)) {
+      segments.append(i).append(',');
+    }
+    properties.setProperty("done", segments.toString());
+    File temporary = new File(file.getPath() + ".tmp");
+    try (OutputStream os = Files.newOutputStream(temporary.toPath())) {
+      properties.store(os, null);
+    }
+    Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  void delete() throws IOException {
+    Files.deleteIfExists(file.toPath());
+  }
+}
@@ -0,0 +1,353 @@
+package com.bcp.http.restclient.download;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.bcp.http.restclient.AsyncRestClient;
+import com.bcp.http.restclient.request.HttpMethods;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.HttpHeaders;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.response.handler.ResponseHandler;
+import com.bcp.http.restclient.util.BufferPool;
+import com.bcp.http.restclient.util.IOUtils;
+
+/**
+ * Downloads big files in segments fetched concurrently with HTTP Range requests. A HEAD request
+ * first probes the Accept-Ranges, Content-Length and validator of the file, then each segment
+ * is written at its position in the target file. The segments already written are recorded in
+ * a sidecar file, named after the target with a ".progress" suffix, so that a download
+ * interrupted by a crash or an error resumes where it stopped as long as the remote file is
+ * unchanged. Servers that don't support ranges, or that refuse the HEAD request, get a single
+ * plain download
+ */
+public class RangeDownloader {
+
+  private static final String PROGRESS_SUFFIX = ".progress";
+  private static final int HTTP_PARTIAL_CONTENT = 206;
+
+  private final long segmentSize;
+  private final int parallelism;
+
+  private RangeDownloader(Builder builder) {
+    this.segmentSize = builder.segmentSize;
+    this.parallelism = builder.parallelism;
+  }
+
+  /**
+   * Returns a new downloader builder
+   * @return the builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Downloads a file, resuming a previous download into the same target if possible
+   * @param client the client executing the requests on its workers
+   * @param request the GET request of the file
+   * @param target the file to write
+   * @return a future completed with the target once its length is verified, or exceptionally
+   * with an IOException
+   */
+  public CompletableFuture<File> download(AsyncRestClient client, RestRequest request, File target) {
+    RestRequest probe = identity(request).method(HttpMethods.HEAD).build();
+    return client.executeAsync(probe).thenCompose(response -> {
+      if (!response.isSuccessful()) {
+        // many servers and presigned urls refuse HEAD requests but serve the GET ones
+        return downloadWhole(client, request, target, -1);
+      }
+      HttpHeaders headers = response.getHeaders();
+      long length = parseLength(headers.getValue("Content-Length"));
+      if (length <= 0 || !"bytes".equalsIgnoreCase(headers.getValue("Accept-Ranges"))) {
+        return downloadWhole(client, request, target, length);
+      }
+      return new SegmentedDownload(client, request, target, length, validator(headers)).start();
+    });
+  }
+
+  /**
+   * Returns the sidecar file recording the progress of the download of a target
+   * @param target the target of the download
+   * @return the progress file
+   */
+  public static File progressFile(File target) {
+    return new File(target.getPath() + PROGRESS_SUFFIX);
+  }
+
+  public long getSegmentSize() {
+    return segmentSize;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  private static CompletableFuture<File> downloadWhole(AsyncRestClient client, RestRequest request,
+                                                       File target, long length) {
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException e) {
+      return failed(e);
+    }
+    return client.executeAsync(identity(request).build(), writer(channel, 0, length))
+        .whenComplete((response, throwable) -> {
+          try {
+            channel.close();
+          } catch (IOException e) {
+            // the response tells whether the file was written
+          }
+        })
+        .thenCompose(response -> {
+          if (!response.isSuccessful()) {
+            return failed(failure(request, response));
+          }
+          if (length >= 0 && target.length() != length) {
+            return failed(new IOException("Downloaded " + target.length() + " bytes of " + length));
+          }
+          return CompletableFuture.completedFuture(target);
+        });
+  }
+
+  /**
+   * Handler writing a response body at a position of a file
+   * @param channel the file
+   * @param position the position of the body in the file
+   * @param length the expected length of the body, -1 if unknown
+   * @return the handler, returning the number of bytes written
+   */
+  private static ResponseHandler<Long> writer(FileChannel channel, long position, long length) {
+    return new ResponseHandler<Long>() {
+      @Override
+      public Long convert(InputStream inputStream) throws IOException {
+        BufferPool pool = BufferPool.defaultPool();
+        byte[] buffer = pool.acquire(IOUtils.DEFAULT_BUFFER_SIZE);
+        try {
+          long written = 0;
+          while (length < 0 || written < length) {
+            int max = length < 0 ? buffer.length : (int) Math.min(buffer.length, length - written);
+            int read = inputStream.read(buffer, 0, max);
+            if (read < 0) {
+              break;
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+            while (bytes.hasRemaining()) {
+              channel.write(bytes, position + written + bytes.position());
+            }
+            written += read;
+          }
+          if (length >= 0 && written < length) {
+            throw new EOFException("Range ended after " + written + " of " + length + " bytes");
+          }
+          if (length >= 0 && inputStream.read() >= 0) {
+            throw new IOException("Response longer than the requested range");
+          }
+          return written;
+        } finally {
+          pool.release(buffer);
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns a builder of the request without content negotiation, so that ranges and lengths
+   * apply to the bytes of the file
+   */
+  private static RestRequest.Builder identity(RestRequest request) {
+    return request.toBuilder().header("Accept-Encoding", "identity");
+  }
+
+  /**
+   * Returns the validator of the remote file usable in If-Range: a strong ETag, or the
+   * Last-Modified date
+   */
+  private static String validator(HttpHeaders headers) {
+    String etag = headers.getValue("ETag");
+    if (etag != null && !etag.startsWith("W/")) {
+      return etag;
+    }
+    return headers.getValue("Last-Modified");
+  }
+
+  private static long parseLength(String contentLength) {
+    try {
+      return contentLength == null ? -1 : Long.parseLong(contentLength.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static IOException failure(RestRequest request, RestResponse<?> response) {
+    byte[] error = response.getRawErrorData();
+    return new IOException("Download of " + request.getEndpoint() + " failed with code "
+        + response.getResponseCode() + (error == null || error.length == 0 ? "" : ": " + new String(error)));
+  }
+
+  private static <T> CompletableFuture<T> failed(Throwable throwable) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(throwable);
+    return future;
+  }
+
+  /**
+   * State of a segmented download: workers take the pending segments one at a time, so that at
+   * most {@link #parallelism} ranges are fetched at once
+   */
+  private final class SegmentedDownload {
+
+    private final CompletableFuture<File> result = new CompletableFuture<>();
+    private final Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final AsyncRestClient client;
+    private final RestRequest request;
+    private final File target;
+    private final long length;
+    private final String validator;
+    private volatile Throwable failure;
+    private FileChannel channel;
+    private DownloadProgress progress;
+
+    private SegmentedDownload(AsyncRestClient client, RestRequest request, File target, long length,
+                              String validator) {
+      this.client = client;
+      this.request = request;
+      this.target = target;
+      this.length = length;
+      this.validator = validator;
+    }
+
+    private CompletableFuture<File> start() {
+      try {
+        progress = DownloadProgress.load(progressFile(target), length, segmentSize, validator);
+        channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > length) {
+          channel.truncate(length);
+        }
+      } catch (IOException e) {
+        return failed(e);
+      }
+      for (int segment = 0; segment < progress.getSegmentCount(); segment++) {
+        if (!progress.isDone(segment)) {
+          pending.add(segment);
+        }
+      }
+      int workers = Math.max(1, Math.min(parallelism, pending.size()));
+      activeWorkers.set(workers);
+      for (int i = 0; i < workers; i++) {
+        next();
+      }
+      return result;
+    }
+
+    private void next() {
+      Integer segment = failure == null ? pending.poll() : null;
+      if (segment == null) {
+        if (activeWorkers.decrementAndGet() == 0) {
+          finish();
+        }
+        return;
+      }
+      long start = progress.getSegmentStart(segment);
+      long segmentLength = progress.getSegmentLength(segment);
+      RestRequest.Builder range = identity(request)
+          .header("Range", "bytes=" + start + "-" + (start + segmentLength - 1));
+      if (validator != null) {
+        range.header("If-Range", validator);
+      }
+      client.executeAsync(range.build(), writer(channel, start, segmentLength))
+          .whenComplete((response, throwable) -> {
+            try {
+              if (throwable != null) {
+                throw throwable instanceof IOException ? (IOException) throwable : new IOException(throwable);
+              }
+              boolean whole = response.getResponseCode() == 200 && segmentLength == length;
+              if (!response.isSuccessful() || (response.getResponseCode() != HTTP_PARTIAL_CONTENT && !whole)) {
+                throw failure(request, response);
+              }
+              // the segment must be on disk before the progress file says so, or a crash would
+              // resume the download with a hole in the file
+              channel.force(false);
+              progress.markDone(segment);
+            } catch (IOException e) {
+              failure = e;
+            }
+            next();
+          });
+    }
+
+    private void finish() {
+      try {
+        channel.force(false);
+        channel.close();
+        if (failure != null) {
+          result.completeExceptionally(failure);
+        } else if (!progress.isComplete() || target.length() != length) {
+          result.completeExceptionally(new IOException("Downloaded " + target.length() + " bytes of " + length));
+        } else {
+          progress.delete();
+          result.complete(target);
+        }
+      } catch (IOException e) {
+        result.completeExceptionally(failure != null ? failure : e);
+      }
+    }
+  }
+
+  /**
+   * Class allowing to build a range downloader
+   */
+  public static class Builder {
+
+    private long segmentSize = 8 * 1024 * 1024;
+    private int parallelism = 4;
+
+    private Builder() {}
+
+    /**
+     * Sets the size of the ranges fetched by each request, 8 MB by default
+     * @param bytes the size in bytes
+     * @return this
+     */
+    public Builder segmentSize(long bytes) {
+      if (bytes <= 0) {
+        throw new IllegalArgumentException("segment size must be positive");
+      }
+      this.segmentSize = bytes;
+      return this;
+    }
+
+    /**
+     * Sets the number of ranges fetched at once, 4 by default. The executor of the client
+     * also bounds it
+     * @param parallelism the number of concurrent requests
+     * @return this
+     */
+    public Builder parallelism(int parallelism) {
+      if (parallelism <= 0) {
+        throw new IllegalArgumentException("parallelism must be positive");
+      }
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Builds the range downloader
+     * @return the range downloader
+     */
+    public RangeDownloader build() {
+      return new RangeDownloader(this);
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package com.bcp.http.restclient.metrics;
+
+/**
+ * Listener notified of the timings of each exchange of a client with the server, retries
+ * and hedges included. It is called on the thread that executed the request, so it should
+ * return quickly
+ */
+public interface ExchangeListener {
+
+  /**
+   * Called when an exchange is over, successful or not
+   * @param timings the timings of the exchange
+   */
+  void onExchange(ExchangeTimings timings);
+}
@@ -0,0 +1,194 @@
+package com.bcp.http.restclient.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Exchange listener aggregating the timings of the exchanges by endpoint, in
+ * {@link LatencyHistogram}s giving the percentiles of each phase. Each group of exchanges holds
+ * several histograms, so their number is capped: past the max number of keys, the exchanges of
+ * new keys are recorded in the {@link #OVERFLOW_KEY} group. Endpoints with ids in their path
+ * should be grouped by a key function returning their template
+ */
+public class ExchangeMetrics implements ExchangeListener {
+
+  /**
+   * Default max number of groups
+   */
+  public static final int DEFAULT_MAX_KEYS = 100;
+
+  /**
+   * Key of the group recording the exchanges past the max number of groups
+   */
+  public static final String OVERFLOW_KEY = "(other)";
+
+  private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+  private final Function<ExchangeTimings, String> keyFunction;
+  private final int maxKeys;
+
+  /**
+   * Creates metrics grouping the exchanges by endpoint without query, for at most
+   * {@link #DEFAULT_MAX_KEYS} endpoints
+   */
+  public ExchangeMetrics() {
+    this(timings -> withoutQuery(timings.getEndpoint()));
+  }
+
+  /**
+   *
+   * @param keyFunction the function returning the key of the group of an exchange
+   */
+  public ExchangeMetrics(Function<ExchangeTimings, String> keyFunction) {
+    this(keyFunction, DEFAULT_MAX_KEYS);
+  }
+
+  /**
+   *
+   * @param keyFunction the function returning the key of the group of an exchange
+   * @param maxKeys the max number of groups, the overflow group excluded
+   */
+  public ExchangeMetrics(Function<ExchangeTimings, String> keyFunction, int maxKeys) {
+    if (keyFunction == null) {
+      throw new IllegalArgumentException("keyFunction cannot be null");
+    }
+    if (maxKeys <= 0) {
+      throw new IllegalArgumentException("maxKeys must be positive");
+    }
+    this.keyFunction = keyFunction;
+    this.maxKeys = maxKeys;
+  }
+
+  @Override
+  public void onExchange(ExchangeTimings timings) {
+    String key = keyFunction.apply(timings);
+    EndpointMetrics metrics = endpoints.get(key);
+    if (metrics == null) {
+      // concurrent exchanges may add a few keys past the max
+      int groups = endpoints.size() - (endpoints.containsKey(OVERFLOW_KEY) ? 1 : 0);
+      if (groups >= maxKeys) {
+        key = OVERFLOW_KEY;
+      }
+      metrics = endpoints.computeIfAbsent(key, EndpointMetrics::new);
+    }
+    metrics.record(timings);
+  }
+
+  /**
+   * Returns the metrics of an endpoint
+   * @param key the key of the endpoint
+   * @return the metrics, null if there was no exchange with this endpoint
+   */
+  public EndpointMetrics getEndpointMetrics(String key) {
+    return endpoints.get(key);
+  }
+
+  /**
+   * Returns the metrics of all the endpoints, by key
+   * @return the metrics
+   */
+  public Map<String, EndpointMetrics> getEndpointMetrics() {
+    return Collections.unmodifiableMap(endpoints);
+  }
+
+  /**
+   * Clears the metrics of all the endpoints
+   */
+  public void reset() {
+    endpoints.clear();
+  }
+
+  private static String withoutQuery(String endpoint) {
+    int query = endpoint.indexOf('?');
+    return query < 0 ? endpoint : endpoint.substring(0, query);
+  }
+
+  /**
+   * Metrics of the exchanges with an endpoint
+   */
+  public static class EndpointMetrics {
+
+    private final String key;
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LatencyHistogram connect = new LatencyHistogram();
+    private final LatencyHistogram send = new LatencyHistogram();
+    private final LatencyHistogram wait = new LatencyHistogram();
+    private final LatencyHistogram receive = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    private EndpointMetrics(String key) {
+      this.key = key;
+    }
+
+    private void record(ExchangeTimings timings) {
+      total.record(timings.getTotalTime(TimeUnit.NANOSECONDS));
+      if (timings.getHeadersNanos() == 0) {
+        errors.increment();
+        return;
+      }
+      connect.record(timings.getConnectTime(TimeUnit.NANOSECONDS));
+      send.record(timings.getSendTime(TimeUnit.NANOSECONDS));
+      wait.record(timings.getWaitTime(TimeUnit.NANOSECONDS));
+      receive.record(timings.getReceiveTime(TimeUnit.NANOSECONDS));
+      if (timings.getResponseCode() >= 500) {
+        errors.increment();
+      }
+      bytesSent.add(Math.max(0, timings.getBytesSent()));
+      bytesReceived.add(timings.getBytesReceived());
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    /**
+     * Returns the durations of the whole exchanges, failed ones included
+     * @return the histogram
+     */
+    public LatencyHistogram getTotal() {
+      return total;
+    }
+
+    public LatencyHistogram getConnect() {
+      return connect;
+    }
+
+    public LatencyHistogram getSend() {
+      return send;
+    }
+
+    /**
+     * Returns the durations between the end of the request and the response headers
+     * @return the histogram
+     */
+    public LatencyHistogram getWait() {
+      return wait;
+    }
+
+    public LatencyHistogram getReceive() {
+      return receive;
+    }
+
+    /**
+     * Returns the number of exchanges that got no response or a 5xx one
+     * @return the number of errors
+     */
+    public long getErrors() {
+      return errors.sum();
+    }
+
+    public long getBytesSent() {
+      return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+      return bytesReceived.sum();
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.bcp.http.restclient.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timestamps and sizes of the phases of an exchange: connection, sending of the body, wait
+ * for the response headers and reading of the body by the response handler. Timestamps are
+ * {@link System#nanoTime()} values, 0 when the exchange failed before the phase. For requests
+ * with a body, the connection is opened while sending it, so the connect phase is empty and
+ * counted in the send phase
+ */
+public class ExchangeTimings {
+
+  private final String method;
+  private final String endpoint;
+  private final int responseCode;
+  private final long startNanos;
+  private final long connectedNanos;
+  private final long sentNanos;
+  private final long headersNanos;
+  private final long endNanos;
+  private final long bytesSent;
+  private final long bytesReceived;
+
+  public ExchangeTimings(String method, String endpoint, int responseCode, long startNanos,
+                         long connectedNanos, long sentNanos, long headersNanos, long endNanos,
+                         long bytesSent, long bytesReceived) {
+    this.method = method;
+    this.endpoint = endpoint;
+    this.responseCode = responseCode;
+    this.startNanos = startNanos;
+    this.connectedNanos = connectedNanos;
+    this.sentNanos = sentNanos;
+    this.headersNanos = headersNanos;
+    this.endNanos = endNanos;
+    this.bytesSent = bytesSent;
+    this.bytesReceived = bytesReceived;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  /**
+   * Returns the response code, or one of the negative codes of
+   * {@link com.bcp.http.restclient.response.RestResponse} if there was no response
+   * @return the response code
+   */
+  public int getResponseCode() {
+    return responseCode;
+  }
+
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  public long getConnectedNanos() {
+    return connectedNanos;
+  }
+
+  public long getSentNanos() {
+    return sentNanos;
+  }
+
+  public long getHeadersNanos() {
+    return headersNanos;
+  }
+
+  public long getEndNanos() {
+    return endNanos;
+  }
+
+  /**
+   * Returns the time spent opening the connection, DNS resolution and TLS handshake included
+   * @param unit the time unit
+   * @return the connect time, 0 if unknown
+   */
+  public long getConnectTime(TimeUnit unit) {
+    return between(startNanos, connectedNanos, unit);
+  }
+
+  /**
+   * Returns the time spent writing the body of the request
+   * @param unit the time unit
+   * @return the send time, 0 if unknown
+   */
+  public long getSendTime(TimeUnit unit) {
+    return between(connectedNanos, sentNanos, unit);
+  }
+
+  /**
+   * Returns the time spent waiting for the response headers once the request was sent
+   * @param unit the time unit
+   * @return the wait time, 0 if unknown
+   */
+  public long getWaitTime(TimeUnit unit) {
+    return between(sentNanos, headersNanos, unit);
+  }
+
+  /**
+   * Returns the time spent reading and converting the response body
+   * @param unit the time unit
+   * @return the receive time, 0 if unknown
+   */
+  public long getReceiveTime(TimeUnit unit) {
+    return between(headersNanos, endNanos, unit);
+  }
+
+  /**
+   * Returns the duration of the whole exchange
+   * @param unit the time unit
+   * @return the total time
+   */
+  public long getTotalTime(TimeUnit unit) {
+    return between(startNanos, endNanos, unit);
+  }
+
+  /**
+   * Returns the number of body bytes written, -1 if unknown
+   * @return the number of bytes sent
+   */
+  public long getBytesSent() {
+    return bytesSent;
+  }
+
+  /**
+   * Returns the number of body bytes received, as sent on the wire
+   * @return the number of bytes received
+   */
+  public long getBytesReceived() {
+    return bytesReceived;
+  }
+
+  private static long between(long from, long to, TimeUnit unit) {
+    return from == 0 || to == 0 ? 0 : unit.convert(to - from, TimeUnit.NANOSECONDS);
+  }
+}
@@ -0,0 +1,160 @@
+package com.bcp.http.restclient.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of durations: values are grouped by power of two, each power being
+ * split in 16 linear sub-buckets, so that percentiles are exact to about 6%. Recording a value
+ * doesn't allocate and only increments an atomic counter, in a stripe of counters chosen by
+ * thread so that concurrent threads rarely write the same cache lines
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+  private static final int PADDING = 8;
+
+  private final int stripeMask;
+  private final AtomicLongArray counts;
+  private final AtomicLongArray totals;
+
+  public LatencyHistogram() {
+    this(Math.min(4, Integer.highestOneBit(Runtime.getRuntime().availableProcessors())));
+  }
+
+  /**
+   *
+   * @param stripes the number of stripes of counters, rounded to a power of two
+   */
+  public LatencyHistogram(int stripes) {
+    if (stripes <= 0) {
+      throw new IllegalArgumentException("stripes must be positive");
+    }
+    int rounded = Integer.highestOneBit(stripes);
+    this.stripeMask = rounded - 1;
+    this.counts = new AtomicLongArray(rounded * BUCKETS);
+    // count, sum and max of each stripe, on their own cache line
+    this.totals = new AtomicLongArray(rounded * PADDING);
+  }
+
+  /**
+   * Records a duration
+   * @param nanos the duration in nanoseconds
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    int stripe = (int) Thread.currentThread().getId() & stripeMask;
+    counts.incrementAndGet(stripe * BUCKETS + index(value));
+    int base = stripe * PADDING;
+    totals.incrementAndGet(base);
+    totals.addAndGet(base + 1, value);
+    long max;
+    while (value > (max = totals.get(base + 2))) {
+      if (totals.compareAndSet(base + 2, max, value)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of recorded values
+   * @return the count
+   */
+  public long getCount() {
+    return sumTotals(0);
+  }
+
+  /**
+   * Returns the mean of the recorded values
+   * @param unit the time unit
+   * @return the mean, 0 if nothing was recorded
+   */
+  public double getMean(TimeUnit unit) {
+    long count = getCount();
+    return count == 0 ? 0 : (double) unit.convert(sumTotals(1), TimeUnit.NANOSECONDS) / count;
+  }
+
+  /**
+   * Returns the largest recorded value
+   * @param unit the time unit
+   * @return the max
+   */
+  public long getMax(TimeUnit unit) {
+    return unit.convert(max(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the value below which the given fraction of the recorded values fall
+   * @param percentile the fraction, 0.99 for the p99
+   * @param unit the time unit
+   * @return the percentile, 0 if nothing was recorded
+   */
+  public long getPercentile(double percentile, TimeUnit unit) {
+    long[] merged = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      long bucketCount = counts.get(i);
+      merged[i % BUCKETS] += bucketCount;
+      count += bucketCount;
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += merged[i];
+      if (seen >= rank) {
+        return unit.convert(Math.min(upperBound(i), max()), TimeUnit.NANOSECONDS);
+      }
+    }
+    return getMax(unit);
+  }
+
+  /**
+   * Clears the recorded values
+   */
+  public void reset() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0);
+    }
+    for (int i = 0; i < totals.length(); i++) {
+      totals.set(i, 0);
+    }
+  }
+
+  private long max() {
+    long max = 0;
+    for (int i = 2; i < totals.length(); i += PADDING) {
+      max = Math.max(max, totals.get(i));
+    }
+    return max;
+  }
+
+  private long sumTotals(int offset) {
+    long sum = 0;
+    for (int i = offset; i < totals.length(); i += PADDING) {
+      sum += totals.get(i);
+    }
+    return sum;
+  }
+
+  static int index(long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+  }
+
+  static long upperBound(int index) {
+    if (index < 2 * SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long mantissa = index % SUB_BUCKETS + SUB_BUCKETS;
+    return ((mantissa + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,137 @@
+package com.bcp.http.restclient.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free token bucket, implemented as a generic cell rate algorithm: the bucket state is a
+ * single theoretical arrival time updated with compare-and-set, so that acquiring a permit is a
+ * few atomic operations whatever the number of threads
+ */
+public class RateLimiter {
+
+  private final long intervalNanos;
+  private final long toleranceNanos;
+  private final AtomicLong theoreticalArrival;
+  private final LongAdder granted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder throttled = new LongAdder();
+
+  /**
+   *
+   * @param permitsPerSecond the sustained rate
+   * @param burst the number of permits that can be acquired at once after an idle period
+   */
+  public RateLimiter(double permitsPerSecond, int burst) {
+    if (permitsPerSecond <= 0 || burst <= 0) {
+      throw new IllegalArgumentException("rate and burst must be positive");
+    }
+    this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+    this.toleranceNanos = intervalNanos * (burst - 1);
+    this.theoreticalArrival = new AtomicLong(System.nanoTime());
+  }
+
+  /**
+   * Acquires a permit if one is available right now
+   * @return whether the permit was acquired
+   */
+  public boolean tryAcquire() {
+    return reserve(0) == 0;
+  }
+
+  /**
+   * Acquires a permit, waiting for it if needed
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public void acquire() throws InterruptedException {
+    TimeUnit.NANOSECONDS.sleep(reserve(Long.MAX_VALUE));
+  }
+
+  /**
+   * Acquires a permit, waiting for it at most the given time
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return whether the permit was acquired
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+    long wait = reserve(unit.toNanos(timeout));
+    if (wait < 0) {
+      return false;
+    }
+    TimeUnit.NANOSECONDS.sleep(wait);
+    return true;
+  }
+
+  /**
+   * Reserves the next permit without waiting for it
+   * @param maxWaitNanos the longest wait accepted
+   * @return the time to wait before using the permit in nanoseconds, or -1 if it would be longer
+   * than the max wait, in which case nothing is reserved
+   */
+  public long reserve(long maxWaitNanos) {
+    while (true) {
+      long now = System.nanoTime();
+      long arrival = theoreticalArrival.get();
+      long start = Math.max(arrival, now);
+      long wait = Math.max(0, start - toleranceNanos - now);
+      if (wait > maxWaitNanos) {
+        rejected.increment();
+        return -1;
+      }
+      if (theoreticalArrival.compareAndSet(arrival, start + intervalNanos)) {
+        granted.increment();
+        return wait;
+      }
+    }
+  }
+
+  /**
+   * Gives back a permit reserved with {@link #reserve(long)} that won't be used, moving the
+   * theoretical arrival time back by one interval
+   */
+  public void cancel() {
+    theoreticalArrival.addAndGet(-intervalNanos);
+    granted.decrement();
+  }
+
+  /**
+   * Stops granting permits for the given time, after the server throttled a request
+   * @param pauseNanos the time during which no permit is granted
+   */
+  public void pause(long pauseNanos) {
+    throttled.increment();
+    long target = System.nanoTime() + pauseNanos + toleranceNanos;
+    long arrival;
+    while ((arrival = theoreticalArrival.get()) < target) {
+      if (theoreticalArrival.compareAndSet(arrival, target)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of permits granted
+   * @return the number of permits granted
+   */
+  public long getGranted() {
+    return granted.sum();
+  }
+
+  /**
+   * Returns the number of permits refused because the wait would have been too long
+   * @return the number of permits refused
+   */
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  /**
+   * Returns the number of times the server throttled the requests
+   * @return the number of throttled responses
+   */
+  public long getThrottled() {
+    return throttled.sum();
+  }
+}
@@ -0,0 +1,207 @@
+package com.bcp.http.restclient.ratelimit;
+
+import com.bcp.http.restclient.request.RestRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Rate limits of a client: a limiter for the whole host, and limiters for endpoint patterns
+ * where '*' matches any part of a path segment and '**' any number of segments. A request
+ * takes a permit from the host limiter and from the first limiter whose pattern matches its
+ * endpoint. When the server answers 429, the limiters of the request are paused for the
+ * Retry-After delay, or for the default pause
+ */
+public class RateLimits {
+
+  private final RateLimiter hostLimiter;
+  private final List<Pattern> patterns;
+  private final List<RateLimiter> endpointLimiters;
+  private final Map<String, RateLimiter> byPattern;
+  private final long maxWaitNanos;
+  private final long defaultPauseNanos;
+
+  private RateLimits(Builder builder) {
+    this.hostLimiter = builder.hostLimiter;
+    this.patterns = new ArrayList<>();
+    this.endpointLimiters = new ArrayList<>();
+    for (Map.Entry<String, RateLimiter> entry : builder.endpointLimiters.entrySet()) {
+      patterns.add(toRegex(entry.getKey()));
+      endpointLimiters.add(entry.getValue());
+    }
+    this.byPattern = Collections.unmodifiableMap(new LinkedHashMap<>(builder.endpointLimiters));
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxWait);
+    this.defaultPauseNanos = TimeUnit.MILLISECONDS.toNanos(builder.defaultPause);
+  }
+
+  /**
+   * Returns a new rate limits builder
+   * @return the rate limits builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Reserves the permits of a request
+   * @param request the request
+   * @return the time to wait before sending the request in nanoseconds, or -1 if it exceeds
+   * the max wait
+   */
+  public long reserve(RestRequest request) {
+    // the endpoint, more likely to be over quota, goes first, and gives back its permit if the
+    // host rejects the request, so that a rejected request never consumes the quota of others
+    long wait = 0;
+    RateLimiter endpointLimiter = endpointLimiter(request);
+    if (endpointLimiter != null) {
+      wait = endpointLimiter.reserve(maxWaitNanos);
+      if (wait < 0) {
+        return -1;
+      }
+    }
+    if (hostLimiter != null) {
+      long hostWait = hostLimiter.reserve(maxWaitNanos);
+      if (hostWait < 0) {
+        if (endpointLimiter != null) {
+          endpointLimiter.cancel();
+        }
+        return -1;
+      }
+      wait = Math.max(wait, hostWait);
+    }
+    return wait;
+  }
+
+  /**
+   * Pauses the limiters of a request the server throttled
+   * @param request the request
+   * @param retryAfterMillis the delay asked by the server, 0 if none
+   */
+  public void onThrottled(RestRequest request, long retryAfterMillis) {
+    long pause = retryAfterMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(retryAfterMillis) : defaultPauseNanos;
+    RateLimiter endpointLimiter = endpointLimiter(request);
+    if (endpointLimiter != null) {
+      endpointLimiter.pause(pause);
+    } else if (hostLimiter != null) {
+      hostLimiter.pause(pause);
+    }
+  }
+
+  public RateLimiter getHostLimiter() {
+    return hostLimiter;
+  }
+
+  /**
+   * Returns the endpoint limiters, by pattern
+   * @return the endpoint limiters
+   */
+  public Map<String, RateLimiter> getEndpointLimiters() {
+    return byPattern;
+  }
+
+  private RateLimiter endpointLimiter(RestRequest request) {
+    if (patterns.isEmpty()) {
+      return null;
+    }
+    String endpoint = request.getEndpoint();
+    int query = endpoint.indexOf('?');
+    String path = query < 0 ? endpoint : endpoint.substring(0, query);
+    if (path.startsWith("/")) {
+      path = path.substring(1);
+    }
+    for (int i = 0; i < patterns.size(); i++) {
+      if (patterns.get(i).matcher(path).matches()) {
+        return endpointLimiters.get(i);
+      }
+    }
+    return null;
+  }
+
+  private static Pattern toRegex(String pattern) {
+    String path = pattern.startsWith("/") ? pattern.substring(1) : pattern;
+    StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < path.length(); i++) {
+      char c = path.charAt(i);
+      if (c == '*' && i + 1 < path.length() && path.charAt(i + 1) == '*') {
+        regex.append(".*");
+        i++;
+      } else if (c == '*') {
+        regex.append("[^/]*");
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  /**
+   * Class allowing to build rate limits
+   */
+  public static class Builder {
+
+    private RateLimiter hostLimiter;
+    private final Map<String, RateLimiter> endpointLimiters = new LinkedHashMap<>();
+    private long maxWait = Long.MAX_VALUE / 1_000_000;
+    private long defaultPause = 1000;
+
+    private Builder() {}
+
+    /**
+     * Limits all the requests of the client
+     * @param permitsPerSecond the sustained rate
+     * @param burst the number of requests that can be sent at once
+     * @return this
+     */
+    public Builder host(double permitsPerSecond, int burst) {
+      this.hostLimiter = new RateLimiter(permitsPerSecond, burst);
+      return this;
+    }
+
+    /**
+     * Limits the requests whose endpoint matches the given pattern, such as "users/*"
+     * @param pattern the endpoint pattern
+     * @param permitsPerSecond the sustained rate
+     * @param burst the number of requests that can be sent at once
+     * @return this
+     */
+    public Builder endpoint(String pattern, double permitsPerSecond, int burst) {
+      endpointLimiters.put(pattern, new RateLimiter(permitsPerSecond, burst));
+      return this;
+    }
+
+    /**
+     * Sets the longest time a request waits for its permits, 0 to reject the requests over
+     * quota instead of waiting. Requests are rejected with a
+     * {@link com.bcp.http.restclient.response.RestResponse#RATE_LIMITED} response
+     * @param durationInMillis the duration in milliseconds
+     * @return this
+     */
+    public Builder maxWait(long durationInMillis) {
+      this.maxWait = durationInMillis;
+      return this;
+    }
+
+    /**
+     * Sets the pause applied after a 429 response without Retry-After header
+     * @param durationInMillis the duration in milliseconds
+     * @return this
+     */
+    public Builder defaultPause(long durationInMillis) {
+      this.defaultPause = durationInMillis;
+      return this;
+    }
+
+    /**
+     * Build the rate limits
+     * @return the rate limits
+     */
+    public RateLimits build() {
+      return new RateLimits(this);
+    }
+  }
+}
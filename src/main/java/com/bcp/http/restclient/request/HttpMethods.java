@@ -7,7 +7,20 @@ public final class HttpMethods {
   public static final String DELETE = "DELETE";
   public static final String POST = "POST";
   public static final String PATCH = "PATCH";
+  public static final String HEAD = "HEAD";
+  public static final String OPTIONS = "OPTIONS";
 
   private HttpMethods() {}
 
+  /**
+   * Returns whether sending a request with the given method several times has the same effect
+   * as sending it once
+   * @param method the method
+   * @return whether the method is idempotent
+   */
+  public static boolean isIdempotent(String method) {
+    return GET.equals(method) || HEAD.equals(method) || OPTIONS.equals(method)
+        || PUT.equals(method) || DELETE.equals(method);
+  }
+
 }
@@ -0,0 +1,155 @@
+package com.bcp.http.restclient.request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.bcp.http.restclient.util.UrlEncoding;
+
+/**
+ * Template of requests whose endpoint has variables, such as "users/{id}/orders?status={status}".
+ * The template is parsed once, so that requests to hot endpoints can be built cheaply: binding
+ * values only appends the literal parts and the percent-encoded values to a presized builder
+ */
+public final class RequestTemplate {
+
+  private static final RestRequest GET_REQUEST = RestRequest.builder("").build();
+
+  private final String template;
+  private final String[] literals;
+  private final int[] placeholders;
+  private final String[] variables;
+  private final int literalLength;
+  private final RestRequest defaults;
+
+  private RequestTemplate(String template, RestRequest defaults) {
+    List<String> literals = new ArrayList<>();
+    List<Integer> placeholders = new ArrayList<>();
+    List<String> variables = new ArrayList<>();
+    int from = 0;
+    for (int open = template.indexOf('{'); open >= 0; open = template.indexOf('{', from)) {
+      int close = template.indexOf('}', open);
+      if (close < 0) {
+        throw new IllegalArgumentException("Unclosed variable in template " + template);
+      }
+      String variable = template.substring(open + 1, close).trim();
+      if (variable.isEmpty()) {
+        throw new IllegalArgumentException("Empty variable in template " + template);
+      }
+      literals.add(template.substring(from, open));
+      int index = variables.indexOf(variable);
+      if (index < 0) {
+        index = variables.size();
+        variables.add(variable);
+      }
+      placeholders.add(index);
+      from = close + 1;
+    }
+    literals.add(template.substring(from));
+    this.template = template;
+    this.literals = literals.toArray(new String[0]);
+    this.placeholders = new int[placeholders.size()];
+    for (int i = 0; i < this.placeholders.length; i++) {
+      this.placeholders[i] = placeholders.get(i);
+    }
+    this.variables = variables.toArray(new String[0]);
+    int length = 0;
+    for (String literal : this.literals) {
+      length += literal.length();
+    }
+    this.literalLength = length;
+    this.defaults = defaults;
+  }
+
+  /**
+   * Parses a template of GET requests
+   * @param template the endpoint template, whose variables are between braces
+   * @return the request template
+   */
+  public static RequestTemplate compile(String template) {
+    return compile(template, GET_REQUEST);
+  }
+
+  /**
+   * Parses a template of requests, which have the method, headers, timeout, body and retry
+   * policy of the given request
+   * @param template the endpoint template, whose variables are between braces
+   * @param defaults the request whose data, but the endpoint, is copied into the built requests
+   * @return the request template
+   */
+  public static RequestTemplate compile(String template, RestRequest defaults) {
+    if (template == null) {
+      throw new IllegalArgumentException("template cannot be null");
+    }
+    return new RequestTemplate(template, defaults);
+  }
+
+  /**
+   * Returns the names of the variables, in the order of their first occurrence
+   * @return the variables
+   */
+  public List<String> getVariables() {
+    return Collections.unmodifiableList(Arrays.asList(variables));
+  }
+
+  /**
+   * Returns the endpoint with the given values of the variables, percent-encoded
+   * @param values the values of the variables, in the order of {@link #getVariables()}
+   * @return the endpoint
+   */
+  public String expand(Object... values) {
+    if (values.length != variables.length) {
+      throw new IllegalArgumentException("Expected " + variables.length + " values for template "
+          + template + ", got " + values.length);
+    }
+    StringBuilder builder = new StringBuilder(literalLength + 16 * placeholders.length);
+    for (int i = 0; i < placeholders.length; i++) {
+      builder.append(literals[i]);
+      UrlEncoding.appendEncoded(builder, String.valueOf(values[placeholders[i]]));
+    }
+    return builder.append(literals[placeholders.length]).toString();
+  }
+
+  /**
+   * Returns the endpoint with the given values of the variables, percent-encoded
+   * @param values the values of the variables, by name
+   * @return the endpoint
+   */
+  public String expand(Map<String, ?> values) {
+    Object[] ordered = new Object[variables.length];
+    for (int i = 0; i < variables.length; i++) {
+      if (!values.containsKey(variables[i])) {
+        throw new IllegalArgumentException("No value for variable " + variables[i] + " of template " + template);
+      }
+      ordered[i] = values.get(variables[i]);
+    }
+    return expand(ordered);
+  }
+
+  /**
+   * Returns a builder of a request to the endpoint with the given values of the variables,
+   * to which parameters or a body can still be added
+   * @param values the values of the variables, in the order of {@link #getVariables()}
+   * @return the request builder
+   */
+  public RestRequest.Builder request(Object... values) {
+    return defaults.toBuilder(expand(values));
+  }
+
+  /**
+   * Returns a builder of a request to the endpoint with the given values of the variables,
+   * to which parameters or a body can still be added
+   * @param values the values of the variables, by name
+   * @return the request builder
+   */
+  public RestRequest.Builder request(Map<String, ?> values) {
+    return defaults.toBuilder(expand(values));
+  }
+
+  @Override
+  public String toString() {
+    return template;
+  }
+}
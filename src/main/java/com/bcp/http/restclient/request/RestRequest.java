@@ -7,9 +7,13 @@ import static com.bcp.http.restclient.response.HttpHeaders.JSON_TYPE;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.bcp.http.restclient.request.body.BodyProcessor;
+import com.bcp.http.restclient.response.BodyLimits;
+import com.bcp.http.restclient.retry.RetryPolicy;
+import com.bcp.http.restclient.util.UrlEncoding;
 
 /**
  * Class that holds REST request data
@@ -21,9 +25,11 @@ public class RestRequest {
   private final String method;
   private final Integer timeout;
   private final BodyProcessor bodyProcessor;
+  private final RetryPolicy retryPolicy;
+  private final BodyLimits bodyLimits;
 
   private RestRequest(String endpoint, Map<String, String> headers, String method, Integer timeout,
-      BodyProcessor bodyProcessor) {
+      BodyProcessor bodyProcessor, RetryPolicy retryPolicy, BodyLimits bodyLimits) {
     if (endpoint == null) {
       throw new IllegalArgumentException("URL cannot be null");
     }
@@ -35,6 +41,8 @@ public class RestRequest {
     this.method = method;
     this.timeout = timeout;
     this.bodyProcessor = bodyProcessor;
+    this.retryPolicy = retryPolicy;
+    this.bodyLimits = bodyLimits;
   }
 
   /**
@@ -90,18 +98,54 @@ public class RestRequest {
     return bodyProcessor;
   }
 
+  /**
+   * Returns the retry policy of this request
+   * @return the retry policy, null to use the one of the client
+   */
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /**
+   * Returns the limits on the size of the response body of this request
+   * @return the body limits, null to use the ones of the client
+   */
+  public BodyLimits getBodyLimits() {
+    return bodyLimits;
+  }
+
+  /**
+   * Returns a new request builder initialized with the data of this request
+   * @return the request builder
+   */
+  public Builder toBuilder() {
+    return toBuilder(endpoint);
+  }
+
+  Builder toBuilder(String endpoint) {
+    return new Builder(endpoint)
+        .method(method)
+        .timeout(timeout)
+        .headers(headers)
+        .body(bodyProcessor)
+        .retryPolicy(retryPolicy)
+        .bodyLimits(bodyLimits);
+  }
+
   /**
    * Class allowing to build a REST request
    */
   public static class Builder {
 
     private final Map<String, String> headers = new HashMap<>();
-    private final Map<String, Object> parameters = new HashMap<>();
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
     private final String endpoint;
     private String method = GET;
     private Integer timeout = null;
 
     private BodyProcessor bodyProcessor;
+    private RetryPolicy retryPolicy = null;
+    private BodyLimits bodyLimits = null;
 
     private Builder(String endpoint) {
       this.endpoint = endpoint == null ? "" : endpoint;
@@ -177,6 +221,26 @@ public class RestRequest {
       return this;
     }
 
+    /**
+     * Sets the retry policy of this request, overriding the one of the client
+     * @param retryPolicy the retry policy, null to use the one of the client
+     * @return this
+     */
+    public Builder retryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Sets the limits on the size of the response body, overriding the ones of the client
+     * @param bodyLimits the body limits, null to use the ones of the client
+     * @return this
+     */
+    public Builder bodyLimits(BodyLimits bodyLimits) {
+      this.bodyLimits = bodyLimits;
+      return this;
+    }
+
     /**
      * Sets a header for this request
      * @param name the name of the header
@@ -240,7 +304,8 @@ public class RestRequest {
     }
 
     /**
-     * Adds an url parameter to this request
+     * Adds an url parameter to this request. Parameters are percent-encoded and appended in
+     * the order they were added
      * @param urlParameter the url parameter
      * @param value the value of this parameter
      * @return this
@@ -265,19 +330,22 @@ public class RestRequest {
      * @return the rest request
      */
     public RestRequest build() {
-      return new RestRequest(endpointWithParameters(), headers, method, timeout, bodyProcessor);
+      return new RestRequest(endpointWithParameters(), headers, method, timeout, bodyProcessor,
+          retryPolicy, bodyLimits);
     }
 
     private String endpointWithParameters() {
-      StringBuilder builder = new StringBuilder().append(endpoint);
-      if (parameters.size() > 0) {
-        builder.append('?');
-        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
-          builder.append(String.format("%s=%s", entry.getKey(), entry.getValue()));
-          builder.append('&');
-        }
-        builder.deleteCharAt(builder.length() - 1); //delete last '&'
+      if (parameters.isEmpty()) {
+        return endpoint;
+      }
+      StringBuilder builder = new StringBuilder(endpoint.length() + 16 * parameters.size())
+          .append(endpoint)
+          .append(endpoint.indexOf('?') < 0 ? '?' : '&');
+      for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+        UrlEncoding.appendEncoded(builder, entry.getKey()).append('=');
+        UrlEncoding.appendEncoded(builder, String.valueOf(entry.getValue())).append('&');
       }
+      builder.setLength(builder.length() - 1); //delete last '&'
       return builder.toString();
     }
   }
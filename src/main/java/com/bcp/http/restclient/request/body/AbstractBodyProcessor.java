@@ -2,23 +2,98 @@ package com.bcp.http.restclient.request.body;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URLConnection;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.bcp.http.restclient.util.CountingOutputStream;
 
 /**
- * Class to extend in order to implement a custom {@link BodyProcessor}
+ * Class to extend in order to implement a custom {@link BodyProcessor}.
+ * The body is streamed to the server without being buffered when {@link #contentLength()} is
+ * known, and in chunks when the processor opts in with {@link #isChunked()}. Otherwise the
+ * connection buffers the body to send its Content-Length
  */
 public abstract class AbstractBodyProcessor implements BodyProcessor {
 
+  /**
+   * Default size of the chunks sent when the content length is unknown
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+  private final int chunkSize;
+
+  protected AbstractBodyProcessor() {
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   *
+   * @param chunkSize the size of the chunks sent when the content length is unknown
+   */
+  protected AbstractBodyProcessor(int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunk size must be positive");
+    }
+    this.chunkSize = chunkSize;
+  }
+
   @Override
   public final void prepareConnection(URLConnection connection) throws IOException {
+    prepareConnection(connection, null);
+  }
+
+  /**
+   * Prepares the connection and writes the body, adding the number of bytes written to a counter
+   * @param connection the connection
+   * @param bytesWritten the counter of written bytes, null not to count them
+   * @throws IOException in case of I/O error
+   */
+  public final void prepareConnection(URLConnection connection, LongAdder bytesWritten)
+      throws IOException {
     connection.setDoOutput(true);
     prepareURLConnection(connection);
+    if (connection instanceof HttpURLConnection) {
+      long contentLength = contentLength();
+      if (contentLength >= 0) {
+        ((HttpURLConnection) connection).setFixedLengthStreamingMode(contentLength);
+      } else if (isChunked()) {
+        ((HttpURLConnection) connection).setChunkedStreamingMode(chunkSize);
+      }
+    }
     try (OutputStream oStream =  connection.getOutputStream()) {
-      writeContent(oStream);
+      writeContent(bytesWritten == null ? oStream : new CountingOutputStream(oStream, bytesWritten));
     }
   }
 
   protected abstract void writeContent(OutputStream oStream) throws IOException;
 
   protected void prepareURLConnection(URLConnection connection) {}
-}
\ No newline at end of file
+
+  /**
+   * Returns the exact number of bytes {@link #writeContent(OutputStream)} will write
+   * @return the content length, or -1 if it isn't known in advance
+   * @throws IOException in case of I/O error
+   */
+  protected long contentLength() throws IOException {
+    return -1;
+  }
+
+  /**
+   * Returns whether a body of unknown length is sent in chunks rather than buffered. Chunked
+   * bodies aren't held in memory, but some servers and proxies reject them and the connection
+   * can't send them again after an authentication challenge or a redirect
+   * @return whether the body is chunked when its length is unknown, false by default
+   */
+  protected boolean isChunked() {
+    return false;
+  }
+
+  /**
+   * Returns the size of the chunks sent when the content length is unknown
+   * @return the chunk size
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+}
@@ -15,4 +15,12 @@ public interface BodyProcessor {
    */
   void prepareConnection(URLConnection connection) throws IOException;
 
+  /**
+   * Returns whether the body can be written again, for instance when a request is retried
+   * @return whether the body is replayable
+   */
+  default boolean isReplayable() {
+    return false;
+  }
+
 }
@@ -1,17 +1,14 @@
 package com.bcp.http.restclient.request.body;
 
-import static com.bcp.http.restclient.response.HttpHeaders.CONTENT_TYPE_HEADER;
-
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 import com.bcp.http.restclient.util.BytesContainer;
+import com.bcp.http.restclient.util.ContentEncodings;
 import com.bcp.http.restclient.util.IOUtils;
 import com.bcp.http.restclient.util.ISSupplier;
 
@@ -27,7 +24,7 @@ public final class BodyProcessors {
   }
 
   public static BodyProcessor multipartFile(File file, String key, int bufferSize) {
-    return new MultipartFileBodyProcessor(file, key, bufferSize);
+    return multipart().bufferSize(bufferSize).file(key, file).build();
   }
 
   public static BodyProcessor multipartFile(File file, String key) {
@@ -47,11 +44,11 @@ public final class BodyProcessors {
   }
 
   public static BodyProcessor multipartBytes(BytesContainer bytesContainer, String name, String key, int bufferSize) {
-    return new MultipartByteContainerBodyProcessor(bytesContainer, name, key, bufferSize);
+    return multipart().bufferSize(bufferSize).bytes(key, bytesContainer, name).build();
   }
 
   public static BodyProcessor multipartStream(ISSupplier isSupplier, String name, String key) {
-    return multipartStream(isSupplier, key, name, IOUtils.DEFAULT_BUFFER_SIZE);
+    return multipartStream(isSupplier, name, key, IOUtils.DEFAULT_BUFFER_SIZE);
   }
 
   public static BodyProcessor multipartStream(ISSupplier isSupplier, String name) {
@@ -64,7 +61,15 @@ public final class BodyProcessors {
 
   public static BodyProcessor multipartStream(ISSupplier isSupplier, String name, String key,
       int bufferSize) {
-    return new MultipartInputStreamBodyProcessor(isSupplier, key, name, bufferSize);
+    return multipart().bufferSize(bufferSize).stream(key, isSupplier, name).build();
+  }
+
+  /**
+   * Returns a builder of a multipart/form-data body with any number of fields and files
+   * @return the multipart body builder
+   */
+  public static MultipartBodyProcessor.Builder multipart() {
+    return MultipartBodyProcessor.builder();
   }
 
   public static BodyProcessor bytes(byte[] bytes) {
@@ -72,135 +77,74 @@ public final class BodyProcessors {
   }
 
   public static BodyProcessor stream(ISSupplier isSupplier) {
-    return new InputStreamBodyProcessor(isSupplier);
+    return stream(isSupplier, AbstractBodyProcessor.DEFAULT_CHUNK_SIZE);
   }
 
-  public static BodyProcessor file(File file) {
-    return new FileBodyProcessor(file);
+  /**
+   * Body processor sending the content of a stream, whose length is unknown, in chunks
+   * @param isSupplier the supplier of the stream
+   * @param chunkSize the size of the chunks
+   * @return the body processor
+   */
+  public static BodyProcessor stream(ISSupplier isSupplier, int chunkSize) {
+    return new InputStreamBodyProcessor(isSupplier, chunkSize);
   }
 
-  private static class StringBodyProcessor extends AbstractBodyProcessor {
-
-    private final String content;
-
-    private StringBodyProcessor(String content) {
-      this.content = content;
-    }
-
-    @Override
-    public void writeContent(OutputStream oStream) throws IOException {
-      try (OutputStreamWriter wr = new OutputStreamWriter(oStream)) {
-        wr.write(content);
-        wr.flush();
-      }
-    }
+  public static BodyProcessor file(File file) {
+    return new FileBodyProcessor(file);
   }
 
-  private abstract static class MultipartBodyProcessor extends AbstractBodyProcessor {
-
-    private final String boundary = "*****";
-    private final String crlf = "\r\n";
-    private final String twoHyphens = "--";
-    private final String key;
-    private final String name;
-    private final int bufferSize;
-
-    MultipartBodyProcessor(String name, String key, int bufferSize) {
-      this.name = name;
-      this.key = key;
-      this.bufferSize = bufferSize;
-    }
-
-    @Override
-    protected void writeContent(OutputStream oStream) throws IOException {
-      try (DataOutputStream request = new DataOutputStream(
-          oStream)) {
-        request.writeBytes(twoHyphens + boundary + crlf);
-        request.writeBytes("Content-Disposition: form-data; name=\"" +
-            key + "\";filename=\"" +
-            name + "\"" + crlf);
-        request.writeBytes(crlf);
-        writeMultipart(request, bufferSize);
-        request.writeBytes(crlf);
-        request.writeBytes(twoHyphens + boundary + twoHyphens + crlf);
-        request.flush();
-      }
-    }
-
-    abstract void writeMultipart(DataOutputStream request, int bufferSize) throws IOException;
-
-    @Override
-    protected void prepareURLConnection(URLConnection connection) {
-      connection.setUseCaches(false);
-
-      connection.setRequestProperty("Connection", "Keep-Alive");
-      connection.setRequestProperty("Cache-Control", "no-cache");
-      connection.setRequestProperty(
-          CONTENT_TYPE_HEADER, "multipart/form-data;boundary=" + this.boundary);
-    }
-
+  /**
+   * Body processor compressing with gzip the body of another processor while it is streamed
+   * @param bodyProcessor the processor writing the uncompressed body, extending {@link AbstractBodyProcessor}
+   * @return the compressing body processor
+   */
+  public static CompressedBodyProcessor gzip(BodyProcessor bodyProcessor) {
+    return new CompressedBodyProcessor(bodyProcessor, ContentEncodings.GZIP);
   }
 
-  private abstract static class MultipartStreamBodyProcessor extends MultipartBodyProcessor {
-
-    MultipartStreamBodyProcessor(String name, String key, int bufferSize) {
-      super(name, key, bufferSize);
-    }
-
-    @Override
-    void writeMultipart(DataOutputStream request, int bufferSize) throws IOException {
-      try (InputStream is = getInputStream()) {
-        IOUtils.copy(is, request, bufferSize);
-      }
-    }
-
-    abstract InputStream getInputStream() throws IOException;
-
+  /**
+   * Body processor compressing with deflate the body of another processor while it is streamed
+   * @param bodyProcessor the processor writing the uncompressed body, extending {@link AbstractBodyProcessor}
+   * @return the compressing body processor
+   */
+  public static CompressedBodyProcessor deflate(BodyProcessor bodyProcessor) {
+    return new CompressedBodyProcessor(bodyProcessor, ContentEncodings.DEFLATE);
   }
-    private static class MultipartFileBodyProcessor extends MultipartStreamBodyProcessor {
 
-    private final File file;
-
-    MultipartFileBodyProcessor(File file, String key, int bufferSize) {
-      super(file.getName(), key, bufferSize);
-      this.file = file;
-    }
-
-    @Override
-    InputStream getInputStream() throws IOException {
-      return new FileInputStream(file);
-    }
+  /**
+   * Returns a body processor that can be written several times, so that the request can be
+   * retried. Replayable processors, such as the string, bytes and file ones, are returned as they
+   * are, others are buffered in memory when the request is first sent
+   * @param bodyProcessor the body processor, extending {@link AbstractBodyProcessor} if not replayable
+   * @return the replayable body processor
+   */
+  public static BodyProcessor replayable(BodyProcessor bodyProcessor) {
+    return bodyProcessor.isReplayable() ? bodyProcessor : new BufferedBodyProcessor(bodyProcessor);
   }
 
-  private static class MultipartInputStreamBodyProcessor extends MultipartStreamBodyProcessor {
+  private static class StringBodyProcessor extends AbstractBodyProcessor {
 
-    private final ISSupplier isSupplier;
+    private final byte[] content;
 
-    MultipartInputStreamBodyProcessor(ISSupplier isSupplier, String name, String key, int bufferSize) {
-      super(name, key, bufferSize);
-      this.isSupplier = isSupplier;
+    private StringBodyProcessor(String content) {
+      this.content = content.getBytes();
     }
 
     @Override
-    InputStream getInputStream() throws IOException {
-      return isSupplier.get();
+    public void writeContent(OutputStream oStream) throws IOException {
+      oStream.write(content);
+      oStream.flush();
     }
-  }
-
-  private static class MultipartByteContainerBodyProcessor extends MultipartBodyProcessor {
 
-    private final BytesContainer bytesContainer;
-
-    MultipartByteContainerBodyProcessor(BytesContainer bytesContainer,
-                                      String name, String key, int bufferSize) {
-      super(name, key, bufferSize);
-      this.bytesContainer = bytesContainer;
+    @Override
+    protected long contentLength() {
+      return content.length;
     }
 
     @Override
-    void writeMultipart(DataOutputStream request, int bufferSize) throws IOException {
-      byte[] bytes = bytesContainer.getBytes();
-      request.write(bytes);
+    public boolean isReplayable() {
+      return true;
     }
   }
 
@@ -216,6 +160,16 @@ public final class BodyProcessors {
     protected void writeContent(OutputStream os) throws IOException {
       os.write(bytes, 0, bytes.length);
     }
+
+    @Override
+    protected long contentLength() {
+      return bytes.length;
+    }
+
+    @Override
+    public boolean isReplayable() {
+      return true;
+    }
   }
 
   private static class FileBodyProcessor extends AbstractBodyProcessor {
@@ -228,9 +182,17 @@ public final class BodyProcessors {
 
     @Override
     protected void writeContent(OutputStream os) throws IOException {
-      try (InputStream is = new FileInputStream(file)) {
-        IOUtils.copy(is, os);
-      }
+      transferFile(file, os);
+    }
+
+    @Override
+    protected long contentLength() {
+      return file.length();
+    }
+
+    @Override
+    public boolean isReplayable() {
+      return true;
     }
   }
 
@@ -238,7 +200,8 @@ public final class BodyProcessors {
 
     private final ISSupplier supplier;
 
-    public InputStreamBodyProcessor(ISSupplier supplier) {
+    public InputStreamBodyProcessor(ISSupplier supplier, int chunkSize) {
+      super(chunkSize);
       this.supplier = supplier;
     }
 
@@ -248,5 +211,21 @@ public final class BodyProcessors {
         IOUtils.copy(is, os);
       }
     }
+
+    @Override
+    protected boolean isChunked() {
+      return true;
+    }
+  }
+
+  /**
+   * Writes a whole file, sent from the page cache to the socket when the transport allows it.
+   * The length is the one given as Content-Length, taken before the file is opened
+   */
+  static void transferFile(File file, OutputStream os) throws IOException {
+    long length = file.length();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      IOUtils.transfer(channel, 0, length, os);
+    }
   }
 }
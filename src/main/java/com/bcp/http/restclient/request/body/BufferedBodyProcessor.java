@@ -0,0 +1,53 @@
+package com.bcp.http.restclient.request.body;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLConnection;
+
+/**
+ * Body processor keeping in memory the body of another processor, so that it can be sent
+ * several times. The body is buffered when it is first sent
+ */
+class BufferedBodyProcessor extends AbstractBodyProcessor {
+
+  private final AbstractBodyProcessor delegate;
+  private byte[] content;
+
+  BufferedBodyProcessor(BodyProcessor delegate) {
+    if (!(delegate instanceof AbstractBodyProcessor)) {
+      throw new IllegalArgumentException("only a body processor extending AbstractBodyProcessor can be buffered");
+    }
+    this.delegate = (AbstractBodyProcessor) delegate;
+  }
+
+  @Override
+  protected void prepareURLConnection(URLConnection connection) {
+    delegate.prepareURLConnection(connection);
+  }
+
+  @Override
+  protected void writeContent(OutputStream oStream) throws IOException {
+    oStream.write(content());
+    oStream.flush();
+  }
+
+  @Override
+  protected long contentLength() throws IOException {
+    return content().length;
+  }
+
+  @Override
+  public boolean isReplayable() {
+    return true;
+  }
+
+  private synchronized byte[] content() throws IOException {
+    if (content == null) {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(DEFAULT_CHUNK_SIZE);
+      delegate.writeContent(buffer);
+      content = buffer.toByteArray();
+    }
+    return content;
+  }
+}
@@ -0,0 +1,88 @@
+package com.bcp.http.restclient.request.body;
+
+import com.bcp.http.restclient.util.ContentEncodings;
+import com.bcp.http.restclient.util.CountingOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Body processor compressing the body of another processor while it is streamed. As the
+ * compressed length isn't known in advance, the body is sent in chunks
+ */
+public class CompressedBodyProcessor extends AbstractBodyProcessor {
+
+  private final AbstractBodyProcessor delegate;
+  private final String encoding;
+  private final LongAdder uncompressedBytes = new LongAdder();
+  private final LongAdder compressedBytes = new LongAdder();
+
+  /**
+   *
+   * @param delegate the processor writing the uncompressed body
+   * @param encoding the content encoding, gzip or deflate
+   */
+  CompressedBodyProcessor(BodyProcessor delegate, String encoding) {
+    super(delegate instanceof AbstractBodyProcessor ?
+        ((AbstractBodyProcessor) delegate).getChunkSize() : DEFAULT_CHUNK_SIZE);
+    if (!(delegate instanceof AbstractBodyProcessor)) {
+      throw new IllegalArgumentException("only a body processor extending AbstractBodyProcessor can be compressed");
+    }
+    this.delegate = (AbstractBodyProcessor) delegate;
+    this.encoding = encoding;
+  }
+
+  @Override
+  protected boolean isChunked() {
+    return true;
+  }
+
+  @Override
+  protected void prepareURLConnection(URLConnection connection) {
+    delegate.prepareURLConnection(connection);
+    connection.setRequestProperty("Content-Encoding", encoding);
+  }
+
+  @Override
+  protected void writeContent(OutputStream oStream) throws IOException {
+    OutputStream counted = new CountingOutputStream(oStream, compressedBytes);
+    Deflater deflater = ContentEncodings.GZIP.equals(encoding) ? null : new Deflater();
+    try (DeflaterOutputStream compressed = deflater == null ?
+        new GZIPOutputStream(counted, getChunkSize()) :
+        new DeflaterOutputStream(counted, deflater, getChunkSize())) {
+      // the delegate may close the stream it is given, which must not end the compression
+      delegate.writeContent(new CountingOutputStream(compressed, uncompressedBytes));
+    } finally {
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+    oStream.flush();
+  }
+
+  @Override
+  public boolean isReplayable() {
+    return delegate.isReplayable();
+  }
+
+  /**
+   * Returns the number of bytes written by the wrapped processor, over all the requests
+   * @return the uncompressed size
+   */
+  public long getUncompressedBytes() {
+    return uncompressedBytes.sum();
+  }
+
+  /**
+   * Returns the number of compressed bytes sent, over all the requests
+   * @return the compressed size
+   */
+  public long getCompressedBytes() {
+    return compressedBytes.sum();
+  }
+}
@@ -0,0 +1,409 @@
+package com.bcp.http.restclient.request.body;
+
+import static com.bcp.http.restclient.response.HttpHeaders.CONTENT_TYPE_HEADER;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.bcp.http.restclient.util.BytesContainer;
+import com.bcp.http.restclient.util.IOUtils;
+import com.bcp.http.restclient.util.ISSupplier;
+
+/**
+ * Body processor sending a multipart/form-data body made of any number of text, bytes, file
+ * and stream parts. Parts are streamed one after the other without being buffered, files with
+ * zero-copy transfers when the transport allows it. The Content-Length is computed in advance
+ * when the lengths of all the parts are known, the body is sent in chunks otherwise
+ */
+public class MultipartBodyProcessor extends AbstractBodyProcessor {
+
+  private static final Charset HEADER_CHARSET = Charset.forName("UTF-8");
+  private static final byte[] CRLF = {'\r', '\n'};
+  private static final char[] BOUNDARY_CHARS =
+      "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+  private final String boundary;
+  private final List<Part> parts;
+  private final byte[][] heads;
+  private final int bufferSize;
+  private final byte[] closingDelimiter;
+
+  private MultipartBodyProcessor(Builder builder) {
+    this.boundary = builder.boundary != null ? builder.boundary : randomBoundary();
+    this.parts = Collections.unmodifiableList(new ArrayList<>(builder.parts));
+    this.heads = new byte[parts.size()][];
+    for (int i = 0; i < heads.length; i++) {
+      heads[i] = parts.get(i).head(boundary);
+    }
+    this.bufferSize = builder.bufferSize;
+    this.closingDelimiter = headerBytes("--" + boundary + "--\r\n");
+  }
+
+  /**
+   * Returns a new multipart body builder
+   * @return the builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the boundary separating the parts
+   * @return the boundary
+   */
+  public String getBoundary() {
+    return boundary;
+  }
+
+  /**
+   * Returns the number of parts of the body
+   * @return the number of parts
+   */
+  public int getPartCount() {
+    return parts.size();
+  }
+
+  @Override
+  protected void writeContent(OutputStream oStream) throws IOException {
+    for (int i = 0; i < heads.length; i++) {
+      oStream.write(heads[i]);
+      parts.get(i).write(oStream, bufferSize);
+      oStream.write(CRLF);
+    }
+    oStream.write(closingDelimiter);
+    oStream.flush();
+  }
+
+  @Override
+  protected long contentLength() throws IOException {
+    long length = closingDelimiter.length;
+    for (int i = 0; i < heads.length; i++) {
+      long partLength = parts.get(i).length();
+      if (partLength < 0) {
+        return -1;
+      }
+      length += heads[i].length + partLength + CRLF.length;
+    }
+    return length;
+  }
+
+  @Override
+  protected boolean isChunked() {
+    return true;
+  }
+
+  @Override
+  protected void prepareURLConnection(URLConnection connection) {
+    connection.setUseCaches(false);
+
+    connection.setRequestProperty("Connection", "Keep-Alive");
+    connection.setRequestProperty("Cache-Control", "no-cache");
+    connection.setRequestProperty(CONTENT_TYPE_HEADER, "multipart/form-data;boundary=" + boundary);
+  }
+
+  @Override
+  public boolean isReplayable() {
+    for (Part part : parts) {
+      if (!part.isReplayable()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String randomBoundary() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    char[] chars = new char[32];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = BOUNDARY_CHARS[random.nextInt(BOUNDARY_CHARS.length)];
+    }
+    return "restclient-" + new String(chars);
+  }
+
+  private static byte[] headerBytes(String value) {
+    return value.getBytes(HEADER_CHARSET);
+  }
+
+  /**
+   * Escapes a name or file name quoted in a Content-Disposition header
+   */
+  private static String quote(String value) {
+    return '"' + value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A") + '"';
+  }
+
+  /**
+   * A part of the body: its headers, then its content
+   */
+  private abstract static class Part {
+
+    private final String key;
+    private final String fileName;
+    private final String contentType;
+
+    Part(String key, String fileName, String contentType) {
+      if (key == null) {
+        throw new IllegalArgumentException("part name cannot be null");
+      }
+      this.key = key;
+      this.fileName = fileName;
+      this.contentType = contentType;
+    }
+
+    /**
+     * Returns the delimiter and headers of the part
+     */
+    byte[] head(String boundary) {
+      StringBuilder builder = new StringBuilder("--").append(boundary).append("\r\n")
+          .append("Content-Disposition: form-data; name=").append(quote(key));
+      if (fileName != null) {
+        builder.append(";filename=").append(quote(fileName));
+      }
+      builder.append("\r\n");
+      if (contentType != null) {
+        builder.append(CONTENT_TYPE_HEADER).append(": ").append(contentType).append("\r\n");
+      }
+      return headerBytes(builder.append("\r\n").toString());
+    }
+
+    abstract void write(OutputStream oStream, int bufferSize) throws IOException;
+
+    /**
+     * Returns the length of the part content
+     * @return the length, or -1 if unknown
+     */
+    abstract long length();
+
+    boolean isReplayable() {
+      return true;
+    }
+  }
+
+  private static final class BytesPart extends Part {
+
+    private final byte[] bytes;
+
+    BytesPart(String key, String fileName, String contentType, byte[] bytes) {
+      super(key, fileName, contentType);
+      this.bytes = bytes;
+    }
+
+    @Override
+    void write(OutputStream oStream, int bufferSize) throws IOException {
+      oStream.write(bytes);
+    }
+
+    @Override
+    long length() {
+      return bytes.length;
+    }
+  }
+
+  private static final class FilePart extends Part {
+
+    private final File file;
+
+    FilePart(String key, String fileName, String contentType, File file) {
+      super(key, fileName, contentType);
+      this.file = file;
+    }
+
+    @Override
+    void write(OutputStream oStream, int bufferSize) throws IOException {
+      BodyProcessors.transferFile(file, oStream);
+    }
+
+    @Override
+    long length() {
+      return file.length();
+    }
+  }
+
+  private static final class ContainerPart extends Part {
+
+    private final BytesContainer container; // keeps a spilled file alive until the part is sent
+
+    ContainerPart(String key, String fileName, String contentType, BytesContainer container) {
+      super(key, fileName, contentType);
+      this.container = container;
+    }
+
+    @Override
+    void write(OutputStream oStream, int bufferSize) throws IOException {
+      if (container.isSpilled()) {
+        BodyProcessors.transferFile(container.getFile(), oStream);
+      } else {
+        oStream.write(container.getBytes());
+      }
+    }
+
+    @Override
+    long length() {
+      return container.getLength();
+    }
+  }
+
+  private static final class StreamPart extends Part {
+
+    private final ISSupplier isSupplier;
+    private final long length;
+
+    StreamPart(String key, String fileName, String contentType, ISSupplier isSupplier, long length) {
+      super(key, fileName, contentType);
+      this.isSupplier = isSupplier;
+      this.length = length;
+    }
+
+    @Override
+    void write(OutputStream oStream, int bufferSize) throws IOException {
+      try (InputStream is = isSupplier.get()) {
+        IOUtils.copy(is, oStream, bufferSize);
+      }
+    }
+
+    @Override
+    long length() {
+      return length;
+    }
+
+    @Override
+    boolean isReplayable() {
+      return false;
+    }
+  }
+
+  /**
+   * Class allowing to build a multipart body
+   */
+  public static class Builder {
+
+    private final List<Part> parts = new ArrayList<>();
+    private String boundary = null;
+    private int bufferSize = IOUtils.DEFAULT_BUFFER_SIZE;
+
+    private Builder() {}
+
+    /**
+     * Adds a text field
+     * @param key the name of the field
+     * @param value the value of the field
+     * @return this
+     */
+    public Builder field(String key, String value) {
+      parts.add(new BytesPart(key, null, null, value.getBytes(HEADER_CHARSET)));
+      return this;
+    }
+
+    /**
+     * Adds a file, named after the file
+     * @param key the name of the part
+     * @param file the file
+     * @return this
+     */
+    public Builder file(String key, File file) {
+      return file(key, file, file.getName(), null);
+    }
+
+    /**
+     * Adds a file
+     * @param key the name of the part
+     * @param file the file
+     * @param fileName the file name sent to the server
+     * @param contentType the content type of the part, null not to send one
+     * @return this
+     */
+    public Builder file(String key, File file, String fileName, String contentType) {
+      parts.add(new FilePart(key, fileName, contentType, file));
+      return this;
+    }
+
+    /**
+     * Adds bytes as a file
+     * @param key the name of the part
+     * @param bytesContainer the bytes
+     * @param fileName the file name sent to the server
+     * @return this
+     */
+    public Builder bytes(String key, BytesContainer bytesContainer, String fileName) {
+      parts.add(new ContainerPart(key, fileName, null, bytesContainer));
+      return this;
+    }
+
+    /**
+     * Adds bytes as a file
+     * @param key the name of the part
+     * @param bytes the bytes
+     * @param fileName the file name sent to the server
+     * @param contentType the content type of the part, null not to send one
+     * @return this
+     */
+    public Builder bytes(String key, byte[] bytes, String fileName, String contentType) {
+      parts.add(new BytesPart(key, fileName, contentType, bytes));
+      return this;
+    }
+
+    /**
+     * Adds the content of a stream as a file. The body is then sent in chunks, unless the length
+     * of the stream is given with {@link #stream(String, ISSupplier, String, String, long)}
+     * @param key the name of the part
+     * @param isSupplier the supplier of the stream
+     * @param fileName the file name sent to the server
+     * @return this
+     */
+    public Builder stream(String key, ISSupplier isSupplier, String fileName) {
+      return stream(key, isSupplier, fileName, null, -1);
+    }
+
+    /**
+     * Adds the content of a stream as a file
+     * @param key the name of the part
+     * @param isSupplier the supplier of the stream
+     * @param fileName the file name sent to the server
+     * @param contentType the content type of the part, null not to send one
+     * @param length the exact length of the stream, -1 if unknown
+     * @return this
+     */
+    public Builder stream(String key, ISSupplier isSupplier, String fileName, String contentType, long length) {
+      parts.add(new StreamPart(key, fileName, contentType, isSupplier, length));
+      return this;
+    }
+
+    /**
+     * Sets the boundary separating the parts, random by default
+     * @param boundary the boundary, which must not appear in the parts
+     * @return this
+     */
+    public Builder boundary(String boundary) {
+      this.boundary = boundary;
+      return this;
+    }
+
+    /**
+     * Sets the size of the buffer copying the stream parts
+     * @param bufferSize the buffer size
+     * @return this
+     */
+    public Builder bufferSize(int bufferSize) {
+      this.bufferSize = bufferSize;
+      return this;
+    }
+
+    /**
+     * Builds the multipart body processor
+     * @return the body processor
+     */
+    public MultipartBodyProcessor build() {
+      if (parts.isEmpty()) {
+        throw new IllegalStateException("multipart body must have at least one part");
+      }
+      return new MultipartBodyProcessor(this);
+    }
+  }
+}
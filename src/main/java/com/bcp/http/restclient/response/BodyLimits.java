@@ -0,0 +1,143 @@
+package com.bcp.http.restclient.response;
+
+import java.io.File;
+
+/**
+ * Limits on the size of the response bodies. Successful bodies larger than the max size fail
+ * the response instead of reaching the end of the handler. Error bodies are kept up to the max
+ * error size, the rest being discarded, and spill to a temporary file once they pass the memory
+ * threshold
+ */
+public final class BodyLimits {
+
+  public static final long UNLIMITED = Long.MAX_VALUE;
+
+  private static final BodyLimits DEFAULTS = builder().build();
+
+  private final long maxSize;
+  private final long maxErrorSize;
+  private final long memoryThreshold;
+  private final File spillDirectory;
+
+  private BodyLimits(Builder builder) {
+    this.maxSize = builder.maxSize;
+    this.maxErrorSize = builder.maxErrorSize;
+    this.memoryThreshold = builder.memoryThreshold;
+    this.spillDirectory = builder.spillDirectory;
+  }
+
+  /**
+   * Returns a new body limits builder
+   * @return the body limits builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the default limits: no max size for successful bodies, error bodies kept up to 8 MB
+   * and spilled to disk past 256 KB
+   * @return the default limits
+   */
+  public static BodyLimits defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Returns the max size of the successful bodies
+   * @return the max size in bytes, {@link #UNLIMITED} for no limit
+   */
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the number of bytes of the error bodies that are kept
+   * @return the max error size in bytes, {@link #UNLIMITED} for no limit
+   */
+  public long getMaxErrorSize() {
+    return maxErrorSize;
+  }
+
+  /**
+   * Returns the size past which the error bodies are written to a temporary file
+   * @return the memory threshold in bytes
+   */
+  public long getMemoryThreshold() {
+    return memoryThreshold;
+  }
+
+  /**
+   * Returns the directory of the temporary files
+   * @return the directory, null for the default temporary directory
+   */
+  public File getSpillDirectory() {
+    return spillDirectory;
+  }
+
+  /**
+   * Class allowing to build body limits
+   */
+  public static class Builder {
+
+    private long maxSize = UNLIMITED;
+    private long maxErrorSize = 8 * 1024 * 1024;
+    private long memoryThreshold = 256 * 1024;
+    private File spillDirectory = null;
+
+    private Builder() {}
+
+    /**
+     * Sets the max size of the successful bodies, unlimited by default
+     * @param maxSize the max size in bytes
+     * @return this
+     */
+    public Builder maxSize(long maxSize) {
+      if (maxSize < 0) {
+        throw new IllegalArgumentException("maxSize cannot be negative");
+      }
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Sets the number of bytes of the error bodies that are kept, 8 MB by default
+     * @param maxErrorSize the max error size in bytes
+     * @return this
+     */
+    public Builder maxErrorSize(long maxErrorSize) {
+      if (maxErrorSize < 0) {
+        throw new IllegalArgumentException("maxErrorSize cannot be negative");
+      }
+      this.maxErrorSize = maxErrorSize;
+      return this;
+    }
+
+    /**
+     * Sets the size past which the error bodies are written to a temporary file, 256 KB by default
+     * @param memoryThreshold the memory threshold in bytes
+     * @return this
+     */
+    public Builder memoryThreshold(long memoryThreshold) {
+      if (memoryThreshold < 0) {
+        throw new IllegalArgumentException("memoryThreshold cannot be negative");
+      }
+      this.memoryThreshold = memoryThreshold;
+      return this;
+    }
+
+    /**
+     * Sets the directory of the temporary files
+     * @param spillDirectory the directory, null for the default temporary directory
+     * @return this
+     */
+    public Builder spillDirectory(File spillDirectory) {
+      this.spillDirectory = spillDirectory;
+      return this;
+    }
+
+    public BodyLimits build() {
+      return new BodyLimits(this);
+    }
+  }
+}
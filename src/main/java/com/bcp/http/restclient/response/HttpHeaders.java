@@ -1,11 +1,18 @@
 package com.bcp.http.restclient.response;
 
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
- * Class representing headers of a REST response
+ * Class representing headers of a REST response. The headers are kept in a flat array of
+ * names and values, one pair per value, and looked up ignoring the case of their names
  */
 public class HttpHeaders {
 
@@ -13,21 +20,123 @@ public class HttpHeaders {
   public static final String CONTENT_TYPE_HEADER = "Content-Type";
   public static final String JSON_TYPE = "application/json";
 
+  private static final String[] COMMON_NAMES = {
+      "Accept-Ranges", "Age", "Allow", "Cache-Control", "Connection", "Content-Disposition",
+      "Content-Encoding", "Content-Language", "Content-Length", "Content-Location", "Content-Range",
+      CONTENT_TYPE_HEADER, "Date", "ETag", "Expires", "Keep-Alive", "Last-Modified", "Link",
+      "Location", "Pragma", "Retry-After", "Server", "Set-Cookie", "Strict-Transport-Security",
+      "Transfer-Encoding", "Vary", "Via", "WWW-Authenticate", "X-Request-Id"
+  };
+  private static final Comparator<String> NAME_ORDER = Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER);
+  private static final Map<String, String> INTERNED_NAMES = new HashMap<>();
+  private static final HttpHeaders EMPTY = new HttpHeaders(new String[0], 0);
 
-  private final Map<String, List<String>> map;
+  static {
+    for (String name : COMMON_NAMES) {
+      INTERNED_NAMES.put(name, name);
+      INTERNED_NAMES.put(name.toLowerCase(), name);
+    }
+  }
+
+  private final String[] entries; // name, value, name, value...
+  private final int size;
+  private volatile Map<String, List<String>> map;
 
   public HttpHeaders(Map<String, List<String>> map) {
-    this.map = Collections.unmodifiableMap(map);
+    int count = 0;
+    for (Map.Entry<String, List<String>> header : map.entrySet()) {
+      if (header.getKey() != null && header.getValue() != null) {
+        count += header.getValue().size();
+      }
+    }
+    this.entries = new String[count * 2];
+    int i = 0;
+    for (Map.Entry<String, List<String>> header : map.entrySet()) {
+      if (header.getKey() != null && header.getValue() != null) {
+        String name = intern(header.getKey());
+        for (String value : header.getValue()) {
+          entries[i++] = name;
+          entries[i++] = value;
+        }
+      }
+    }
+    this.size = i;
+  }
+
+  private HttpHeaders(String[] entries, int size) {
+    this.entries = entries;
+    this.size = size;
+  }
+
+  /**
+   * Returns headers without any value
+   * @return the empty headers
+   */
+  public static HttpHeaders empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Reads the response headers of a connection, without the status line
+   * @param connection the connection, whose response was received
+   * @param excluded the names of the headers to leave out
+   * @return the headers
+   */
+  public static HttpHeaders of(HttpURLConnection connection, String... excluded) {
+    String[] entries = new String[32];
+    int size = 0;
+    String value;
+    for (int i = 0; (value = connection.getHeaderField(i)) != null; i++) {
+      String name = connection.getHeaderFieldKey(i);
+      if (name == null || isExcluded(name, excluded)) {
+        continue;
+      }
+      if (size == entries.length) {
+        entries = Arrays.copyOf(entries, size * 2);
+      }
+      entries[size++] = intern(name);
+      entries[size++] = value;
+    }
+    return size == 0 ? EMPTY : new HttpHeaders(entries, size);
+  }
+
+  /**
+   * Returns these headers updated with the given ones: the values of a name present in both are
+   * replaced by the new ones, as when a 304 Not Modified response refreshes a cached response
+   * @param updates the new headers
+   * @param excluded the names of the new headers to leave out
+   * @return the updated headers
+   */
+  public HttpHeaders updatedWith(HttpHeaders updates, String... excluded) {
+    String[] merged = new String[size + updates.size];
+    int count = 0;
+    for (int i = 0; i < size; i += 2) {
+      if (!updates.hasValue(entries[i]) || isExcluded(entries[i], excluded)) {
+        merged[count++] = entries[i];
+        merged[count++] = entries[i + 1];
+      }
+    }
+    for (int i = 0; i < updates.size; i += 2) {
+      if (!isExcluded(updates.entries[i], excluded)) {
+        merged[count++] = updates.entries[i];
+        merged[count++] = updates.entries[i + 1];
+      }
+    }
+    return count == 0 ? EMPTY : new HttpHeaders(merged, count);
   }
 
   /**
-   * Get the first value associated with the given header name
+   * Get the first value associated with the given header name, ignoring its case
    * @param name the name of the header
-   * @return the first value associated with the given header name
+   * @return the first value associated with the given header name, null if there is none
    */
   public String getValue(String name) {
-    List<String> values = map.get(name);
-    return values == null ? null : values.get(0);
+    for (int i = 0; i < size; i += 2) {
+      if (matches(entries[i], name)) {
+        return entries[i + 1];
+      }
+    }
+    return null;
   }
 
   /**
@@ -36,24 +145,90 @@ public class HttpHeaders {
    * @return if the header has a value
    */
   public boolean hasValue(String name) {
-    List<String> values = map.get(name);
-    return values != null && values.size() > 0;
+    return getValue(name) != null;
   }
 
   /**
-   * Get all the values associated with the given header name
+   * Get all the values associated with the given header name, ignoring its case
    * @param name the name of the header
-   * @return all the values associated with the given header name
+   * @return all the values associated with the given header name, empty if there is none
    */
   public List<String> getAllValues(String name) {
-    return map.get(name);
+    List<String> values = null;
+    String first = null;
+    for (int i = 0; i < size; i += 2) {
+      if (matches(entries[i], name)) {
+        if (first == null) {
+          first = entries[i + 1];
+        } else {
+          if (values == null) {
+            values = new ArrayList<>(4);
+            values.add(first);
+          }
+          values.add(entries[i + 1]);
+        }
+      }
+    }
+    if (values != null) {
+      return Collections.unmodifiableList(values);
+    }
+    return first == null ? Collections.<String>emptyList() : Collections.singletonList(first);
   }
 
   /**
-   * Get all the headers and there value in form of a map
+   * Returns the number of header values
+   * @return the number of values
+   */
+  public int size() {
+    return size / 2;
+  }
+
+  /**
+   * Get all the headers and there value in form of a map, whose keys ignore their case.
+   * The map is built on the first call
    * @return the map representing the headers
    */
   public Map<String, List<String>> getMap() {
-    return map;
+    Map<String, List<String>> headers = map;
+    if (headers == null) {
+      Map<String, List<String>> built = new TreeMap<>(NAME_ORDER);
+      for (int i = 0; i < size; i += 2) {
+        List<String> values = built.get(entries[i]);
+        if (values == null) {
+          values = new ArrayList<>(1);
+          built.put(entries[i], values);
+        }
+        values.add(entries[i + 1]);
+      }
+      for (Map.Entry<String, List<String>> header : built.entrySet()) {
+        header.setValue(Collections.unmodifiableList(header.getValue()));
+      }
+      headers = Collections.unmodifiableMap(built);
+      map = headers;
+    }
+    return headers;
+  }
+
+  @Override
+  public String toString() {
+    return getMap().toString();
+  }
+
+  private static boolean matches(String headerName, String name) {
+    return headerName == name || headerName.equalsIgnoreCase(name);
+  }
+
+  private static boolean isExcluded(String name, String[] excluded) {
+    for (String header : excluded) {
+      if (header.equalsIgnoreCase(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String intern(String name) {
+    String interned = INTERNED_NAMES.get(name);
+    return interned != null ? interned : name;
   }
 }
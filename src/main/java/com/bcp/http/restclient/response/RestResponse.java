@@ -1,6 +1,7 @@
 package com.bcp.http.restclient.response;
 
 import com.bcp.http.restclient.response.handler.ResponseHandler;
+import com.bcp.http.restclient.util.BytesContainer;
 
 /**
  * Class representing a response from a REST service
@@ -9,6 +10,9 @@ import com.bcp.http.restclient.response.handler.ResponseHandler;
 public interface RestResponse<T> {
 
   int REQUEST_NOT_SENT = -1;
+  int DEADLINE_EXCEEDED = -2;
+  int CIRCUIT_OPEN = -3;
+  int RATE_LIMITED = -4;
 
   /**
    * Returns the response code
@@ -43,11 +47,22 @@ public interface RestResponse<T> {
   <ErrorT> ErrorT getErrorData(ResponseHandler<ErrorT> responseHandler);
 
   /**
-   * Returns the raw error data in form of bytes, if the response wasn't successful
+   * Returns the raw error data in form of bytes, if the response wasn't successful. Error bodies
+   * spilled to disk are read back in memory, see {@link #getErrorBody()} to stream them instead
    * @return the raw error data in form of bytes
    */
   byte[] getRawErrorData();
 
+  /**
+   * Returns the storage of the error body, in memory or in a temporary file depending on its size,
+   * if the response wasn't successful
+   * @return the error body
+   */
+  default BytesContainer getErrorBody() {
+    byte[] bytes = getRawErrorData();
+    return bytes == null ? null : new BytesContainer(bytes);
+  }
+
   /**
    * Returns the headers of the response
    * @return the headers
@@ -0,0 +1,65 @@
+package com.bcp.http.restclient.response.handler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a stream terminated by "\n", "\r\n" or "\r", refusing lines longer than a
+ * bound so that a malformed stream can't exhaust the memory
+ */
+final class LineReader {
+
+  private final InputStream in;
+  private final Charset charset;
+  private final int maxLineLength;
+  private final byte[] buffer = new byte[8192];
+  private int position;
+  private int limit;
+  private byte[] line = new byte[256];
+  private boolean skipLineFeed;
+
+  LineReader(InputStream in, Charset charset, int maxLineLength) {
+    this.in = in;
+    this.charset = charset;
+    this.maxLineLength = maxLineLength;
+  }
+
+  /**
+   * Reads the next line
+   * @return the line without its terminator, null at the end of the stream
+   * @throws IOException in case of I/O error, or if the line is longer than the bound
+   */
+  String readLine() throws IOException {
+    int length = 0;
+    while (true) {
+      if (position == limit) {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit < 0) {
+          limit = 0;
+          return length == 0 ? null : new String(line, 0, length, charset);
+        }
+      }
+      byte b = buffer[position++];
+      if (skipLineFeed) {
+        skipLineFeed = false;
+        if (b == '\n') {
+          continue;
+        }
+      }
+      if (b == '\n' || b == '\r') {
+        skipLineFeed = b == '\r';
+        return new String(line, 0, length, charset);
+      }
+      if (length == maxLineLength) {
+        throw new IOException("Record longer than " + maxLineLength + " bytes");
+      }
+      if (length == line.length) {
+        line = Arrays.copyOf(line, Math.min(maxLineLength, line.length * 2));
+      }
+      line[length++] = b;
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package com.bcp.http.restclient.response.handler;
+
+import java.io.IOException;
+
+/**
+ * Consumer of the records of a streamed response, called while the body is still being read
+ * @param <T> the type of the records
+ */
+public interface RecordConsumer<T> {
+
+  /**
+   * Consumes a record. Blocking in this method slows down the reading of the body, and so the
+   * server, rather than buffering the records
+   * @param record the record
+   * @return whether to read the next record, false to stop and close the connection
+   * @throws IOException to stop reading, the response then being an error response
+   */
+  boolean accept(T record) throws IOException;
+}
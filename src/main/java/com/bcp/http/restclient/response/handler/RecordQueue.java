@@ -0,0 +1,138 @@
+package com.bcp.http.restclient.response.handler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.bcp.http.restclient.response.RestResponse;
+
+/**
+ * Bounded queue between a streaming handler, run by an asynchronous client, and a thread
+ * iterating over the records. When the queue is full the handler waits, which stops the
+ * reading of the body and lets TCP flow control slow down the server:
+ * <pre>
+ * RecordQueue&lt;String&gt; lines = new RecordQueue&lt;&gt;(256);
+ * client.executeAsync(request, StreamingHandlers.lines(lines)).whenComplete(lines::complete);
+ * for (String line : lines) { ... }
+ * </pre>
+ * Closing the queue before the end stops the handler, which closes the connection
+ * @param <T> the type of the records
+ */
+public class RecordQueue<T> implements RecordConsumer<T>, Iterable<T>, Iterator<T>, AutoCloseable {
+
+  private static final long POLL_MILLIS = 100;
+
+  private final BlockingQueue<T> queue;
+  private volatile boolean closed;
+  private volatile boolean completed;
+  private volatile IOException failure;
+  private T next;
+  private boolean ended;
+
+  /**
+   *
+   * @param capacity the number of records buffered before the handler waits
+   */
+  public RecordQueue(int capacity) {
+    this.queue = new ArrayBlockingQueue<>(capacity);
+  }
+
+  @Override
+  public boolean accept(T record) throws IOException {
+    try {
+      while (!closed) {
+        if (queue.offer(record, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the consumer");
+    }
+    return false;
+  }
+
+  /**
+   * Ends the iteration once the response is complete, to be given to
+   * {@link java.util.concurrent.CompletableFuture#whenComplete}
+   * @param response the response of the streaming handler
+   * @param throwable the exception that failed the request, null if none
+   */
+  public void complete(RestResponse<?> response, Throwable throwable) {
+    if (throwable != null) {
+      failure = new IOException(throwable);
+    } else if (response != null && !response.isSuccessful()) {
+      byte[] error = response.getRawErrorData();
+      failure = new IOException("Streamed response failed with code " + response.getResponseCode()
+          + (error == null || error.length == 0 ? "" : ": " + new String(error)));
+    }
+    completed = true;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return this;
+  }
+
+  /**
+   * Waits for the next record
+   * @return whether there is a next record
+   * @throws UncheckedIOException if the response failed
+   */
+  @Override
+  public boolean hasNext() {
+    if (next != null) {
+      return true;
+    }
+    if (ended) {
+      return false;
+    }
+    try {
+      T element = null;
+      while (element == null && !closed) {
+        // the records are all queued once the response is complete
+        boolean last = completed;
+        element = last ? queue.poll() : queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (element == null && last) {
+          break;
+        }
+      }
+      if (element == null) {
+        ended = true;
+        if (failure != null && !closed) {
+          throw new UncheckedIOException(failure);
+        }
+        return false;
+      }
+      next = element;
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      return false;
+    }
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    T record = next;
+    next = null;
+    return record;
+  }
+
+  /**
+   * Stops the iteration: the handler stops at its next record and closes the connection
+   */
+  @Override
+  public void close() {
+    closed = true;
+    queue.clear();
+  }
+}
@@ -4,6 +4,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Set;
 
@@ -12,12 +15,17 @@ import com.bcp.http.restclient.util.IOUtils;
 import com.bcp.http.restclient.util.ObjectListParser;
 import com.bcp.http.restclient.util.ObjectParser;
 import com.bcp.http.restclient.util.ObjectSetParser;
+import com.bcp.http.restclient.util.StreamObjectListParser;
+import com.bcp.http.restclient.util.StreamObjectParser;
+import com.bcp.http.restclient.util.StreamObjectSetParser;
 
 /**
  * Util class implementing different {@link ResponseHandler}
  */
 public final class ResponseHandlers {
 
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
   private static final ResponseHandler<String> STRING_HANDLER =
       new ResponseHandler<String>() {
         @Override
@@ -78,6 +86,21 @@ public final class ResponseHandlers {
     return BYTES_HANDLER;
   }
 
+  /**
+   * Response handler keeping the response in memory up to a threshold, and writing it to a
+   * temporary file past it
+   * @param memoryThreshold the max number of bytes kept in memory
+   * @return response handler converting to bytes held in memory or on disk
+   */
+  public static ResponseHandler<BytesContainer> bytes(final long memoryThreshold) {
+    return new ResponseHandler<BytesContainer>() {
+      @Override
+      public BytesContainer convert(InputStream inputStream) throws IOException {
+        return IOUtils.toByteArray(inputStream, memoryThreshold, null);
+      }
+    };
+  }
+
   /**
    * Response handler returning multipart response into a byte array
    * @return response handler converting multipart response to byte array
@@ -200,6 +223,98 @@ public final class ResponseHandlers {
     };
   }
 
+  /**
+   * handler converting response into an object, parsed while the body is read
+   * @param tClass the class of the object
+   * @param parser the stream parser
+   * @param <T> the type of the object
+   * @return handler converting the response into an object
+   */
+  public static <T> ResponseHandler<T> streamedObject(Class<T> tClass, StreamObjectParser parser) {
+    return streamedObject(tClass, parser, UTF_8);
+  }
+
+  /**
+   * handler converting response into an object, parsed while the body is read
+   * @param tClass the class of the object
+   * @param parser the stream parser
+   * @param charset the charset of the response
+   * @param <T> the type of the object
+   * @return handler converting the response into an object
+   */
+  public static <T> ResponseHandler<T> streamedObject(final Class<T> tClass,
+                                                      final StreamObjectParser parser,
+                                                      final Charset charset) {
+    return new ResponseHandler<T>() {
+      @Override
+      public T convert(InputStream inputStream) throws IOException {
+        return parser.parse(tClass, reader(inputStream, charset));
+      }
+    };
+  }
+
+  /**
+   * handler converting response into a list of objects, parsed while the body is read
+   * @param tClass the class of the objects
+   * @param parser the stream parser
+   * @param <T> the type of the object
+   * @return handler converting the response into a list of objects
+   */
+  public static <T> ResponseHandler<List<T>> streamedObjectList(Class<T> tClass,
+                                                                StreamObjectListParser parser) {
+    return streamedObjectList(tClass, parser, UTF_8);
+  }
+
+  /**
+   * handler converting response into a list of objects, parsed while the body is read
+   * @param tClass the class of the objects
+   * @param parser the stream parser
+   * @param charset the charset of the response
+   * @param <T> the type of the object
+   * @return handler converting the response into a list of objects
+   */
+  public static <T> ResponseHandler<List<T>> streamedObjectList(final Class<T> tClass,
+                                                                final StreamObjectListParser parser,
+                                                                final Charset charset) {
+    return new ResponseHandler<List<T>>() {
+      @Override
+      public List<T> convert(InputStream inputStream) throws IOException {
+        return parser.parse(tClass, reader(inputStream, charset));
+      }
+    };
+  }
+
+  /**
+   * handler converting response into a set of objects, parsed while the body is read
+   * @param tClass the class of the objects
+   * @param parser the stream parser
+   * @param <T> the type of the object
+   * @return handler converting the response into a set of objects
+   */
+  public static <T> ResponseHandler<Set<T>> streamedObjectSet(Class<T> tClass,
+                                                              StreamObjectSetParser parser) {
+    return streamedObjectSet(tClass, parser, UTF_8);
+  }
+
+  /**
+   * handler converting response into a set of objects, parsed while the body is read
+   * @param tClass the class of the objects
+   * @param parser the stream parser
+   * @param charset the charset of the response
+   * @param <T> the type of the object
+   * @return handler converting the response into a set of objects
+   */
+  public static <T> ResponseHandler<Set<T>> streamedObjectSet(final Class<T> tClass,
+                                                              final StreamObjectSetParser parser,
+                                                              final Charset charset) {
+    return new ResponseHandler<Set<T>>() {
+      @Override
+      public Set<T> convert(InputStream inputStream) throws IOException {
+        return parser.parse(tClass, reader(inputStream, charset));
+      }
+    };
+  }
+
   /**
    * handler for ignoring the response
    * @return a handler ignoring the response
@@ -207,4 +322,8 @@ public final class ResponseHandlers {
   public static ResponseHandler<Void> noResponse() {
     return NO_RESPONSE;
   }
+
+  private static Reader reader(InputStream inputStream, Charset charset) {
+    return new InputStreamReader(inputStream, charset);
+  }
 }
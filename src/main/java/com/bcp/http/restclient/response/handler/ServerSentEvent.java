@@ -0,0 +1,56 @@
+package com.bcp.http.restclient.response.handler;
+
+/**
+ * Event of a text/event-stream response, as of the Server-Sent Events specification
+ */
+public class ServerSentEvent {
+
+  private final String id;
+  private final String event;
+  private final String data;
+  private final long retry;
+
+  public ServerSentEvent(String id, String event, String data, long retry) {
+    this.id = id;
+    this.event = event;
+    this.data = data;
+    this.retry = retry;
+  }
+
+  /**
+   * Returns the last event id received on the stream
+   * @return the id, null if none was received
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Returns the type of the event
+   * @return the type, "message" if the event didn't set one
+   */
+  public String getEvent() {
+    return event;
+  }
+
+  /**
+   * Returns the data of the event, whose lines are joined with '\n'
+   * @return the data
+   */
+  public String getData() {
+    return data;
+  }
+
+  /**
+   * Returns the reconnection time asked by the server
+   * @return the time in milliseconds, -1 if the event didn't set it
+   */
+  public long getRetry() {
+    return retry;
+  }
+
+  @Override
+  public String toString() {
+    return "ServerSentEvent{id=" + id + ", event=" + event + ", data=" + data + "}";
+  }
+}
@@ -0,0 +1,188 @@
+package com.bcp.http.restclient.response.handler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import com.bcp.http.restclient.util.Abortable;
+import com.bcp.http.restclient.util.ObjectParser;
+
+/**
+ * Util class implementing {@link ResponseHandler}s that deliver the records of streamed
+ * responses one at a time, while the body is read: newline-delimited json, json lines and
+ * Server-Sent Events. The handlers return the number of records handed to the consumer, the
+ * one it stopped at included. A record longer than the bound fails the response, and a consumer
+ * returning false stops the reading and closes the connection
+ */
+public final class StreamingHandlers {
+
+  /**
+   * Default bound of the length of a record, 1 MB
+   */
+  public static final int DEFAULT_MAX_RECORD_LENGTH = 1024 * 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String DEFAULT_EVENT = "message";
+
+  private StreamingHandlers() {}
+
+  /**
+   * Handler delivering the non-empty lines of the response
+   * @param consumer the consumer of the lines
+   * @return the handler
+   */
+  public static ResponseHandler<Long> lines(RecordConsumer<String> consumer) {
+    return lines(consumer, DEFAULT_MAX_RECORD_LENGTH);
+  }
+
+  /**
+   * Handler delivering the non-empty lines of the response
+   * @param consumer the consumer of the lines
+   * @param maxRecordLength the max length of a line, in bytes
+   * @return the handler
+   */
+  public static ResponseHandler<Long> lines(final RecordConsumer<String> consumer, final int maxRecordLength) {
+    return new ResponseHandler<Long>() {
+      @Override
+      public Long convert(InputStream inputStream) throws IOException {
+        LineReader reader = new LineReader(inputStream, UTF_8, maxRecordLength);
+        long records = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+          if (line.isEmpty()) {
+            continue;
+          }
+          records++;
+          if (!consumer.accept(line)) {
+            abort(inputStream);
+            break;
+          }
+        }
+        return records;
+      }
+    };
+  }
+
+  /**
+   * Handler delivering the objects of a newline-delimited json (or json lines) response
+   * @param tClass the class of the objects
+   * @param parser the parser of a line
+   * @param consumer the consumer of the objects
+   * @param <T> the type of the objects
+   * @return the handler
+   */
+  public static <T> ResponseHandler<Long> ndjson(Class<T> tClass, ObjectParser parser,
+                                                 RecordConsumer<? super T> consumer) {
+    return ndjson(tClass, parser, consumer, DEFAULT_MAX_RECORD_LENGTH);
+  }
+
+  /**
+   * Handler delivering the objects of a newline-delimited json (or json lines) response
+   * @param tClass the class of the objects
+   * @param parser the parser of a line
+   * @param consumer the consumer of the objects
+   * @param maxRecordLength the max length of a line, in bytes
+   * @param <T> the type of the objects
+   * @return the handler
+   */
+  public static <T> ResponseHandler<Long> ndjson(final Class<T> tClass, final ObjectParser parser,
+                                                 final RecordConsumer<? super T> consumer,
+                                                 int maxRecordLength) {
+    return lines(line -> consumer.accept(parser.parse(tClass, line)), maxRecordLength);
+  }
+
+  /**
+   * Handler delivering the events of a text/event-stream response
+   * @param consumer the consumer of the events
+   * @return the handler
+   */
+  public static ResponseHandler<Long> serverSentEvents(RecordConsumer<ServerSentEvent> consumer) {
+    return serverSentEvents(consumer, DEFAULT_MAX_RECORD_LENGTH);
+  }
+
+  /**
+   * Handler delivering the events of a text/event-stream response
+   * @param consumer the consumer of the events
+   * @param maxRecordLength the max length of the data of an event, in bytes
+   * @return the handler
+   */
+  public static ResponseHandler<Long> serverSentEvents(final RecordConsumer<ServerSentEvent> consumer,
+                                                       final int maxRecordLength) {
+    return new ResponseHandler<Long>() {
+      @Override
+      public Long convert(InputStream inputStream) throws IOException {
+        LineReader reader = new LineReader(inputStream, UTF_8, maxRecordLength);
+        StringBuilder data = new StringBuilder();
+        boolean hasData = false;
+        String lastId = null;
+        String event = null;
+        long retry = -1;
+        long records = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+          if (line.isEmpty()) {
+            // a blank line dispatches the event, if it has data
+            if (hasData) {
+              records++;
+              ServerSentEvent sse = new ServerSentEvent(lastId, event == null ? DEFAULT_EVENT : event,
+                  data.toString(), retry);
+              if (!consumer.accept(sse)) {
+                abort(inputStream);
+                break;
+              }
+            }
+            data.setLength(0);
+            hasData = false;
+            event = null;
+            retry = -1;
+            continue;
+          }
+          if (line.charAt(0) == ':') {
+            continue; // comment, such as a keep-alive
+          }
+          int colon = line.indexOf(':');
+          String field = colon < 0 ? line : line.substring(0, colon);
+          int start = colon < 0 ? line.length() : colon + 1;
+          if (start < line.length() && line.charAt(start) == ' ') {
+            start++;
+          }
+          String value = line.substring(start);
+          switch (field) {
+            case "data":
+              if (hasData) {
+                data.append('\n');
+              }
+              if (data.length() + value.length() > maxRecordLength) {
+                throw new IOException("Event longer than " + maxRecordLength + " bytes");
+              }
+              data.append(value);
+              hasData = true;
+              break;
+            case "event":
+              event = value;
+              break;
+            case "id":
+              if (value.indexOf('\0') < 0) {
+                lastId = value;
+              }
+              break;
+            case "retry":
+              try {
+                retry = Long.parseLong(value);
+              } catch (NumberFormatException e) {
+                // ignored, as the specification requires
+              }
+              break;
+            default:
+              // unknown fields are ignored
+          }
+        }
+        return records;
+      }
+    };
+  }
+
+  private static void abort(InputStream inputStream) {
+    if (inputStream instanceof Abortable) {
+      ((Abortable) inputStream).abort();
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.bcp.http.restclient.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Budget shared by the requests of a client, limiting the retries so that they can't amplify
+ * an outage. The budget holds tokens: each retryable failure takes one, each success gives back
+ * a fraction of one, and retries are only allowed while more than half of the tokens are left
+ */
+public class RetryBudget {
+
+  private static final long SCALE = 1000;
+
+  private final long maxTokens;
+  private final long successTokens;
+  private final AtomicLong tokens;
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   *
+   * @param maxTokens the number of tokens of the budget
+   * @param tokenRatio the fraction of token given back by a success
+   */
+  public RetryBudget(int maxTokens, double tokenRatio) {
+    if (maxTokens <= 0 || tokenRatio <= 0) {
+      throw new IllegalArgumentException("maxTokens and tokenRatio must be positive");
+    }
+    this.maxTokens = maxTokens * SCALE;
+    this.successTokens = Math.max(1, (long) (tokenRatio * SCALE));
+    this.tokens = new AtomicLong(this.maxTokens);
+  }
+
+  /**
+   * Records a successful response
+   */
+  public void onSuccess() {
+    long current;
+    while ((current = tokens.get()) < maxTokens) {
+      if (tokens.compareAndSet(current, Math.min(maxTokens, current + successTokens))) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Records a retryable failure and returns whether it can be retried
+   * @return whether the budget allows a retry
+   */
+  public boolean tryRetry() {
+    long current;
+    long next;
+    do {
+      current = tokens.get();
+      next = Math.max(0, current - SCALE);
+    } while (!tokens.compareAndSet(current, next));
+    if (next > maxTokens / 2) {
+      retries.increment();
+      return true;
+    }
+    rejected.increment();
+    return false;
+  }
+
+  /**
+   * Returns the number of retries allowed by the budget
+   * @return the number of retries
+   */
+  public long getRetries() {
+    return retries.sum();
+  }
+
+  /**
+   * Returns the number of retries refused because the budget was exhausted
+   * @return the number of refused retries
+   */
+  public long getRejectedRetries() {
+    return rejected.sum();
+  }
+
+  /**
+   * Returns the number of tokens left
+   * @return the tokens left
+   */
+  public double getTokens() {
+    return (double) tokens.get() / SCALE;
+  }
+}
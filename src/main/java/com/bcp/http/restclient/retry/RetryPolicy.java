@@ -0,0 +1,213 @@
+package com.bcp.http.restclient.retry;
+
+import com.bcp.http.restclient.request.HttpMethods;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.util.HttpDates;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Policy deciding whether and when a failed request is sent again. Requests are retried when
+ * they could not be sent or when the server answers with a retryable status (429, 502, 503 and
+ * 504 by default), with an exponential backoff randomized by a jitter. By default only the
+ * idempotent methods of {@link HttpMethods} are retried, and requests with a body only if
+ * their body processor is replayable
+ */
+public class RetryPolicy {
+
+  private static final RetryPolicy NONE = builder().maxAttempts(1).build();
+
+  private final int maxAttempts;
+  private final long initialBackoff;
+  private final long maxBackoff;
+  private final double multiplier;
+  private final double jitter;
+  private final long maxRetryAfter;
+  private final Set<Integer> retryableStatuses;
+  private final boolean retryNonIdempotent;
+
+  private RetryPolicy(Builder builder) {
+    this.maxAttempts = builder.maxAttempts;
+    this.initialBackoff = builder.initialBackoff;
+    this.maxBackoff = builder.maxBackoff;
+    this.multiplier = builder.multiplier;
+    this.jitter = builder.jitter;
+    this.maxRetryAfter = builder.maxRetryAfter;
+    this.retryableStatuses = new HashSet<>(builder.retryableStatuses);
+    this.retryNonIdempotent = builder.retryNonIdempotent;
+  }
+
+  /**
+   * Returns a new retry policy builder
+   * @return the retry policy builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns a policy that never retries
+   * @return the policy
+   */
+  public static RetryPolicy none() {
+    return NONE;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * Returns whether the request can be sent again, whatever its response
+   * @param request the request
+   * @return whether the request can be retried
+   */
+  public boolean canRetry(RestRequest request) {
+    if (maxAttempts <= 1) {
+      return false;
+    }
+    if (!retryNonIdempotent && !HttpMethods.isIdempotent(request.getMethod())) {
+      return false;
+    }
+    return !request.hasOutput() || request.getOutputProcessor().isReplayable();
+  }
+
+  /**
+   * Returns whether the response calls for a retry
+   * @param response the response
+   * @return whether the response is retryable
+   */
+  public boolean isRetryable(RestResponse<?> response) {
+    return response.getResponseCode() == RestResponse.REQUEST_NOT_SENT
+        || retryableStatuses.contains(response.getResponseCode());
+  }
+
+  /**
+   * Returns the time to wait before the given retry. The Retry-After header of the response,
+   * in seconds or as a date, is honored when it asks for a longer delay
+   * @param retry the number of the retry, starting at 1
+   * @param response the response of the previous attempt
+   * @return the delay in milliseconds, or -1 if the server asks to wait longer than allowed
+   */
+  public long delayBeforeRetry(int retry, RestResponse<?> response) {
+    double backoff = Math.min(maxBackoff, initialBackoff * Math.pow(multiplier, retry - 1));
+    long delay = (long) (backoff * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    long retryAfter = HttpDates.retryAfterMillis(response.getHeaders() == null ? null :
+        response.getHeaders().getValue("Retry-After"));
+    if (retryAfter > maxRetryAfter) {
+      return -1;
+    }
+    return Math.max(delay, retryAfter);
+  }
+
+  /**
+   * Class allowing to build a retry policy
+   */
+  public static class Builder {
+
+    private int maxAttempts = 3;
+    private long initialBackoff = 100;
+    private long maxBackoff = 10000;
+    private double multiplier = 2;
+    private double jitter = 0.5;
+    private long maxRetryAfter = 30000;
+    private Set<Integer> retryableStatuses = new HashSet<>(Arrays.asList(429, 502, 503, 504));
+    private boolean retryNonIdempotent = false;
+
+    private Builder() {}
+
+    /**
+     * Sets the maximum number of times a request is sent, the first attempt included
+     * @param maxAttempts the maximum number of attempts
+     * @return this
+     */
+    public Builder maxAttempts(int maxAttempts) {
+      if (maxAttempts <= 0) {
+        throw new IllegalArgumentException("maxAttempts must be positive");
+      }
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * Sets the delay before the first retry, multiplied at each following retry
+     * @param durationInMillis the duration in milliseconds
+     * @param multiplier the factor applied to the delay at each retry
+     * @return this
+     */
+    public Builder backoff(long durationInMillis, double multiplier) {
+      if (durationInMillis < 0 || multiplier < 1) {
+        throw new IllegalArgumentException("invalid backoff");
+      }
+      this.initialBackoff = durationInMillis;
+      this.multiplier = multiplier;
+      return this;
+    }
+
+    /**
+     * Sets the maximum delay between two attempts
+     * @param durationInMillis the duration in milliseconds
+     * @return this
+     */
+    public Builder maxBackoff(long durationInMillis) {
+      this.maxBackoff = durationInMillis;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of the delay that is randomized, between 0 (no jitter) and 1
+     * @param jitter the jitter
+     * @return this
+     */
+    public Builder jitter(double jitter) {
+      if (jitter < 0 || jitter > 1) {
+        throw new IllegalArgumentException("jitter must be between 0 and 1");
+      }
+      this.jitter = jitter;
+      return this;
+    }
+
+    /**
+     * Sets the longest Retry-After delay accepted, the request isn't retried if the server
+     * asks to wait longer
+     * @param durationInMillis the duration in milliseconds
+     * @return this
+     */
+    public Builder maxRetryAfter(long durationInMillis) {
+      this.maxRetryAfter = durationInMillis;
+      return this;
+    }
+
+    /**
+     * Sets the response codes for which a request is retried
+     * @param statuses the response codes
+     * @return this
+     */
+    public Builder retryableStatuses(Integer... statuses) {
+      this.retryableStatuses = new HashSet<>(Arrays.asList(statuses));
+      return this;
+    }
+
+    /**
+     * Allows to retry requests whose method isn't idempotent, such as POST and PATCH
+     * @param retryNonIdempotent whether non idempotent requests are retried
+     * @return this
+     */
+    public Builder retryNonIdempotent(boolean retryNonIdempotent) {
+      this.retryNonIdempotent = retryNonIdempotent;
+      return this;
+    }
+
+    /**
+     * Build the retry policy
+     * @return the retry policy
+     */
+    public RetryPolicy build() {
+      return new RetryPolicy(this);
+    }
+  }
+}
@@ -0,0 +1,389 @@
+package com.bcp.http.restclient.transport;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool of persistent connections of a {@link NioTransport}, keyed by scheme, host and port
+ */
+public class ConnectionPool {
+
+  private final int maxConnectionsPerHost;
+  private final long idleTimeoutNanos;
+  private final long maxLifetimeNanos;
+  private final long maxWaitNanos;
+
+  private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<>();
+  private final AtomicLong checkouts = new AtomicLong();
+  private final AtomicLong checkoutTimeouts = new AtomicLong();
+  private final AtomicLong totalCheckoutWaitNanos = new AtomicLong();
+  private final AtomicLong maxCheckoutWaitNanos = new AtomicLong();
+  private final AtomicLong created = new AtomicLong();
+  private final AtomicLong evicted = new AtomicLong();
+  private final ScheduledExecutorService reaper;
+  private volatile boolean closed = false;
+
+  private ConnectionPool(Builder builder) {
+    this.maxConnectionsPerHost = builder.maxConnectionsPerHost;
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(builder.idleTimeout);
+    this.maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxLifetime);
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxWait);
+    if (builder.idleTimeout > 0) {
+      long period = Math.max(builder.idleTimeout / 2, 100);
+      reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "restclient-pool-reaper");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      reaper.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          evictExpired();
+        }
+      }, period, period, TimeUnit.MILLISECONDS);
+    } else {
+      reaper = null;
+    }
+  }
+
+  /**
+   * Returns a new pool builder
+   * @return the pool builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Leases a connection to the host of the given url. An idle connection is reused when possible,
+   * otherwise a new one is opened if the host limit allows it, otherwise the call waits for a
+   * connection to be released, at most for the configured max wait
+   * @param url the url
+   * @param connectTimeout the connect timeout in milliseconds
+   * @param fresh whether a new connection must be opened
+   * @return the connection
+   * @throws IOException in case of I/O error or if no connection could be leased in time
+   */
+  NioChannel lease(URL url, int connectTimeout, boolean fresh) throws IOException {
+    String key = key(url);
+    Route route = route(key);
+    long start = System.nanoTime();
+    List<NioChannel> toClose = new ArrayList<>(0);
+    NioChannel leased = null;
+    route.lock.lock();
+    try {
+      long remaining = maxWaitNanos;
+      while (true) {
+        if (closed) {
+          throw new IOException("Connection pool is closed");
+        }
+        NioChannel idle;
+        while ((idle = route.idle.pollFirst()) != null) {
+          if (fresh || isExpired(idle, System.nanoTime()) || !idle.isReusable()) {
+            toClose.add(idle);
+            continue;
+          }
+          leased = idle;
+          break;
+        }
+        if (leased != null || route.leased + route.idle.size() < maxConnectionsPerHost) {
+          route.leased++;
+          break;
+        }
+        if (remaining <= 0) {
+          checkoutTimeouts.incrementAndGet();
+          throw new IOException("Timeout waiting for a connection to " + key
+              + ", " + route.leased + " connections leased");
+        }
+        route.pending++;
+        try {
+          remaining = route.released.awaitNanos(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while waiting for a connection to " + key);
+        } finally {
+          route.pending--;
+        }
+      }
+    } finally {
+      route.lock.unlock();
+      for (NioChannel channel : toClose) {
+        evicted.incrementAndGet();
+        channel.close();
+      }
+    }
+    recordCheckout(System.nanoTime() - start);
+    if (leased == null) {
+      try {
+        leased = NioChannel.open(key, url.getHost(), port(url),
+            "https".equals(url.getProtocol()), connectTimeout);
+        created.incrementAndGet();
+      } catch (IOException | RuntimeException e) {
+        route.lock.lock();
+        try {
+          route.leased--;
+          route.released.signal();
+        } finally {
+          route.lock.unlock();
+        }
+        throw e;
+      }
+    }
+    leased.markLeased();
+    return leased;
+  }
+
+  /**
+   * Gives back a leased connection
+   * @param channel the connection
+   * @param reusable whether the connection can carry another request
+   */
+  void release(NioChannel channel, boolean reusable) {
+    Route route = route(channel.getKey());
+    boolean keep;
+    route.lock.lock();
+    try {
+      route.leased--;
+      keep = reusable && !closed && !isExpired(channel, System.nanoTime());
+      if (keep) {
+        channel.markIdle();
+        route.idle.offerFirst(channel);
+      }
+      route.released.signal();
+    } finally {
+      route.lock.unlock();
+    }
+    if (!keep) {
+      channel.close();
+    }
+  }
+
+  /**
+   * Closes the idle connections that exceeded the idle timeout or their max lifetime
+   */
+  void evictExpired() {
+    long now = System.nanoTime();
+    for (Route route : routes.values()) {
+      List<NioChannel> toClose = new ArrayList<>(0);
+      route.lock.lock();
+      try {
+        Iterator<NioChannel> iterator = route.idle.iterator();
+        while (iterator.hasNext()) {
+          NioChannel channel = iterator.next();
+          if (isExpired(channel, now)
+              || (idleTimeoutNanos > 0 && now - channel.getLastUsedAt() > idleTimeoutNanos)) {
+            iterator.remove();
+            toClose.add(channel);
+          }
+        }
+      } finally {
+        route.lock.unlock();
+      }
+      for (NioChannel channel : toClose) {
+        evicted.incrementAndGet();
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Closes all the idle connections and refuses new leases. Leased connections are closed
+   * when they are released
+   */
+  void close() {
+    closed = true;
+    if (reaper != null) {
+      reaper.shutdownNow();
+    }
+    for (Route route : routes.values()) {
+      List<NioChannel> toClose;
+      route.lock.lock();
+      try {
+        toClose = new ArrayList<>(route.idle);
+        route.idle.clear();
+        route.released.signalAll();
+      } finally {
+        route.lock.unlock();
+      }
+      for (NioChannel channel : toClose) {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Returns the statistics of the whole pool
+   * @return the pool statistics
+   */
+  public PoolStats getStats() {
+    int leased = 0;
+    int idle = 0;
+    int pending = 0;
+    for (Route route : routes.values()) {
+      route.lock.lock();
+      try {
+        leased += route.leased;
+        idle += route.idle.size();
+        pending += route.pending;
+      } finally {
+        route.lock.unlock();
+      }
+    }
+    return stats(leased, idle, pending);
+  }
+
+  /**
+   * Returns the statistics of each host of the pool, keyed by scheme, host and port.
+   * Checkout counters are pool-wide
+   * @return the statistics by host
+   */
+  public Map<String, PoolStats> getStatsByHost() {
+    Map<String, PoolStats> stats = new LinkedHashMap<>();
+    for (Map.Entry<String, Route> entry : routes.entrySet()) {
+      Route route = entry.getValue();
+      route.lock.lock();
+      try {
+        stats.put(entry.getKey(), stats(route.leased, route.idle.size(), route.pending));
+      } finally {
+        route.lock.unlock();
+      }
+    }
+    return Collections.unmodifiableMap(stats);
+  }
+
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  private PoolStats stats(int leased, int idle, int pending) {
+    return new PoolStats(leased, idle, pending, checkouts.get(), checkoutTimeouts.get(),
+        totalCheckoutWaitNanos.get(), maxCheckoutWaitNanos.get(), created.get(), evicted.get());
+  }
+
+  private void recordCheckout(long waitNanos) {
+    checkouts.incrementAndGet();
+    totalCheckoutWaitNanos.addAndGet(waitNanos);
+    long max;
+    while (waitNanos > (max = maxCheckoutWaitNanos.get())) {
+      if (maxCheckoutWaitNanos.compareAndSet(max, waitNanos)) {
+        break;
+      }
+    }
+  }
+
+  private boolean isExpired(NioChannel channel, long now) {
+    return maxLifetimeNanos > 0 && now - channel.getCreatedAt() > maxLifetimeNanos;
+  }
+
+  private Route route(String key) {
+    Route route = routes.get(key);
+    if (route == null) {
+      Route newRoute = new Route();
+      route = routes.putIfAbsent(key, newRoute);
+      if (route == null) {
+        route = newRoute;
+      }
+    }
+    return route;
+  }
+
+  private static String key(URL url) {
+    return url.getProtocol() + "://" + url.getHost() + ':' + port(url);
+  }
+
+  private static int port(URL url) {
+    return url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+  }
+
+  private static final class Route {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Deque<NioChannel> idle = new ArrayDeque<>();
+    private int leased = 0;
+    private int pending = 0;
+  }
+
+  /**
+   * Class allowing to build a connection pool
+   */
+  public static class Builder {
+
+    private int maxConnectionsPerHost = 20;
+    private long idleTimeout = 30000;
+    private long maxLifetime = 0;
+    private long maxWait = 30000;
+
+    private Builder() {}
+
+    /**
+     * Sets the maximum number of connections, leased or idle, to a given host
+     * @param maxConnectionsPerHost the maximum number of connections per host
+     * @return this
+     */
+    public Builder maxConnectionsPerHost(int maxConnectionsPerHost) {
+      if (maxConnectionsPerHost <= 0) {
+        throw new IllegalArgumentException("maxConnectionsPerHost must be positive");
+      }
+      this.maxConnectionsPerHost = maxConnectionsPerHost;
+      return this;
+    }
+
+    /**
+     * Sets the time after which an idle connection is closed (0 means never)
+     * @param durationInMillis the duration in milliseconds
+     * @return this
+     */
+    public Builder idleTimeout(long durationInMillis) {
+      this.idleTimeout = durationInMillis;
+      return this;
+    }
+
+    /**
+     * Sets the time after which a connection is not reused anymore (0 means no limit)
+     * @param durationInMillis the duration in milliseconds
+     * @return this
+     */
+    public Builder maxLifetime(long durationInMillis) {
+      this.maxLifetime = durationInMillis;
+      return this;
+    }
+
+    /**
+     * Sets the maximum time to wait for a connection when the host limit is reached
+     * @param durationInMillis the duration in milliseconds
+     * @return this
+     */
+    public Builder maxWait(long durationInMillis) {
+      this.maxWait = durationInMillis;
+      return this;
+    }
+
+    /**
+     * Build the connection pool
+     * @return the connection pool
+     */
+    public ConnectionPool build() {
+      return new ConnectionPool(this);
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package com.bcp.http.restclient.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+
+/**
+ * A persistent connection of the {@link NioTransport}, wrapping a blocking socket channel
+ * (layered with TLS for https)
+ */
+final class NioChannel {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final String key;
+  private final SocketChannel channel;
+  private final Socket socket;
+  private final boolean secure;
+  private final InputStream in;
+  private final OutputStream out;
+  private final ByteBuffer probe = ByteBuffer.allocate(1);
+  private final long createdAt;
+  private long lastUsedAt;
+  private int useCount;
+
+  private NioChannel(String key, SocketChannel channel, Socket socket, boolean secure) throws IOException {
+    this.key = key;
+    this.channel = channel;
+    this.socket = socket;
+    this.secure = secure;
+    this.in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+    this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+    this.createdAt = System.nanoTime();
+    this.lastUsedAt = createdAt;
+  }
+
+  /**
+   * Opens a new connection
+   * @param key the pool key of the connection
+   * @param host the host to connect to
+   * @param port the port to connect to
+   * @param secure whether the connection uses TLS
+   * @param connectTimeout the connect timeout in milliseconds, 0 means no timeout
+   * @return the connected channel
+   * @throws IOException in case of I/O error
+   */
+  static NioChannel open(String key, String host, int port, boolean secure, int connectTimeout)
+      throws IOException {
+    SocketChannel channel = SocketChannel.open();
+    try {
+      channel.socket().setTcpNoDelay(true);
+      channel.socket().connect(new InetSocketAddress(host, port), connectTimeout);
+      Socket socket = channel.socket();
+      if (secure) {
+        SSLSocket sslSocket = (SSLSocket) HttpsURLConnection.getDefaultSSLSocketFactory()
+            .createSocket(socket, host, port, true);
+        SSLParameters parameters = sslSocket.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        sslSocket.setSSLParameters(parameters);
+        sslSocket.setSoTimeout(connectTimeout);
+        sslSocket.startHandshake();
+        socket = sslSocket;
+      }
+      return new NioChannel(key, channel, socket, secure);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  String getKey() {
+    return key;
+  }
+
+  InputStream getInputStream() {
+    return in;
+  }
+
+  OutputStream getOutputStream() {
+    return out;
+  }
+
+  /**
+   * Returns the socket channel, to which files can be transferred without copies
+   * @return the channel, null for TLS connections whose bytes must be encrypted
+   */
+  WritableByteChannel getPlainChannel() {
+    return secure ? null : channel;
+  }
+
+  long getCreatedAt() {
+    return createdAt;
+  }
+
+  long getLastUsedAt() {
+    return lastUsedAt;
+  }
+
+  boolean isReused() {
+    return useCount > 1;
+  }
+
+  void setReadTimeout(int readTimeout) throws IOException {
+    socket.setSoTimeout(readTimeout);
+  }
+
+  void markLeased() {
+    useCount++;
+  }
+
+  void markIdle() {
+    lastUsedAt = System.nanoTime();
+  }
+
+  /**
+   * Checks that an idle connection can still carry a request: the channel is open, no stray
+   * bytes were sent and, for plain connections, the peer didn't close its side
+   * @return whether the connection can be reused
+   */
+  boolean isReusable() {
+    if (!channel.isOpen()) {
+      return false;
+    }
+    try {
+      if (in.available() > 0) {
+        return false;
+      }
+      if (secure) {
+        // reading the raw channel would consume TLS records, rely on the pool timeouts instead
+        return true;
+      }
+      channel.configureBlocking(false);
+      try {
+        probe.clear();
+        return channel.read(probe) == 0;
+      } finally {
+        channel.configureBlocking(true);
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  void close() {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // nothing to do
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // nothing to do
+    }
+  }
+}
@@ -0,0 +1,883 @@
+package com.bcp.http.restclient.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.bcp.http.restclient.util.BufferPool;
+import com.bcp.http.restclient.util.FileChannelSink;
+import com.bcp.http.restclient.util.IOUtils;
+
+/**
+ * {@link HttpURLConnection} implementation of the {@link NioTransport}, writing and reading
+ * HTTP/1.1 messages directly on a pooled {@link NioChannel}
+ */
+final class NioHttpConnection extends HttpURLConnection {
+
+  private static final Charset ASCII = Charset.forName("ISO-8859-1");
+  private static final int MAX_LINE_LENGTH = 64 * 1024;
+  private static final int MAX_HEADER_COUNT = 512;
+  private static final int DRAIN_LIMIT = 64 * 1024;
+  private static final String USER_AGENT = "bcp-restclient";
+
+  private final NioTransport transport;
+  private final Object channelLock = new Object();
+  private final ReentrantLock exchangeLock = new ReentrantLock();
+  private volatile NioChannel channel;
+  private Map<String, List<String>> requestHeaders;
+  private ByteArrayOutputStream bufferedBody;
+  private OutputStream streamingBody;
+  private List<String> headerKeys;
+  private List<String> headerValues;
+  private Map<String, List<String>> headerFields;
+  private ResponseStream responseBody;
+  private boolean keepAlive;
+  private IOException failure;
+
+  NioHttpConnection(URL url, NioTransport transport) {
+    super(url);
+    this.transport = transport;
+  }
+
+  @Override
+  public void setRequestMethod(String method) throws ProtocolException {
+    if (connected) {
+      throw new ProtocolException("Can't reset method: already connected");
+    }
+    if (method == null || method.isEmpty()) {
+      throw new ProtocolException("Invalid HTTP method: " + method);
+    }
+    for (int i = 0; i < method.length(); i++) {
+      char c = method.charAt(i);
+      if (c <= ' ' || c >= 127) {
+        throw new ProtocolException("Invalid HTTP method: " + method);
+      }
+    }
+    this.method = method;
+  }
+
+  @Override
+  public void connect() throws IOException {
+    if (connected) {
+      return;
+    }
+    requestHeaders = getRequestProperties();
+    lease(false);
+    connected = true;
+  }
+
+  @Override
+  public OutputStream getOutputStream() throws IOException {
+    // locks rather than synchronized, so that virtual threads aren't pinned during I/O
+    exchangeLock.lock();
+    try {
+      return openOutputStream();
+    } finally {
+      exchangeLock.unlock();
+    }
+  }
+
+  private OutputStream openOutputStream() throws IOException {
+    if (!doOutput) {
+      throw new ProtocolException(
+          "cannot write to a URLConnection if doOutput=false - call setDoOutput(true)");
+    }
+    if (headerKeys != null) {
+      throw new ProtocolException("Cannot write output after reading input.");
+    }
+    if (bufferedBody != null) {
+      return bufferedBody;
+    }
+    if (streamingBody != null) {
+      return streamingBody;
+    }
+    connect();
+    long length = fixedContentLengthLong != -1 ? fixedContentLengthLong : fixedContentLength;
+    if (length >= 0) {
+      writeHead(length, false);
+      streamingBody = new FixedLengthOutputStream(channel().getOutputStream(), channel().getPlainChannel(), length);
+    } else if (chunkLength > 0) {
+      writeHead(-1, true);
+      streamingBody = new ChunkedOutputStream(channel().getOutputStream(), chunkLength);
+    } else {
+      bufferedBody = new ByteArrayOutputStream();
+      return bufferedBody;
+    }
+    return streamingBody;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    if (!doInput) {
+      throw new ProtocolException(
+          "Cannot read from URLConnection if doInput=false (call setDoInput(true))");
+    }
+    ensureResponse();
+    if (responseCode >= 400) {
+      if (responseCode == HTTP_NOT_FOUND || responseCode == HTTP_GONE) {
+        throw new FileNotFoundException(url.toString());
+      }
+      throw new IOException("Server returned HTTP response code: " + responseCode
+          + " for URL: " + url);
+    }
+    return responseBody;
+  }
+
+  @Override
+  public InputStream getErrorStream() {
+    if (headerKeys == null || responseCode < 400) {
+      return null;
+    }
+    return responseBody;
+  }
+
+  @Override
+  public int getResponseCode() throws IOException {
+    ensureResponse();
+    return responseCode;
+  }
+
+  @Override
+  public String getResponseMessage() throws IOException {
+    ensureResponse();
+    return responseMessage;
+  }
+
+  @Override
+  public Map<String, List<String>> getHeaderFields() {
+    try {
+      ensureResponse();
+    } catch (IOException e) {
+      return Collections.emptyMap();
+    }
+    if (headerFields == null) {
+      // only built for the callers asking for the map, the client reads the headers by index
+      Map<String, List<String>> fields = new LinkedHashMap<>();
+      for (int i = 0; i < headerKeys.size(); i++) {
+        List<String> values = fields.get(headerKeys.get(i));
+        if (values == null) {
+          values = new ArrayList<>(1);
+          fields.put(headerKeys.get(i), values);
+        }
+        values.add(headerValues.get(i));
+      }
+      for (Map.Entry<String, List<String>> field : fields.entrySet()) {
+        field.setValue(Collections.unmodifiableList(field.getValue()));
+      }
+      headerFields = Collections.unmodifiableMap(fields);
+    }
+    return headerFields;
+  }
+
+  @Override
+  public String getHeaderField(String name) {
+    try {
+      ensureResponse();
+    } catch (IOException e) {
+      return null;
+    }
+    for (int i = headerKeys.size() - 1; i > 0; i--) {
+      if (headerKeys.get(i).equalsIgnoreCase(name)) {
+        return headerValues.get(i);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String getHeaderFieldKey(int n) {
+    try {
+      ensureResponse();
+    } catch (IOException e) {
+      return null;
+    }
+    return n > 0 && n < headerKeys.size() ? headerKeys.get(n) : null;
+  }
+
+  @Override
+  public String getHeaderField(int n) {
+    try {
+      ensureResponse();
+    } catch (IOException e) {
+      return null;
+    }
+    return n >= 0 && n < headerValues.size() ? headerValues.get(n) : null;
+  }
+
+  @Override
+  public void disconnect() {
+    NioChannel channel = takeChannel();
+    if (channel != null) {
+      transport.recycle(channel, false);
+    }
+  }
+
+  @Override
+  public boolean usingProxy() {
+    return false;
+  }
+
+  /**
+   * Ends the exchange, keeping the connection alive when the response has been fully read
+   */
+  void release() {
+    if (responseBody != null) {
+      responseBody.close();
+    } else {
+      disconnect();
+    }
+  }
+
+  private void lease(boolean fresh) throws IOException {
+    NioChannel leased = transport.lease(url, getConnectTimeout(), fresh);
+    try {
+      leased.setReadTimeout(getReadTimeout());
+    } catch (IOException e) {
+      transport.recycle(leased, false);
+      throw e;
+    }
+    channel = leased;
+  }
+
+  private NioChannel channel() throws IOException {
+    NioChannel current = channel;
+    if (current == null) {
+      throw new SocketException("Connection closed");
+    }
+    return current;
+  }
+
+  private NioChannel takeChannel() {
+    synchronized (channelLock) {
+      NioChannel current = channel;
+      channel = null;
+      return current;
+    }
+  }
+
+  private void ensureResponse() throws IOException {
+    exchangeLock.lock();
+    try {
+      readResponseOnce();
+    } finally {
+      exchangeLock.unlock();
+    }
+  }
+
+  private void readResponseOnce() throws IOException {
+    if (failure != null) {
+      throw failure;
+    }
+    if (headerKeys != null) {
+      return;
+    }
+    try {
+      connect();
+      try {
+        sendRequest();
+        readResponse();
+      } catch (StaleConnectionException e) {
+        // the server closed an idle connection: the request can be sent again as it wasn't streamed
+        disconnect();
+        lease(true);
+        sendRequest();
+        readResponse();
+      }
+    } catch (IOException e) {
+      disconnect();
+      failure = e;
+      throw e;
+    }
+  }
+
+  private void sendRequest() throws IOException {
+    OutputStream out = channel().getOutputStream();
+    if (streamingBody != null) {
+      streamingBody.close();
+    } else if (bufferedBody != null) {
+      writeHead(bufferedBody.size(), false);
+      bufferedBody.writeTo(out);
+    } else {
+      boolean needsLength = "POST".equals(method) || "PUT".equals(method) || "PATCH".equals(method);
+      writeHead(needsLength ? 0 : -1, false);
+    }
+    out.flush();
+  }
+
+  private void writeHead(long contentLength, boolean chunked) throws IOException {
+    StringBuilder head = new StringBuilder(256);
+    String file = url.getFile();
+    head.append(method).append(' ').append(file.isEmpty() ? "/" : file).append(" HTTP/1.1\r\n");
+    if (!requestHeaders.containsKey("Host")) {
+      int port = url.getPort();
+      appendHeader(head, "Host",
+          port == -1 || port == url.getDefaultPort() ? url.getHost() : url.getHost() + ':' + port);
+    }
+    if (!requestHeaders.containsKey("Accept")) {
+      appendHeader(head, "Accept", "*/*");
+    }
+    if (!requestHeaders.containsKey("User-Agent")) {
+      appendHeader(head, "User-Agent", USER_AGENT);
+    }
+    for (Map.Entry<String, List<String>> header : requestHeaders.entrySet()) {
+      String name = header.getKey();
+      if (name == null || "Content-Length".equalsIgnoreCase(name)
+          || "Transfer-Encoding".equalsIgnoreCase(name)) {
+        continue;
+      }
+      for (String value : header.getValue()) {
+        appendHeader(head, name, value);
+      }
+    }
+    if (chunked) {
+      appendHeader(head, "Transfer-Encoding", "chunked");
+    } else if (contentLength >= 0) {
+      appendHeader(head, "Content-Length", Long.toString(contentLength));
+    }
+    head.append("\r\n");
+    channel().getOutputStream().write(head.toString().getBytes(ASCII));
+  }
+
+  private static void appendHeader(StringBuilder head, String name, String value) {
+    if (value == null) {
+      value = "";
+    }
+    if (name.indexOf('\r') >= 0 || name.indexOf('\n') >= 0
+        || value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0) {
+      throw new IllegalArgumentException("Illegal character in header " + name);
+    }
+    head.append(name).append(": ").append(value).append("\r\n");
+  }
+
+  private void readResponse() throws IOException {
+    NioChannel current = channel();
+    InputStream in = current.getInputStream();
+    boolean retryable = current.isReused() && streamingBody == null;
+    String statusLine;
+    do {
+      try {
+        statusLine = readLine(in);
+      } catch (IOException e) {
+        if (retryable) {
+          throw new StaleConnectionException(e);
+        }
+        throw e;
+      }
+      if (statusLine == null) {
+        if (retryable) {
+          throw new StaleConnectionException(null);
+        }
+        throw new EOFException("Unexpected end of stream while reading the status line");
+      }
+      retryable = false;
+      parseStatusLine(statusLine);
+      readHeaders(in, statusLine);
+    } while (responseCode >= 100 && responseCode < 200 && responseCode != 101);
+
+    keepAlive = statusLine.startsWith("HTTP/1.1")
+        ? !hasToken("Connection", "close")
+        : hasToken("Connection", "keep-alive");
+    InputStream body;
+    if ("HEAD".equals(method) || responseCode == HTTP_NO_CONTENT
+        || responseCode == HTTP_NOT_MODIFIED || responseCode < 200) {
+      body = null;
+    } else if (hasToken("Transfer-Encoding", "chunked")) {
+      body = new ChunkedInputStream(in);
+    } else if (getHeaderValue("Content-Length") != null) {
+      long length;
+      try {
+        length = Long.parseLong(getHeaderValue("Content-Length").trim());
+      } catch (NumberFormatException e) {
+        throw new ProtocolException("Invalid Content-Length: " + getHeaderValue("Content-Length"));
+      }
+      body = length == 0 ? null : new FixedLengthInputStream(in, length);
+    } else {
+      keepAlive = false;
+      body = in;
+    }
+    responseBody = new ResponseStream(body);
+    if (body == null) {
+      exchangeDone();
+    }
+  }
+
+  private void parseStatusLine(String statusLine) throws IOException {
+    int firstSpace = statusLine.indexOf(' ');
+    if (!statusLine.startsWith("HTTP/") || firstSpace < 0 || statusLine.length() < firstSpace + 4) {
+      throw new ProtocolException("Invalid status line: " + statusLine);
+    }
+    try {
+      responseCode = Integer.parseInt(statusLine.substring(firstSpace + 1, firstSpace + 4));
+    } catch (NumberFormatException e) {
+      throw new ProtocolException("Invalid status line: " + statusLine);
+    }
+    responseMessage = statusLine.length() > firstSpace + 5 ? statusLine.substring(firstSpace + 5) : "";
+  }
+
+  private void readHeaders(InputStream in, String statusLine) throws IOException {
+    List<String> keys = new ArrayList<>();
+    List<String> values = new ArrayList<>();
+    keys.add(null);
+    values.add(statusLine);
+    String line;
+    while ((line = readLine(in)) != null && !line.isEmpty()) {
+      if (keys.size() > MAX_HEADER_COUNT) {
+        throw new ProtocolException("Too many response headers");
+      }
+      char first = line.charAt(0);
+      if ((first == ' ' || first == '\t') && keys.size() > 1) {
+        int last = values.size() - 1;
+        values.set(last, values.get(last) + ' ' + line.trim());
+        continue;
+      }
+      int colon = line.indexOf(':');
+      if (colon <= 0) {
+        throw new ProtocolException("Invalid header line: " + line);
+      }
+      keys.add(line.substring(0, colon).trim());
+      values.add(line.substring(colon + 1).trim());
+    }
+    if (line == null) {
+      throw new EOFException("Unexpected end of stream while reading the headers");
+    }
+    headerKeys = keys;
+    headerValues = values;
+  }
+
+  private String getHeaderValue(String name) {
+    for (int i = headerKeys.size() - 1; i > 0; i--) {
+      if (headerKeys.get(i).equalsIgnoreCase(name)) {
+        return headerValues.get(i);
+      }
+    }
+    return null;
+  }
+
+  private boolean hasToken(String name, String token) {
+    for (int i = 1; i < headerKeys.size(); i++) {
+      if (headerKeys.get(i).equalsIgnoreCase(name)) {
+        for (String value : headerValues.get(i).split(",")) {
+          if (value.trim().equalsIgnoreCase(token)) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private void exchangeDone() {
+    NioChannel current = takeChannel();
+    if (current != null) {
+      transport.recycle(current, keepAlive);
+    }
+  }
+
+  static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder(64);
+    int b;
+    while ((b = in.read()) != -1) {
+      if (b == '\n') {
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+          line.setLength(length - 1);
+        }
+        return line.toString();
+      }
+      if (line.length() >= MAX_LINE_LENGTH) {
+        throw new ProtocolException("Line too long");
+      }
+      line.append((char) b);
+    }
+    if (line.length() > 0) {
+      throw new EOFException("Unexpected end of stream");
+    }
+    return null;
+  }
+
+  /**
+   * Thrown when a reused connection turns out to have been closed by the server
+   */
+  private static final class StaleConnectionException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    StaleConnectionException(IOException cause) {
+      super("Stale connection", cause);
+    }
+  }
+
+  /**
+   * Response body, giving back the connection once fully read
+   */
+  private final class ResponseStream extends InputStream {
+
+    private final InputStream body;
+    private boolean eof;
+    private boolean closed;
+
+    ResponseStream(InputStream body) {
+      this.body = body;
+      this.eof = body == null;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (eof) {
+        return -1;
+      }
+      int b = body.read();
+      if (b == -1) {
+        end();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (eof) {
+        return -1;
+      }
+      if (len == 0) {
+        return 0;
+      }
+      int read = body.read(b, off, len);
+      if (read == -1) {
+        end();
+      }
+      return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return eof ? 0 : body.available();
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (eof) {
+        return;
+      }
+      BufferPool pool = BufferPool.defaultPool();
+      byte[] skipBuffer = pool.acquire(IOUtils.DEFAULT_BUFFER_SIZE);
+      try {
+        long drained = 0;
+        while (drained < DRAIN_LIMIT) {
+          int read = body.read(skipBuffer, 0, skipBuffer.length);
+          if (read == -1) {
+            end();
+            return;
+          }
+          drained += read;
+        }
+      } catch (IOException e) {
+        // the connection can't be reused
+      } finally {
+        pool.release(skipBuffer);
+      }
+      eof = true;
+      disconnect();
+    }
+
+    private void end() {
+      eof = true;
+      exchangeDone();
+    }
+  }
+
+  private static final class FixedLengthInputStream extends InputStream {
+
+    private final InputStream in;
+    private long remaining;
+
+    FixedLengthInputStream(InputStream in, long length) {
+      this.in = in;
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int b = in.read();
+      if (b == -1) {
+        throw new EOFException("Unexpected end of stream, " + remaining + " bytes missing");
+      }
+      remaining--;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int read = in.read(b, off, (int) Math.min(len, remaining));
+      if (read == -1) {
+        throw new EOFException("Unexpected end of stream, " + remaining + " bytes missing");
+      }
+      remaining -= read;
+      return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), remaining);
+    }
+  }
+
+  private static final class ChunkedInputStream extends InputStream {
+
+    private final InputStream in;
+    private long chunkRemaining = 0;
+    private boolean eof = false;
+
+    ChunkedInputStream(InputStream in) {
+      this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!nextChunk()) {
+        return -1;
+      }
+      int b = in.read();
+      if (b == -1) {
+        throw new EOFException("Unexpected end of chunked stream");
+      }
+      chunkRemaining--;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!nextChunk()) {
+        return -1;
+      }
+      int read = in.read(b, off, (int) Math.min(len, chunkRemaining));
+      if (read == -1) {
+        throw new EOFException("Unexpected end of chunked stream");
+      }
+      chunkRemaining -= read;
+      return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return eof ? 0 : (int) Math.min(in.available(), chunkRemaining);
+    }
+
+    private boolean nextChunk() throws IOException {
+      if (eof) {
+        return false;
+      }
+      if (chunkRemaining > 0) {
+        return true;
+      }
+      String line = readLine(in);
+      if (line != null && line.isEmpty()) {
+        line = readLine(in); // CRLF ending the previous chunk
+      }
+      if (line == null) {
+        throw new EOFException("Unexpected end of chunked stream");
+      }
+      int extension = line.indexOf(';');
+      try {
+        chunkRemaining = Long.parseLong((extension < 0 ? line : line.substring(0, extension)).trim(), 16);
+      } catch (NumberFormatException e) {
+        throw new ProtocolException("Invalid chunk size: " + line);
+      }
+      if (chunkRemaining == 0) {
+        String trailer;
+        while ((trailer = readLine(in)) != null && !trailer.isEmpty()) {
+          // trailers are ignored
+        }
+        eof = true;
+        return false;
+      }
+      return true;
+    }
+  }
+
+  private static final class FixedLengthOutputStream extends OutputStream implements FileChannelSink {
+
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final long length;
+    private long written = 0;
+    private boolean closed = false;
+
+    FixedLengthOutputStream(OutputStream out, WritableByteChannel channel, long length) {
+      this.out = out;
+      this.channel = channel;
+      this.length = length;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream is closed");
+      }
+      if (written + len > length) {
+        throw new IOException("too many bytes written, expected " + length);
+      }
+      out.write(b, off, len);
+      written += len;
+    }
+
+    @Override
+    public void transferFrom(FileChannel file, long position, long count) throws IOException {
+      if (channel == null) {
+        IOUtils.copy(file, position, count, this);
+        return;
+      }
+      if (closed) {
+        throw new IOException("Stream is closed");
+      }
+      if (written + count > length) {
+        throw new IOException("too many bytes written, expected " + length);
+      }
+      // the file goes from the page cache to the socket, the buffered head is sent first
+      out.flush();
+      for (long sent = 0; sent < count; ) {
+        long transferred = file.transferTo(position + sent, count - sent, channel);
+        if (transferred <= 0 && position + sent >= file.size()) {
+          throw new EOFException("File ended " + (count - sent) + " bytes before the end of the region");
+        }
+        sent += transferred;
+        written += transferred;
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (written < length) {
+        throw new IOException("insufficient data written, " + written + " of " + length + " bytes");
+      }
+      out.flush();
+    }
+  }
+
+  private static final class ChunkedOutputStream extends OutputStream {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private final int chunkSize;
+    private int count = 0;
+    private boolean closed = false;
+
+    ChunkedOutputStream(OutputStream out, int chunkSize) {
+      this.out = out;
+      this.buffer = BufferPool.defaultPool().acquire(chunkSize);
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (closed) {
+        throw new IOException("Stream is closed");
+      }
+      if (count == chunkSize) {
+        flushChunk();
+      }
+      buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream is closed");
+      }
+      if (count == 0 && len >= chunkSize) {
+        writeChunk(b, off, len);
+        return;
+      }
+      while (len > 0) {
+        int n = Math.min(len, chunkSize - count);
+        System.arraycopy(b, off, buffer, count, n);
+        count += n;
+        off += n;
+        len -= n;
+        if (count == chunkSize) {
+          flushChunk();
+        }
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      flushChunk();
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      try {
+        flushChunk();
+      } finally {
+        closed = true;
+        BufferPool.defaultPool().release(buffer);
+      }
+      out.write(LAST_CHUNK);
+      out.flush();
+    }
+
+    private void flushChunk() throws IOException {
+      if (count > 0) {
+        writeChunk(buffer, 0, count);
+        count = 0;
+      }
+    }
+
+    private void writeChunk(byte[] b, int off, int len) throws IOException {
+      out.write(Integer.toHexString(len).getBytes(ASCII));
+      out.write(CRLF);
+      out.write(b, off, len);
+      out.write(CRLF);
+    }
+  }
+}
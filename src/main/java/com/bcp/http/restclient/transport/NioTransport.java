@@ -0,0 +1,67 @@
+package com.bcp.http.restclient.transport;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Transport speaking HTTP/1.1 over NIO socket channels. Connections are kept alive between
+ * requests in a {@link ConnectionPool} and reused for the same scheme, host and port.
+ * Unlike the JDK connection, this engine doesn't follow redirects nor go through proxies.
+ */
+public class NioTransport implements Transport {
+
+  private final ConnectionPool pool;
+
+  NioTransport(ConnectionPool pool) {
+    if (pool == null) {
+      throw new IllegalArgumentException("pool cannot be null");
+    }
+    this.pool = pool;
+  }
+
+  @Override
+  public HttpURLConnection openConnection(URL url) throws IOException {
+    String protocol = url.getProtocol();
+    if (!"http".equals(protocol) && !"https".equals(protocol)) {
+      throw new MalformedURLException("Unsupported protocol: " + protocol);
+    }
+    return new NioHttpConnection(url, this);
+  }
+
+  @Override
+  public void release(HttpURLConnection connection, boolean reusable) {
+    if (!reusable) {
+      connection.disconnect();
+    } else {
+      ((NioHttpConnection) connection).release();
+    }
+  }
+
+  @Override
+  public void close() {
+    pool.close();
+  }
+
+  /**
+   * Returns the pool holding the connections of this transport
+   * @return the connection pool
+   */
+  public ConnectionPool getConnectionPool() {
+    return pool;
+  }
+
+  NioChannel lease(URL url, int connectTimeout, boolean fresh) throws IOException {
+    return pool.lease(url, connectTimeout, fresh);
+  }
+
+  /**
+   * Gives back a connection whose exchange is over
+   * @param channel the connection
+   * @param reusable whether the exchange is fully over, so that it can carry another request
+   */
+  void recycle(NioChannel channel, boolean reusable) {
+    pool.release(channel, reusable);
+  }
+}
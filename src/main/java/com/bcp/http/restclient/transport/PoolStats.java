@@ -0,0 +1,120 @@
+package com.bcp.http.restclient.transport;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of the statistics of a {@link ConnectionPool}
+ */
+public class PoolStats {
+
+  private final int leased;
+  private final int idle;
+  private final int pending;
+  private final long checkouts;
+  private final long checkoutTimeouts;
+  private final long totalCheckoutWaitNanos;
+  private final long maxCheckoutWaitNanos;
+  private final long created;
+  private final long evicted;
+
+  PoolStats(int leased, int idle, int pending, long checkouts, long checkoutTimeouts,
+      long totalCheckoutWaitNanos, long maxCheckoutWaitNanos, long created, long evicted) {
+    this.leased = leased;
+    this.idle = idle;
+    this.pending = pending;
+    this.checkouts = checkouts;
+    this.checkoutTimeouts = checkoutTimeouts;
+    this.totalCheckoutWaitNanos = totalCheckoutWaitNanos;
+    this.maxCheckoutWaitNanos = maxCheckoutWaitNanos;
+    this.created = created;
+    this.evicted = evicted;
+  }
+
+  /**
+   * Returns the number of connections currently carrying a request
+   * @return the number of leased connections
+   */
+  public int getLeased() {
+    return leased;
+  }
+
+  /**
+   * Returns the number of connections kept alive, waiting for a request
+   * @return the number of idle connections
+   */
+  public int getIdle() {
+    return idle;
+  }
+
+  /**
+   * Returns the number of requests waiting for a connection
+   * @return the number of pending requests
+   */
+  public int getPending() {
+    return pending;
+  }
+
+  /**
+   * Returns the number of successful connection checkouts
+   * @return the number of checkouts
+   */
+  public long getCheckouts() {
+    return checkouts;
+  }
+
+  /**
+   * Returns the number of checkouts that timed out waiting for a connection
+   * @return the number of checkout timeouts
+   */
+  public long getCheckoutTimeouts() {
+    return checkoutTimeouts;
+  }
+
+  /**
+   * Returns the average time spent waiting for a connection
+   * @param unit the time unit
+   * @return the average checkout wait time
+   */
+  public double getAverageCheckoutWait(TimeUnit unit) {
+    return checkouts == 0 ? 0 : (double) unit.convert(totalCheckoutWaitNanos, TimeUnit.NANOSECONDS) / checkouts;
+  }
+
+  /**
+   * Returns the longest time spent waiting for a connection
+   * @param unit the time unit
+   * @return the max checkout wait time
+   */
+  public long getMaxCheckoutWait(TimeUnit unit) {
+    return unit.convert(maxCheckoutWaitNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the number of connections opened by the pool
+   * @return the number of connections created
+   */
+  public long getCreated() {
+    return created;
+  }
+
+  /**
+   * Returns the number of idle connections closed because they expired or were closed by the server
+   * @return the number of evicted connections
+   */
+  public long getEvicted() {
+    return evicted;
+  }
+
+  @Override
+  public String toString() {
+    return "PoolStats{" +
+        "leased=" + leased +
+        ", idle=" + idle +
+        ", pending=" + pending +
+        ", checkouts=" + checkouts +
+        ", checkoutTimeouts=" + checkoutTimeouts +
+        ", maxCheckoutWaitMillis=" + getMaxCheckoutWait(TimeUnit.MILLISECONDS) +
+        ", created=" + created +
+        ", evicted=" + evicted +
+        '}';
+  }
+}
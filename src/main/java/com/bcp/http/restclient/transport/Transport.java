@@ -0,0 +1,34 @@
+package com.bcp.http.restclient.transport;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Interface of the engine that carries the requests of a rest client to the server.
+ * A transport hands out {@link HttpURLConnection}s so that body processors and response handlers
+ * work the same way whatever the engine behind the connection is
+ */
+public interface Transport {
+
+  /**
+   * Opens a new, not yet connected, connection to the given url
+   * @param url the url of the request
+   * @return the connection
+   * @throws IOException in case of I/O error
+   */
+  HttpURLConnection openConnection(URL url) throws IOException;
+
+  /**
+   * Releases a connection once its exchange is over. Response streams have already been closed.
+   * @param connection the connection opened by this transport
+   * @param reusable whether the exchange completed cleanly, so that the underlying socket can be kept alive
+   */
+  void release(HttpURLConnection connection, boolean reusable);
+
+  /**
+   * Closes this transport and all the connections it keeps alive
+   */
+  void close();
+
+}
@@ -0,0 +1,61 @@
+package com.bcp.http.restclient.transport;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Util class implementing different {@link Transport}
+ */
+public final class Transports {
+
+  private static final Transport URL_CONNECTION_TRANSPORT = new UrlConnectionTransport();
+
+  private Transports() {}
+
+  /**
+   * Transport relying on the JDK {@link HttpURLConnection}. Keep-alive sockets are managed
+   * by the JDK connection cache
+   * @return the url connection transport
+   */
+  public static Transport urlConnection() {
+    return URL_CONNECTION_TRANSPORT;
+  }
+
+  /**
+   * Transport built on NIO socket channels, keeping its own persistent connections
+   * in a pool with default settings
+   * @return a new nio transport
+   */
+  public static NioTransport nio() {
+    return nio(ConnectionPool.builder().build());
+  }
+
+  /**
+   * Transport built on NIO socket channels, keeping its own persistent connections
+   * @param pool the pool of the transport, it shouldn't be shared with another transport
+   * @return a new nio transport
+   */
+  public static NioTransport nio(ConnectionPool pool) {
+    return new NioTransport(pool);
+  }
+
+  private static class UrlConnectionTransport implements Transport {
+
+    @Override
+    public HttpURLConnection openConnection(URL url) throws IOException {
+      return (HttpURLConnection) url.openConnection();
+    }
+
+    @Override
+    public void release(HttpURLConnection connection, boolean reusable) {
+      // the response stream has been closed, the JDK keeps the socket alive unless we disconnect
+      if (!reusable) {
+        connection.disconnect();
+      }
+    }
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,14 @@
+package com.bcp.http.restclient.util;
+
+/**
+ * Response stream that can be abandoned before its end, such as the streams given to the
+ * response handlers by the clients. Aborting closes the connection instead of reading the rest
+ * of the body, which may never end for event streams
+ */
+public interface Abortable {
+
+  /**
+   * Closes the connection of the stream without reading the rest of the body
+   */
+  void abort();
+}
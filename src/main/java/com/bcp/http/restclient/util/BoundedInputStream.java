@@ -0,0 +1,101 @@
+package com.bcp.http.restclient.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream reading at most a given number of bytes. Past the limit, the stream either ends,
+ * marking itself truncated when more bytes were available, or fails. Aborting it aborts the bounded
+ * stream when that one is {@link Abortable}
+ */
+public class BoundedInputStream extends FilterInputStream implements Abortable {
+
+  private final long limit;
+  private final boolean failOnOverflow;
+  private long remaining;
+  private boolean truncated;
+
+  /**
+   *
+   * @param in the stream to bound
+   * @param limit the max number of bytes read
+   * @param failOnOverflow whether reading past the limit throws an exception instead of ending the stream
+   */
+  public BoundedInputStream(InputStream in, long limit, boolean failOnOverflow) {
+    super(in);
+    this.limit = limit;
+    this.remaining = limit;
+    this.failOnOverflow = failOnOverflow;
+  }
+
+  /**
+   * Returns whether bytes were left unread past the limit
+   * @return whether the stream was truncated
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (remaining == 0) {
+      return overflow();
+    }
+    int b = super.read();
+    if (b != -1) {
+      remaining--;
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (remaining == 0) {
+      return overflow();
+    }
+    int read = super.read(b, off, (int) Math.min(len, remaining));
+    if (read > 0) {
+      remaining -= read;
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = super.skip(Math.min(n, remaining));
+    remaining -= skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return (int) Math.min(super.available(), remaining);
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public void abort() {
+    if (in instanceof Abortable) {
+      ((Abortable) in).abort();
+    }
+  }
+
+  private int overflow() throws IOException {
+    if (truncated || in.read() == -1) {
+      return -1;
+    }
+    truncated = true;
+    if (failOnOverflow) {
+      throw new IOException("Body larger than " + limit + " bytes");
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,154 @@
+package com.bcp.http.restclient.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pool of reusable byte buffers, organized in size classes. Each size class keeps free buffers
+ * in stripes selected by thread, so that threads rarely compete for the same slots.
+ * The default pool size classes and slot counts can be configured with the
+ * {@code restclient.buffer.sizes} (comma separated sizes) and {@code restclient.buffer.slots}
+ * system properties
+ */
+public final class BufferPool {
+
+  private static final int PADDING = 8; // longs per counter, to keep stripes on distinct cache lines
+  private static final BufferPool DEFAULT_POOL = new BufferPool(
+      parseSizes(System.getProperty("restclient.buffer.sizes", "1024,8192,65536")),
+      Integer.getInteger("restclient.buffer.slots", 4));
+
+  private final int[] sizeClasses;
+  private final AtomicReferenceArray<byte[]>[] freeLists;
+  private final int stripeMask;
+  private final int slotsPerStripe;
+  private final AtomicLongArray hits;
+  private final AtomicLongArray misses;
+
+  /**
+   *
+   * @param sizeClasses the sizes of the pooled buffers
+   * @param slotsPerStripe the number of free buffers kept by size class and stripe
+   */
+  public BufferPool(int[] sizeClasses, int slotsPerStripe) {
+    if (sizeClasses.length == 0 || slotsPerStripe <= 0) {
+      throw new IllegalArgumentException("a buffer pool needs at least one size class and one slot");
+    }
+    this.sizeClasses = sizeClasses.clone();
+    Arrays.sort(this.sizeClasses);
+    if (this.sizeClasses[0] <= 0) {
+      throw new IllegalArgumentException("buffer sizes must be positive");
+    }
+    int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+    this.stripeMask = stripes - 1;
+    this.slotsPerStripe = slotsPerStripe;
+    // arrays of a generic type can only be created raw
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    AtomicReferenceArray<byte[]>[] lists = new AtomicReferenceArray[this.sizeClasses.length];
+    for (int i = 0; i < lists.length; i++) {
+      lists[i] = new AtomicReferenceArray<>(stripes * slotsPerStripe);
+    }
+    this.freeLists = lists;
+    this.hits = new AtomicLongArray(stripes * PADDING);
+    this.misses = new AtomicLongArray(stripes * PADDING);
+  }
+
+  /**
+   * Returns the pool shared by the whole client
+   * @return the default pool
+   */
+  public static BufferPool defaultPool() {
+    return DEFAULT_POOL;
+  }
+
+  /**
+   * Takes a buffer of at least the given size from the pool. Buffers larger than the
+   * biggest size class are not pooled
+   * @param minSize the minimum size of the buffer
+   * @return the buffer, to give back with {@link #release(byte[])}
+   */
+  public byte[] acquire(int minSize) {
+    int stripe = stripe();
+    int sizeClass = sizeClass(minSize);
+    if (sizeClass < 0) {
+      misses.incrementAndGet(stripe * PADDING);
+      return new byte[minSize];
+    }
+    AtomicReferenceArray<byte[]> freeList = freeLists[sizeClass];
+    int base = stripe * slotsPerStripe;
+    for (int i = base; i < base + slotsPerStripe; i++) {
+      byte[] buffer = freeList.get(i);
+      if (buffer != null && freeList.compareAndSet(i, buffer, null)) {
+        hits.incrementAndGet(stripe * PADDING);
+        return buffer;
+      }
+    }
+    misses.incrementAndGet(stripe * PADDING);
+    return new byte[sizeClasses[sizeClass]];
+  }
+
+  /**
+   * Gives back a buffer to the pool. Buffers that don't match a size class, or that don't fit
+   * in the free slots, are left to the garbage collector
+   * @param buffer the buffer
+   */
+  public void release(byte[] buffer) {
+    int sizeClass = Arrays.binarySearch(sizeClasses, buffer.length);
+    if (sizeClass < 0) {
+      return;
+    }
+    AtomicReferenceArray<byte[]> freeList = freeLists[sizeClass];
+    int base = stripe() * slotsPerStripe;
+    for (int i = base; i < base + slotsPerStripe; i++) {
+      if (freeList.get(i) == null && freeList.compareAndSet(i, null, buffer)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of buffers served from the pool
+   * @return the number of hits
+   */
+  public long getHits() {
+    return sum(hits);
+  }
+
+  /**
+   * Returns the number of buffers that had to be allocated
+   * @return the number of misses
+   */
+  public long getMisses() {
+    return sum(misses);
+  }
+
+  private int sizeClass(int minSize) {
+    for (int i = 0; i < sizeClasses.length; i++) {
+      if (sizeClasses[i] >= minSize) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int stripe() {
+    return (int) Thread.currentThread().getId() & stripeMask;
+  }
+
+  private static long sum(AtomicLongArray counters) {
+    long sum = 0;
+    for (int i = 0; i < counters.length(); i += PADDING) {
+      sum += counters.get(i);
+    }
+    return sum;
+  }
+
+  private static int[] parseSizes(String sizes) {
+    String[] values = sizes.split(",");
+    int[] parsed = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      parsed[i] = Integer.parseInt(values[i].trim());
+    }
+    return parsed;
+  }
+}
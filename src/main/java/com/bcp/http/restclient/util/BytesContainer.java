@@ -1,17 +1,157 @@
 package com.bcp.http.restclient.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
- * Class used to hold a byte array
+ * Class used to hold bytes, either in a byte array or, for big bodies, in a temporary file.
+ * The file is deleted by {@link #release()}, once the container is garbage collected and a later
+ * container is spilled or released, or at the latest when the JVM exits
  */
 public class BytesContainer {
 
+  private static final ReferenceQueue<BytesContainer> COLLECTED = new ReferenceQueue<>();
+  private static final Set<SpillFile> SPILL_FILES =
+      Collections.newSetFromMap(new ConcurrentHashMap<SpillFile, Boolean>());
+
+  static {
+    // unlike File.deleteOnExit, which remembers every path until the exit, only the files still
+    // on disk are kept
+    Runtime.getRuntime().addShutdownHook(new Thread(BytesContainer::deleteAll, "restclient-spill-cleanup"));
+  }
+
   private final byte[] bytes;
+  private final File file;
+  private final long length;
+  private final SpillFile spillFile;
 
   public BytesContainer(byte[] bytes) {
     this.bytes = bytes;
+    this.file = null;
+    this.length = bytes == null ? 0 : bytes.length;
+    this.spillFile = null;
+  }
+
+  private BytesContainer(File file, long length) {
+    this.bytes = null;
+    this.file = file;
+    this.length = length;
+    this.spillFile = new SpillFile(this, file);
+    SPILL_FILES.add(spillFile);
+  }
+
+  /**
+   * Creates a container owning a temporary file
+   * @param file the file holding the bytes, deleted with the container
+   * @param length the number of bytes of the file
+   * @return the container
+   */
+  static BytesContainer spilled(File file, long length) {
+    return new BytesContainer(file, length);
   }
 
+  /**
+   * Returns the bytes, read from the temporary file if they were spilled to disk
+   * @return the bytes
+   * @throws UncheckedIOException if the file can't be read
+   */
   public byte[] getBytes() {
-    return bytes;
+    if (file == null) {
+      return bytes;
+    }
+    try {
+      return Files.readAllBytes(file.toPath());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns the number of bytes held
+   * @return the length
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * Returns whether the bytes were written to a temporary file
+   * @return whether the bytes are on disk
+   */
+  public boolean isSpilled() {
+    return file != null;
+  }
+
+  /**
+   * Returns the temporary file holding the bytes
+   * @return the file, null if the bytes are in memory
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Opens a stream reading the bytes, without loading the temporary file in memory
+   * @return the stream
+   * @throws IOException in case of I/O error
+   */
+  public InputStream openStream() throws IOException {
+    if (file != null) {
+      return new FileInputStream(file);
+    }
+    return new ByteArrayInputStream(bytes == null ? new byte[0] : bytes);
+  }
+
+  /**
+   * Deletes the temporary file, if any. The container can't be read afterwards
+   */
+  public void release() {
+    if (spillFile != null) {
+      spillFile.delete();
+    }
+    deleteCollected();
+  }
+
+  /**
+   * Deletes the temporary files of the containers garbage collected without being released
+   */
+  static void deleteCollected() {
+    Reference<? extends BytesContainer> reference;
+    while ((reference = COLLECTED.poll()) != null) {
+      ((SpillFile) reference).delete();
+    }
+  }
+
+  private static void deleteAll() {
+    for (SpillFile spillFile : SPILL_FILES) {
+      spillFile.delete();
+    }
+  }
+
+  private static final class SpillFile extends PhantomReference<BytesContainer> {
+
+    private final File file;
+
+    private SpillFile(BytesContainer container, File file) {
+      super(container, COLLECTED);
+      this.file = file;
+    }
+
+    private void delete() {
+      if (SPILL_FILES.remove(this)) {
+        file.delete();
+      }
+    }
   }
 }
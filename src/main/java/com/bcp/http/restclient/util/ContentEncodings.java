@@ -0,0 +1,86 @@
+package com.bcp.http.restclient.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Util class decoding the content encodings supported by the client
+ */
+public final class ContentEncodings {
+
+  /**
+   * Value of the Accept-Encoding header sent by the client
+   */
+  public static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+
+  public static final String GZIP = "gzip";
+  public static final String DEFLATE = "deflate";
+
+  private ContentEncodings() {}
+
+  /**
+   * Returns whether the given content encoding can be decoded
+   * @param contentEncoding the value of the Content-Encoding header, may be null
+   * @return whether the encoding is supported
+   */
+  public static boolean isSupported(String contentEncoding) {
+    return contentEncoding != null
+        && (GZIP.equalsIgnoreCase(contentEncoding.trim())
+        || "x-gzip".equalsIgnoreCase(contentEncoding.trim())
+        || DEFLATE.equalsIgnoreCase(contentEncoding.trim()));
+  }
+
+  /**
+   * Wraps a stream encoded with gzip or deflate into a stream decoding it. Empty streams, such as
+   * the bodies of HEAD or 304 responses, are returned as they are. Deflate bodies are accepted
+   * with or without their zlib wrapper, as some servers send raw deflate data
+   * @param is the encoded stream
+   * @param contentEncoding the value of the Content-Encoding header
+   * @return the decoded stream
+   * @throws IOException in case of I/O error
+   */
+  public static InputStream decode(InputStream is, String contentEncoding) throws IOException {
+    if (!isSupported(contentEncoding)) {
+      return is;
+    }
+    PushbackInputStream pushback = new PushbackInputStream(is, 2);
+    int first = pushback.read();
+    if (first == -1) {
+      return pushback;
+    }
+    int second = pushback.read();
+    if (second != -1) {
+      pushback.unread(second);
+    }
+    pushback.unread(first);
+    if (!DEFLATE.equalsIgnoreCase(contentEncoding.trim())) {
+      return new GZIPInputStream(pushback, IOUtils.DEFAULT_BUFFER_SIZE);
+    }
+    boolean zlibWrapped = (first & 0x0F) == 8 && second != -1 && ((first << 8) | second) % 31 == 0;
+    return new DeflateInputStream(pushback, new Inflater(!zlibWrapped));
+  }
+
+  /**
+   * Inflater stream releasing the native memory of its own inflater when closed, which the
+   * inflater streams only do for the inflaters they create
+   */
+  private static final class DeflateInputStream extends InflaterInputStream {
+
+    private DeflateInputStream(InputStream is, Inflater inflater) {
+      super(is, inflater, IOUtils.DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        inf.end();
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.bcp.http.restclient.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Input stream adding the number of bytes read to a counter
+ */
+public class CountingInputStream extends FilterInputStream {
+
+  private final LongAdder counter;
+
+  /**
+   *
+   * @param in the stream to count
+   * @param counter the counter receiving the number of bytes read
+   */
+  public CountingInputStream(InputStream in, LongAdder counter) {
+    super(in);
+    this.counter = counter;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b != -1) {
+      counter.increment();
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int read = super.read(b, off, len);
+    if (read > 0) {
+      counter.add(read);
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = super.skip(n);
+    counter.add(skipped);
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+}
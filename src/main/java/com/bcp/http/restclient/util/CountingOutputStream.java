@@ -0,0 +1,49 @@
+package com.bcp.http.restclient.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Output stream adding the number of bytes written to a counter. Closing it doesn't close
+ * the underlying stream
+ */
+public class CountingOutputStream extends FilterOutputStream implements FileChannelSink {
+
+  private final LongAdder counter;
+
+  /**
+   *
+   * @param out the stream to count
+   * @param counter the counter receiving the number of bytes written
+   */
+  public CountingOutputStream(OutputStream out, LongAdder counter) {
+    super(out);
+    this.counter = counter;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    out.write(b);
+    counter.increment();
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    out.write(b, off, len);
+    counter.add(len);
+  }
+
+  @Override
+  public void transferFrom(FileChannel file, long position, long count) throws IOException {
+    IOUtils.transfer(file, position, count, out);
+    counter.add(count);
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+  }
+}
@@ -0,0 +1,20 @@
+package com.bcp.http.restclient.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Output stream able to send regions of files without copying them through the heap, such as
+ * the request bodies of the plain connections of the NIO transport
+ */
+public interface FileChannelSink {
+
+  /**
+   * Writes a region of a file, with {@link FileChannel#transferTo} when possible
+   * @param file the file
+   * @param position the position of the region in the file
+   * @param count the number of bytes to write
+   * @throws IOException in case of I/O error, or if the file is shorter than the region
+   */
+  void transferFrom(FileChannel file, long position, long count) throws IOException;
+}
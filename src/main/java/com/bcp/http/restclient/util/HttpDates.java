@@ -0,0 +1,43 @@
+package com.bcp.http.restclient.util;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Util class parsing the dates and delays of HTTP headers
+ */
+public final class HttpDates {
+
+  private HttpDates() {}
+
+  /**
+   * Parses an HTTP date, such as "Sun, 06 Nov 1994 08:49:37 GMT"
+   * @param date the date
+   * @return the time in milliseconds since the epoch, or -1 if the date is invalid
+   */
+  public static long parse(String date) {
+    try {
+      return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+    } catch (DateTimeParseException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the delay asked by a Retry-After header, given in seconds or as a date
+   * @param retryAfter the value of the header, may be null
+   * @return the delay in milliseconds, 0 if there is no valid delay
+   */
+  public static long retryAfterMillis(String retryAfter) {
+    if (retryAfter == null) {
+      return 0;
+    }
+    try {
+      return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+    } catch (NumberFormatException e) {
+      long date = parse(retryAfter);
+      return date < 0 ? 0 : Math.max(0, date - System.currentTimeMillis());
+    }
+  }
+}
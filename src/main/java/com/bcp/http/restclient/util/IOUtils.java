@@ -1,15 +1,23 @@
 package com.bcp.http.restclient.util;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
 public final class IOUtils {
 
-  public static int DEFAULT_BUFFER_SIZE = 1024;
+  public static int DEFAULT_BUFFER_SIZE = 8192;
+
+  private static final int TRANSFER_BUFFER_SIZE = 65536;
+
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
 
   private IOUtils() {}
 
@@ -20,11 +28,17 @@ public final class IOUtils {
    * @throws IOException in case of I/O error
    */
   public static String toString(InputStream stream) throws IOException {
-    BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-    StringBuilder builder = new StringBuilder();
-    String output;
-    while ((output = reader.readLine()) != null) {
-      builder.append(output);
+    String content = new String(toBytes(stream), Charset.defaultCharset());
+    if (content.indexOf('\n') < 0 && content.indexOf('\r') < 0) {
+      return content;
+    }
+    // lines are joined without their terminators
+    StringBuilder builder = new StringBuilder(content.length());
+    for (int i = 0; i < content.length(); i++) {
+      char c = content.charAt(i);
+      if (c != '\n' && c != '\r') {
+        builder.append(c);
+      }
     }
     return builder.toString();
   }
@@ -46,10 +60,15 @@ public final class IOUtils {
    * @throws IOException in case of I/O error
    */
   public static void copy(InputStream is, OutputStream os, int bufferSize) throws IOException {
-    byte[] buffer = new byte[bufferSize];
-    int bytesRead;
-    while ((bytesRead = is.read(buffer)) != -1) {
-      os.write(buffer, 0, bytesRead);
+    BufferPool pool = BufferPool.defaultPool();
+    byte[] buffer = pool.acquire(bufferSize);
+    try {
+      int bytesRead;
+      while ((bytesRead = is.read(buffer)) != -1) {
+        os.write(buffer, 0, bytesRead);
+      }
+    } finally {
+      pool.release(buffer);
     }
   }
 
@@ -63,6 +82,52 @@ public final class IOUtils {
     copy(is, os, DEFAULT_BUFFER_SIZE);
   }
 
+  /**
+   * Writes a region of a file onto an output stream, without copying it through the heap if
+   * the stream is a {@link FileChannelSink}
+   * @param file the file
+   * @param position the position of the region in the file
+   * @param count the number of bytes to write
+   * @param os the output stream
+   * @throws IOException in case of I/O error, or if the file is shorter than the region
+   */
+  public static void transfer(FileChannel file, long position, long count, OutputStream os)
+      throws IOException {
+    if (os instanceof FileChannelSink) {
+      ((FileChannelSink) os).transferFrom(file, position, count);
+    } else {
+      copy(file, position, count, os);
+    }
+  }
+
+  /**
+   * Copies a region of a file onto an output stream through a pooled buffer
+   * @param file the file
+   * @param position the position of the region in the file
+   * @param count the number of bytes to write
+   * @param os the output stream
+   * @throws IOException in case of I/O error, or if the file is shorter than the region
+   */
+  public static void copy(FileChannel file, long position, long count, OutputStream os)
+      throws IOException {
+    BufferPool pool = BufferPool.defaultPool();
+    byte[] buffer = pool.acquire(TRANSFER_BUFFER_SIZE);
+    try {
+      long remaining = count;
+      while (remaining > 0) {
+        int read = file.read(ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, remaining)),
+            position + count - remaining);
+        if (read < 0) {
+          throw new EOFException("File ended " + remaining + " bytes before the end of the region");
+        }
+        os.write(buffer, 0, read);
+        remaining -= read;
+      }
+    } finally {
+      pool.release(buffer);
+    }
+  }
+
   /**
    * Reads an input stream to retrieve all the bytes
    * @param is the input stream
@@ -94,6 +159,58 @@ public final class IOUtils {
     return new BytesContainer(toBytes(is, bufferSize));
   }
 
+  /**
+   * Reads an input stream to retrieve all the bytes, kept in memory up to a threshold and
+   * written to a temporary file past it
+   * @param is the input stream
+   * @param memoryThreshold the max number of bytes kept in memory
+   * @param directory the directory of the temporary file, null for the default temporary directory
+   * @return a container containing all the bytes of the input stream
+   * @throws IOException in case of I/O error
+   */
+  public static BytesContainer toByteArray(InputStream is, long memoryThreshold, File directory)
+      throws IOException {
+    int limit = (int) Math.min(memoryThreshold, MAX_ARRAY_SIZE - 1);
+    BufferPool pool = BufferPool.defaultPool();
+    byte[] buffer = pool.acquire(DEFAULT_BUFFER_SIZE);
+    try {
+      byte[] data = buffer;
+      int size = 0;
+      int nRead;
+      while ((nRead = is.read(data, size, data.length - size)) != -1) {
+        size += nRead;
+        if (size > limit) {
+          return spill(is, data, size, directory);
+        }
+        if (size == data.length) {
+          data = Arrays.copyOf(data, (int) Math.min((long) size * 2, limit + 1));
+        }
+      }
+      return new BytesContainer(Arrays.copyOf(data, size));
+    } finally {
+      pool.release(buffer);
+    }
+  }
+
+  private static BytesContainer spill(InputStream is, byte[] data, int size, File directory)
+      throws IOException {
+    BytesContainer.deleteCollected();
+    File file = File.createTempFile("restclient-", ".body", directory);
+    try (OutputStream os = new FileOutputStream(file)) {
+      os.write(data, 0, size);
+      long length = size;
+      int nRead;
+      while ((nRead = is.read(data)) != -1) {
+        os.write(data, 0, nRead);
+        length += nRead;
+      }
+      return BytesContainer.spilled(file, length);
+    } catch (IOException | RuntimeException e) {
+      file.delete();
+      throw e;
+    }
+  }
+
   /**
    * Reads an input stream to retrieve all the bytes
    * @param is the input stream
@@ -102,16 +219,26 @@ public final class IOUtils {
    * @throws IOException in case of I/O error
    */
   public static byte[] toBytes(InputStream is, int bufferSize) throws IOException {
-    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-
-    int nRead;
-    byte[] data = new byte[bufferSize];
-
-    while ((nRead = is.read(data, 0, data.length)) != -1) {
-      buffer.write(data, 0, nRead);
+    BufferPool pool = BufferPool.defaultPool();
+    byte[] buffer = pool.acquire(bufferSize);
+    try {
+      // small bodies fit in the pooled buffer, bigger ones are read into a growing array
+      byte[] data = buffer;
+      int size = 0;
+      int nRead;
+      while ((nRead = is.read(data, size, data.length - size)) != -1) {
+        size += nRead;
+        if (size == data.length) {
+          if (size == MAX_ARRAY_SIZE) {
+            throw new IOException("Stream too large to fit in a byte array");
+          }
+          data = Arrays.copyOf(data, size <= MAX_ARRAY_SIZE / 2 ? size * 2 : MAX_ARRAY_SIZE);
+        }
+      }
+      return data != buffer && size == data.length ? data : Arrays.copyOf(data, size);
+    } finally {
+      pool.release(buffer);
     }
-
-    return data;
   }
 
 }
@@ -0,0 +1,23 @@
+package com.bcp.http.restclient.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Class that can parse a list of objects while reading it from a character stream in a given format.
+ * For example JSON, XML, ...
+ */
+public interface StreamObjectListParser {
+
+  /**
+   * Parse a list of objects of a given class from the reader
+   * @param clazz the class of the objects
+   * @param reader the reader of the data representing the list
+   * @param <T> the type f the objects
+   * @return the converted list from the reader
+   * @throws IOException in case of I/O error
+   */
+  <T> List<T> parse(Class<T> clazz, Reader reader) throws IOException;
+
+}
@@ -0,0 +1,21 @@
+package com.bcp.http.restclient.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Class that can parse an object while reading it from a character stream in a given format.
+ * For example JSON, XML, ...
+ */
+public interface StreamObjectParser {
+
+  /**
+   * Parse an object of a given class from the reader
+   * @param clazz the class of the object
+   * @param reader the reader of the data representing an object
+   * @param <T> the type f the object
+   * @return the converted object from the reader
+   * @throws IOException in case of I/O error
+   */
+  <T> T parse(Class<T> clazz, Reader reader) throws IOException;
+}
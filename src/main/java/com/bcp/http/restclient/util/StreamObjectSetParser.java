@@ -0,0 +1,23 @@
+package com.bcp.http.restclient.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Set;
+
+/**
+ * Class that can parse a set of objects while reading it from a character stream in a given format.
+ * For example JSON, XML, ...
+ */
+public interface StreamObjectSetParser {
+
+  /**
+   * Parse an object set of a given class from the reader
+   * @param clazz the class of the objects
+   * @param reader the reader of the data representing the set
+   * @param <T> the type f the objects
+   * @return the converted set from the reader
+   * @throws IOException in case of I/O error
+   */
+  <T> Set<T> parse(Class<T> clazz, Reader reader) throws IOException;
+
+}
@@ -0,0 +1,79 @@
+package com.bcp.http.restclient.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Util class percent-encoding the components of URLs, as of RFC 3986. Unlike
+ * {@link java.net.URLEncoder}, spaces are encoded as %20, so that the result is valid in paths
+ * as well as in queries
+ */
+public final class UrlEncoding {
+
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  private UrlEncoding() {}
+
+  /**
+   * Percent-encodes every character of a value but the unreserved ones: letters, digits and
+   * "-._~", so that it can be used as a path segment or a query parameter
+   * @param value the value
+   * @return the encoded value, the value itself if nothing needs to be encoded
+   */
+  public static String encode(String value) {
+    int length = value.length();
+    int i = 0;
+    while (i < length && isUnreserved(value.charAt(i))) {
+      i++;
+    }
+    if (i == length) {
+      return value;
+    }
+    StringBuilder builder = new StringBuilder(length + 16).append(value, 0, i);
+    encodeTo(builder, value, i);
+    return builder.toString();
+  }
+
+  /**
+   * Appends a value, percent-encoded as by {@link #encode(String)}, to a builder
+   * @param builder the builder
+   * @param value the value
+   * @return the builder
+   */
+  public static StringBuilder appendEncoded(StringBuilder builder, String value) {
+    int length = value.length();
+    int i = 0;
+    while (i < length && isUnreserved(value.charAt(i))) {
+      i++;
+    }
+    builder.append(value, 0, i);
+    if (i < length) {
+      encodeTo(builder, value, i);
+    }
+    return builder;
+  }
+
+  private static void encodeTo(StringBuilder builder, String value, int from) {
+    int length = value.length();
+    for (int i = from; i < length; ) {
+      char c = value.charAt(i);
+      if (isUnreserved(c)) {
+        builder.append(c);
+        i++;
+        continue;
+      }
+      int end = i + 1;
+      while (end < length && !isUnreserved(value.charAt(end))) {
+        end++;
+      }
+      for (byte b : value.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+        builder.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+      }
+      i = end;
+    }
+  }
+
+  private static boolean isUnreserved(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+        || c == '-' || c == '.' || c == '_' || c == '~';
+  }
+}
@@ -0,0 +1,47 @@
+package com.bcp.http.restclient.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Util class giving access to virtual threads when the running JVM supports them (Java 21+),
+ * while the library itself stays compatible with Java 8
+ */
+public final class VirtualThreads {
+
+  private static final Method NEW_PER_TASK_EXECUTOR = findPerTaskExecutorFactory();
+
+  private VirtualThreads() {}
+
+  /**
+   * Returns whether the running JVM supports virtual threads
+   * @return whether virtual threads are supported
+   */
+  public static boolean isSupported() {
+    return NEW_PER_TASK_EXECUTOR != null;
+  }
+
+  /**
+   * Creates an executor starting a new virtual thread for each task
+   * @return the executor, or null if virtual threads aren't supported
+   */
+  public static ExecutorService newPerTaskExecutor() {
+    if (NEW_PER_TASK_EXECUTOR == null) {
+      return null;
+    }
+    try {
+      return (ExecutorService) NEW_PER_TASK_EXECUTOR.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  private static Method findPerTaskExecutorFactory() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
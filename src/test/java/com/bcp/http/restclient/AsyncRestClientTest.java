@@ -0,0 +1,246 @@
+package com.bcp.http.restclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.bcp.http.restclient.ratelimit.RateLimits;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class AsyncRestClientTest {
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final AtomicInteger served = new AtomicInteger();
+  private final AtomicInteger firstSlowHits = new AtomicInteger();
+  private final AtomicInteger aborted = new AtomicInteger();
+  @Rule
+  public final LocalServer server = new LocalServer();
+  private AsyncRestClient client;
+
+  @Before
+  public void setUp() {
+    server.handle("/item", exchange -> {
+      served.incrementAndGet();
+      int current = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(current, Math::max);
+      String query = exchange.getRequestURI().getQuery();
+      try {
+        Thread.sleep(query.contains("slow") ? 2000 : query.contains("wait") ? 300 : 10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      inFlight.decrementAndGet();
+      LocalServer.send(exchange, query.contains("fail") ? 500 : 200, query.getBytes());
+    });
+    server.handle("/first-slow", exchange -> {
+      if (firstSlowHits.incrementAndGet() == 1) {
+        try {
+          Thread.sleep(2000);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      try {
+        LocalServer.send(exchange, 200, "done".getBytes());
+      } catch (IOException e) {
+        // the client cancelled the request
+      }
+    });
+    server.handle("/drip", exchange -> {
+      // sends a byte every 20ms for 5s, unless the client goes away
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream os = exchange.getResponseBody()) {
+        for (int i = 0; i < 250; i++) {
+          os.write('.');
+          os.flush();
+          Thread.sleep(20);
+        }
+      } catch (IOException e) {
+        aborted.incrementAndGet();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    client = new AsyncRestClient(server.url(), 16);
+  }
+
+  @After
+  public void tearDown() {
+    client.shutDown();
+  }
+
+  @Test
+  public void executesAsynchronously() {
+    RestResponse<String> response = client.executeAsync(
+        RestRequest.builder("item").parameter("id", 1).build(), ResponseHandlers.string()).join();
+    assertEquals("id=1", response.getData());
+  }
+
+  @Test
+  public void executesAllInOrderWithBoundedConcurrency() {
+    List<RestRequest> requests = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      requests.add(RestRequest.builder("item").parameter("id", i % 7 == 0 ? "fail" + i : i).build());
+    }
+    List<RestResponse<String>> responses =
+        client.executeAll(requests, ResponseHandlers.string(), 4, 0, TimeUnit.SECONDS);
+    assertEquals(40, responses.size());
+    for (int i = 0; i < 40; i++) {
+      if (i % 7 == 0) {
+        assertEquals(500, responses.get(i).getResponseCode());
+      } else {
+        assertEquals("id=" + i, responses.get(i).getData());
+      }
+    }
+    assertTrue(maxInFlight.get() <= 4);
+  }
+
+  @Test
+  public void keepsPartialResultsAtDeadline() {
+    List<RestRequest> requests = new ArrayList<>();
+    requests.add(RestRequest.builder("item").parameter("id", "fast").build());
+    requests.add(RestRequest.builder("item").parameter("id", "slow").build());
+    List<RestResponse<String>> responses =
+        client.executeAll(requests, ResponseHandlers.string(), 2, 500, TimeUnit.MILLISECONDS);
+    assertEquals("id=fast", responses.get(0).getData());
+    assertEquals(RestResponse.DEADLINE_EXCEEDED, responses.get(1).getResponseCode());
+  }
+
+  @Test
+  public void cancelsRequestsInFlightAtDeadline() throws InterruptedException {
+    List<RestRequest> requests = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      requests.add(RestRequest.builder("drip").parameter("id", i).build());
+    }
+    long start = System.nanoTime();
+    List<RestResponse<String>> responses =
+        client.executeAll(requests, ResponseHandlers.string(), 2, 300, TimeUnit.MILLISECONDS);
+    assertEquals(RestResponse.DEADLINE_EXCEEDED, responses.get(0).getResponseCode());
+    assertEquals(RestResponse.DEADLINE_EXCEEDED, responses.get(1).getResponseCode());
+    while (aborted.get() < 2 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3)) {
+      Thread.sleep(10);
+    }
+    assertEquals(2, aborted.get());
+  }
+
+  @Test
+  public void coalescesIdenticalGets() {
+    client.setRequestCoalescing(true);
+    List<CompletableFuture<RestResponse<String>>> futures = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      futures.add(client.executeAsync(RestRequest.builder("item").parameter("id", "wait").build(),
+          ResponseHandlers.string()));
+    }
+    for (CompletableFuture<RestResponse<String>> future : futures) {
+      assertEquals("id=wait", future.join().getData());
+    }
+    assertEquals(8, served.get() + client.getCoalescedRequestCount());
+    assertTrue(served.get() < 8);
+  }
+
+  @Test
+  public void hedgesSlowRequests() {
+    // warms up the client, so that the original request reaches the server before its hedge
+    client.executeAsync(RestRequest.builder("item").parameter("id", 0).build()).join();
+    HedgingPolicy hedging = HedgingPolicy.builder().delay(200).build();
+    client.setHedgingPolicy(hedging);
+    long start = System.nanoTime();
+    RestResponse<String> response = client.executeAsync(RestRequest.builder("first-slow").build(),
+        ResponseHandlers.string()).join();
+    assertEquals("done", response.getData());
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    assertEquals(1, hedging.getHedgesIssued());
+    assertEquals(1, hedging.getHedgesWon());
+
+    client.executeAsync(RestRequest.builder("first-slow").build(), ResponseHandlers.string()).join();
+    assertEquals(1, hedging.getHedgesIssued());
+  }
+
+  @Test
+  public void keepsOriginalRequestWhenHedgeIsRateLimited() {
+    HedgingPolicy hedging = HedgingPolicy.builder().delay(200).build();
+    client.setHedgingPolicy(hedging);
+    client.setRateLimits(RateLimits.builder().endpoint("first-slow", 1, 1).maxWait(0).build());
+    RestResponse<String> response = client.executeAsync(RestRequest.builder("first-slow").build(),
+        ResponseHandlers.string()).join();
+    assertEquals("done", response.getData());
+    assertEquals(1, hedging.getHedgesIssued());
+    assertEquals(0, hedging.getHedgesWon());
+    assertEquals(1, firstSlowHits.get());
+  }
+
+  @Test
+  public void combinesFutures() {
+    List<RestResponse<String>> all = ResponseFutures.allOf(Arrays.asList(item("1"), item("2"))).join();
+    assertEquals("id=1", all.get(0).getData());
+    assertEquals("id=2", all.get(1).getData());
+    assertEquals("id=fast", ResponseFutures.anyOf(Arrays.asList(item("slow"), item("fast"))).join().getData());
+    assertEquals("id=wait", ResponseFutures.anySuccessful(Arrays.asList(item("fail"), item("wait"))).join().getData());
+  }
+
+  @Test
+  public void returnsLastFailureWhenNoResponseIsSuccessful() {
+    RestResponse<String> response =
+        ResponseFutures.anySuccessful(Arrays.asList(item("fail1"), item("wait-fail2"), item("fail3"))).join();
+    assertEquals(500, response.getResponseCode());
+    assertEquals("id=wait-fail2", new String(response.getRawErrorData()));
+    assertEquals(3, served.get());
+  }
+
+  @Test
+  public void completesExceptionallyAfterTimeout() {
+    long start = System.nanoTime();
+    try {
+      ResponseFutures.withTimeout(item("slow"), 200, TimeUnit.MILLISECONDS).join();
+      fail("the response should have timed out");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof TimeoutException);
+    }
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    assertEquals("id=fast", ResponseFutures.withTimeout(item("fast"), 1, TimeUnit.SECONDS).join().getData());
+  }
+
+  @Test
+  public void cancellingTheFutureCancelsTheRequest() throws InterruptedException {
+    AsyncRestClient single = new AsyncRestClient(server.url(), 1);
+    try {
+      CompletableFuture<RestResponse<String>> slow =
+          single.executeAsync(RestRequest.builder("item").parameter("id", "slow").build(), ResponseHandlers.string());
+      while (served.get() == 0) {
+        Thread.sleep(10);
+      }
+      assertTrue(slow.cancel(true));
+      // the only worker is freed by the cancellation instead of waiting for the slow response
+      long start = System.nanoTime();
+      RestResponse<String> next = single.executeAsync(
+          RestRequest.builder("item").parameter("id", "fast").build(), ResponseHandlers.string()).join();
+      assertEquals("id=fast", next.getData());
+      assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    } finally {
+      single.shutDown();
+    }
+  }
+
+  private CompletableFuture<RestResponse<String>> item(String id) {
+    return client.executeAsync(RestRequest.builder("item").parameter("id", id).build(), ResponseHandlers.string());
+  }
+}
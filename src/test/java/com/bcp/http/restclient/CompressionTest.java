@@ -0,0 +1,114 @@
+package com.bcp.http.restclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.request.body.BodyProcessors;
+import com.bcp.http.restclient.request.body.CompressedBodyProcessor;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+import com.bcp.http.restclient.transport.Transport;
+import com.bcp.http.restclient.transport.Transports;
+import com.bcp.http.restclient.util.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CompressionTest {
+
+  private static final String CONTENT = repeat("compressible content ", 500);
+
+  @Rule
+  public final LocalServer server = new LocalServer();
+
+  @Before
+  public void registerHandlers() {
+    server.handle("/text", exchange -> {
+      String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+      String encoding = exchange.getRequestURI().getQuery().substring("enc=".length());
+      boolean compress = accepted != null && accepted.contains(encoding);
+      if (compress) {
+        exchange.getResponseHeaders().add("Content-Encoding", encoding);
+      }
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream os = compress ? encoder(exchange.getResponseBody(), encoding) : exchange.getResponseBody()) {
+        os.write(CONTENT.getBytes());
+      }
+    });
+    server.handle("/upload", exchange -> {
+      InputStream body = exchange.getRequestBody();
+      String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+      if ("gzip".equals(encoding)) {
+        body = new GZIPInputStream(body);
+      } else if ("deflate".equals(encoding)) {
+        body = new InflaterInputStream(body);
+      }
+      LocalServer.send(exchange, 200, (encoding + ":" + IOUtils.toBytes(body).length).getBytes());
+    });
+  }
+
+  @Test
+  public void decodesCompressedResponses() {
+    for (Transport transport : new Transport[] {Transports.urlConnection(), Transports.nio()}) {
+      RestClient client = new RestClient(server.url(), transport);
+      for (String encoding : new String[] {"gzip", "deflate"}) {
+        RestResponse<String> response = client.execute(
+            RestRequest.builder("text").parameter("enc", encoding).build(), ResponseHandlers.string());
+        assertEquals(CONTENT, response.getData());
+        assertEquals(null, response.getHeaders().getValue("Content-Encoding"));
+      }
+      assertTrue(client.getWireBytesReceived() < client.getDecodedBytesReceived() / 10);
+      client.close();
+    }
+  }
+
+  @Test
+  public void sendsUncompressedWhenDisabled() {
+    RestClient client = new RestClient(server.url());
+    client.setCompression(false);
+    RestResponse<String> response = client.execute(
+        RestRequest.builder("text").parameter("enc", "gzip").build(), ResponseHandlers.string());
+    assertEquals(CONTENT, response.getData());
+    assertEquals(client.getWireBytesReceived(), client.getDecodedBytesReceived());
+  }
+
+  @Test
+  public void compressesRequestBodies() {
+    for (Transport transport : new Transport[] {Transports.urlConnection(), Transports.nio()}) {
+      RestClient client = new RestClient(server.url(), transport);
+      CompressedBodyProcessor gzip = BodyProcessors.gzip(BodyProcessors.string(CONTENT));
+      RestResponse<String> response = client.execute(
+          RestRequest.builder("upload").POST().body(gzip).build(), ResponseHandlers.string());
+      assertEquals("gzip:" + CONTENT.length(), response.getData());
+      assertEquals(CONTENT.length(), gzip.getUncompressedBytes());
+      assertTrue(gzip.getCompressedBytes() < CONTENT.length() / 10);
+
+      response = client.execute(RestRequest.builder("upload").POST()
+          .body(BodyProcessors.deflate(BodyProcessors.string(CONTENT))).build(), ResponseHandlers.string());
+      assertEquals("deflate:" + CONTENT.length(), response.getData());
+      client.close();
+    }
+  }
+
+  private static OutputStream encoder(OutputStream os, String encoding) throws IOException {
+    return "gzip".equals(encoding) ? new GZIPOutputStream(os) : new DeflaterOutputStream(os);
+  }
+
+  private static String repeat(String s, int times) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      builder.append(s);
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,99 @@
+package com.bcp.http.restclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.rules.ExternalResource;
+
+/**
+ * JUnit rule serving the registered handlers on a loopback port. The server is only started when
+ * a test asks for its url, so that the tests doing no network I/O don't bind a socket, and it is
+ * stopped after each test
+ */
+public class LocalServer extends ExternalResource {
+
+  private final Map<String, HttpHandler> handlers = new LinkedHashMap<>();
+  private HttpServer server;
+  private ExecutorService executor;
+
+  /**
+   * Registers the handler of the given path
+   * @param path the path, starting with /
+   * @param handler the handler
+   * @return this server
+   */
+  public LocalServer handle(String path, HttpHandler handler) {
+    handlers.put(path, handler);
+    if (server != null) {
+      server.createContext(path, handler);
+    }
+    return this;
+  }
+
+  /**
+   * Returns the base url of the server, starting it if needed
+   * @return the base url of the server
+   */
+  public String url() {
+    return "http://127.0.0.1:" + port();
+  }
+
+  /**
+   * Returns the port of the server, starting it if needed
+   * @return the port of the server
+   */
+  public int port() {
+    if (server == null) {
+      start();
+    }
+    return server.getAddress().getPort();
+  }
+
+  private void start() {
+    try {
+      server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    for (Map.Entry<String, HttpHandler> handler : handlers.entrySet()) {
+      server.createContext(handler.getKey(), handler.getValue());
+    }
+    server.start();
+  }
+
+  @Override
+  protected void after() {
+    if (server != null) {
+      server.stop(0);
+      executor.shutdownNow();
+      server = null;
+    }
+    handlers.clear();
+  }
+
+  /**
+   * Sends the given response, an empty body being sent without content
+   * @param exchange the exchange
+   * @param code the status code
+   * @param body the body
+   * @throws IOException if the response can't be sent
+   */
+  public static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+    exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(body);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package com.bcp.http.restclient.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.bcp.http.restclient.LocalServer;
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class RefreshingTokenProviderTest {
+
+  private final AtomicInteger fetches = new AtomicInteger();
+  private volatile String acceptedToken = "token-2";
+  @Rule
+  public final LocalServer server = new LocalServer();
+
+  @Before
+  public void registerHandlers() {
+    server.handle("/secured", exchange -> {
+      boolean authorized = ("Bearer " + acceptedToken).equals(exchange.getRequestHeaders().getFirst("Authorization"));
+      LocalServer.send(exchange, authorized ? 200 : 401, (authorized ? "welcome" : "unauthorized").getBytes());
+    });
+  }
+
+  @Test
+  public void readsExpirationClaim() {
+    assertEquals(1700000000000L, Jwts.expiresAt(jwt("{\"sub\":\"user\",\"exp\": 1700000000}")));
+    assertEquals(1700000000000L, Jwts.expiresAt(jwt("{\"exp\":1700000000.5}")));
+    assertEquals(Jwts.NO_EXPIRATION, Jwts.expiresAt(jwt("{\"sub\":\"user\"}")));
+    assertEquals(Jwts.NO_EXPIRATION, Jwts.expiresAt("opaque-token"));
+  }
+
+  @Test
+  public void refreshesOnceForConcurrentUnauthorizedResponses() throws Exception {
+    final RefreshingTokenProvider provider = RefreshingTokenProvider.builder(new TokenSource() {
+      @Override
+      public String fetchToken() throws IOException {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        return "token-" + fetches.incrementAndGet();
+      }
+    }).build();
+    final RestClient client = new RestClient(server.url());
+    client.setTokenProvider(provider);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<RestResponse<String>>> responses = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        responses.add(executor.submit(new Callable<RestResponse<String>>() {
+          @Override
+          public RestResponse<String> call() {
+            return client.execute(RestRequest.builder("secured").build(), ResponseHandlers.string());
+          }
+        }));
+      }
+      for (Future<RestResponse<String>> response : responses) {
+        assertEquals("welcome", response.get().getData());
+      }
+      // the first token, then a single refresh after the 401 responses
+      assertEquals(2, fetches.get());
+      assertEquals("token-2", client.getJwt());
+    } finally {
+      executor.shutdown();
+      client.close();
+      provider.close();
+    }
+  }
+
+  @Test
+  public void doesNotRetryFixedTokens() {
+    RestClient client = new RestClient(server.url());
+    try {
+      client.setJwt("token-1");
+      RestResponse<String> response = client.execute(RestRequest.builder("secured").build(), ResponseHandlers.string());
+      assertEquals(401, response.getResponseCode());
+      client.removeJwt();
+      assertNull(client.getJwt());
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void refreshesAheadOfExpiration() throws InterruptedException {
+    RefreshingTokenProvider provider = RefreshingTokenProvider.builder(new TokenSource() {
+      @Override
+      public String fetchToken() {
+        long exp = System.currentTimeMillis() / 1000 + 2;
+        return jwt("{\"n\":" + fetches.incrementAndGet() + ",\"exp\":" + exp + "}");
+      }
+    }).refreshAhead(1500).build();
+    try {
+      String first = provider.getToken();
+      assertEquals(1, provider.getRefreshCount());
+      long deadline = System.currentTimeMillis() + 5000;
+      while (provider.getRefreshCount() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      assertTrue(provider.getRefreshCount() >= 2);
+      assertTrue(!first.equals(provider.getToken()));
+    } finally {
+      provider.close();
+    }
+  }
+
+  @Test
+  public void backsOffAfterFailedFetch() throws InterruptedException {
+    RefreshingTokenProvider provider = RefreshingTokenProvider.builder(new TokenSource() {
+      @Override
+      public String fetchToken() throws IOException {
+        fetches.incrementAndGet();
+        throw new IOException("unavailable");
+      }
+    }).failureBackoff(200).build();
+    try {
+      for (int i = 0; i < 5; i++) {
+        assertNull(provider.getToken());
+        assertNull(provider.refresh(null));
+      }
+      assertEquals(1, fetches.get());
+      Thread.sleep(250);
+      assertNull(provider.getToken());
+      assertEquals(2, fetches.get());
+      assertEquals(2, provider.getFailureCount());
+    } finally {
+      provider.close();
+    }
+  }
+
+  private static String jwt(String payload) {
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8)) + '.'
+        + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + '.';
+  }
+}
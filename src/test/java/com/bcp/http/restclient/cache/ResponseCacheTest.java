@@ -0,0 +1,170 @@
+package com.bcp.http.restclient.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.bcp.http.restclient.LocalServer;
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.response.handler.ResponseHandler;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+import com.bcp.http.restclient.util.IOUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ResponseCacheTest {
+
+  private final AtomicInteger served = new AtomicInteger();
+  @Rule
+  public final LocalServer server = new LocalServer();
+  private RestClient client;
+  private ResponseCache cache;
+
+  @Before
+  public void setUp() {
+    server.handle("/fresh", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+        LocalServer.send(exchange, 200, ("fresh " + served.incrementAndGet()).getBytes());
+      }
+    });
+    server.handle("/etag", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          exchange.sendResponseHeaders(304, -1);
+          exchange.close();
+          return;
+        }
+        LocalServer.send(exchange, 200, ("tagged " + served.incrementAndGet()).getBytes());
+      }
+    });
+    server.handle("/short", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          // without Cache-Control, the stored one applies again
+          exchange.sendResponseHeaders(304, -1);
+          exchange.close();
+          return;
+        }
+        exchange.getResponseHeaders().add("Cache-Control", "max-age=1");
+        LocalServer.send(exchange, 200, ("short " + served.incrementAndGet()).getBytes());
+      }
+    });
+    server.handle("/private", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Cache-Control", "no-store");
+        LocalServer.send(exchange, 200, ("private " + served.incrementAndGet()).getBytes());
+      }
+    });
+    cache = ResponseCache.builder().maxBytes(1024 * 1024).build();
+    client = new RestClient(server.url());
+    client.setResponseCache(cache);
+  }
+
+  @Test
+  public void freshResponseIsServedFromCache() {
+    assertEquals("fresh 1", get("/fresh").getData());
+    assertEquals("fresh 1", get("/fresh").getData());
+    assertEquals(1, served.get());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void staleResponseIsRevalidated() {
+    assertEquals("tagged 1", get("/etag").getData());
+    RestResponse<String> response = get("/etag");
+    assertEquals(200, response.getResponseCode());
+    assertEquals("tagged 1", response.getData());
+    assertEquals(1, served.get());
+    assertEquals(1, cache.getRevalidationCount());
+  }
+
+  @Test
+  public void revalidatedResponseKeepsStoredFreshness() throws InterruptedException {
+    assertEquals("short 1", get("/short").getData());
+    Thread.sleep(1100);
+    assertEquals("short 1", get("/short").getData());
+    assertEquals(1, cache.getRevalidationCount());
+    RestResponse<String> response = get("/short");
+    assertEquals("short 1", response.getData());
+    assertEquals("max-age=1", response.getHeaders().getValue("Cache-Control"));
+    assertEquals(1, cache.getRevalidationCount());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, served.get());
+  }
+
+  @Test
+  public void noStoreResponseIsNotCached() {
+    assertEquals("private 1", get("/private").getData());
+    assertEquals("private 2", get("/private").getData());
+    assertEquals(0, cache.getEntryCount());
+  }
+
+  @Test
+  public void leastRecentlyUsedEntriesAreEvicted() {
+    cache = ResponseCache.builder().maxBytes(300).maxEntryBytes(100).build();
+    client.setResponseCache(cache);
+    get("/fresh");
+    get("/fresh?page=2");
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  public void responsesThatCantBeStoredAreNotBuffered() {
+    ResponseHandler<Boolean> buffered = new ResponseHandler<Boolean>() {
+      @Override
+      public Boolean convert(InputStream inputStream) throws IOException {
+        IOUtils.toBytes(inputStream);
+        return inputStream instanceof ByteArrayInputStream;
+      }
+    };
+    assertFalse(client.execute(RestRequest.builder("/private").build(), buffered).getData());
+    assertFalse(client.execute(RestRequest.builder("/fresh").build(), buffered).getData());
+    assertEquals(1, cache.getEntryCount());
+  }
+
+  @Test
+  public void responsesLargerThanEntriesAreNotCached() {
+    cache = ResponseCache.builder().maxBytes(300).maxEntryBytes(5).build();
+    client.setResponseCache(cache);
+    assertEquals("fresh 1", get("/fresh").getData());
+    assertEquals("fresh 2", get("/fresh").getData());
+    assertEquals(0, cache.getEntryCount());
+  }
+
+  @Test
+  public void partiallyReadResponsesAreNotCached() {
+    ResponseHandler<Integer> firstByte = new ResponseHandler<Integer>() {
+      @Override
+      public Integer convert(InputStream inputStream) throws IOException {
+        return inputStream.read();
+      }
+    };
+    assertEquals(Integer.valueOf('f'), client.execute(RestRequest.builder("/fresh").build(), firstByte).getData());
+    assertEquals(0, cache.getEntryCount());
+    assertEquals("fresh 2", get("/fresh").getData());
+  }
+
+  private RestResponse<String> get(String endpoint) {
+    return client.execute(RestRequest.builder(endpoint).GET().build(), ResponseHandlers.string());
+  }
+}
@@ -0,0 +1,117 @@
+package com.bcp.http.restclient.circuit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.bcp.http.restclient.LocalServer;
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.response.handler.ResponseHandler;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+  @Rule
+  public final LocalServer server = new LocalServer();
+  private final List<String> transitions = new ArrayList<>();
+
+  private CircuitBreakers breakers(long openDuration) {
+    CircuitBreakers breakers = CircuitBreakers.builder()
+        .window(10, 4)
+        .failureRateThreshold(0.5)
+        .openDuration(openDuration)
+        .probeCalls(2)
+        .build();
+    breakers.addListener((key, from, to) -> transitions.add(key + ":" + from + "->" + to));
+    return breakers;
+  }
+
+  @Test
+  public void opensOnFailureRateAndClosesAfterProbes() throws InterruptedException {
+    CircuitBreaker breaker = breakers(50).get("users");
+    for (int i = 0; i < 4; i++) {
+      breaker.onResult(breaker.tryAcquire(), i % 2 == 0, 0);
+    }
+    assertEquals(CircuitState.OPEN, breaker.getState());
+    assertEquals(-1, breaker.tryAcquire());
+
+    Thread.sleep(60);
+    long first = breaker.tryAcquire();
+    long second = breaker.tryAcquire();
+    assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+    assertEquals(-1, breaker.tryAcquire());
+    breaker.onResult(first, true, 0);
+    breaker.onResult(second, true, 0);
+    assertEquals(CircuitState.CLOSED, breaker.getState());
+    assertEquals(0, breaker.getFailureRate(), 0);
+    assertEquals("[users:CLOSED->OPEN, users:OPEN->HALF_OPEN, users:HALF_OPEN->CLOSED]", transitions.toString());
+  }
+
+  @Test
+  public void opensOnSlowCallRate() {
+    CircuitBreakers breakers = CircuitBreakers.builder().window(10, 4).slowCallRateThreshold(0.5, 100).build();
+    CircuitBreaker breaker = breakers.get("slow");
+    for (int i = 0; i < 4; i++) {
+      breaker.onResult(breaker.tryAcquire(), true, i < 2 ? 200_000_000L : 0);
+    }
+    assertEquals(CircuitState.OPEN, breaker.getState());
+  }
+
+  @Test
+  public void failsFastWhileOpen() throws IOException {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    RestClient client = new RestClient("http://127.0.0.1:" + port);
+    client.setCircuitBreakers(breakers(60000));
+    for (int i = 0; i < 4; i++) {
+      RestResponse<String> response = client.execute(
+          RestRequest.builder("users").parameter("id", i).build(), ResponseHandlers.string());
+      assertEquals(RestResponse.REQUEST_NOT_SENT, response.getResponseCode());
+    }
+    RestResponse<String> response = client.execute(RestRequest.builder("users").build(), ResponseHandlers.string());
+    assertEquals(RestResponse.CIRCUIT_OPEN, response.getResponseCode());
+    assertTrue(transitions.contains("users:CLOSED->OPEN"));
+  }
+
+  @Test
+  public void handlersThrowingDuringProbesDontLeakPermits() throws InterruptedException {
+    server.handle("/users", exchange -> LocalServer.send(exchange, 200, new byte[0]));
+    RestClient client = new RestClient(server.url());
+    try {
+      CircuitBreakers breakers = breakers(50);
+      client.setCircuitBreakers(breakers);
+      CircuitBreaker breaker = breakers.get("users");
+      for (int i = 0; i < 4; i++) {
+        breaker.onResult(breaker.tryAcquire(), false, 0);
+      }
+      Thread.sleep(60);
+      ResponseHandler<String> failing = inputStream -> {
+        throw new IllegalStateException("unparseable");
+      };
+      for (int i = 0; i < 2; i++) {
+        try {
+          client.execute(RestRequest.builder("users").build(), failing);
+          fail("the handler should throw");
+        } catch (IllegalStateException e) {
+          // expected
+        }
+      }
+      // both probes failed, instead of keeping the circuit half open without permits
+      assertEquals(CircuitState.OPEN, breaker.getState());
+    } finally {
+      client.close();
+    }
+  }
+}
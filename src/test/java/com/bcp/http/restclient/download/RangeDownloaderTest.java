@@ -0,0 +1,137 @@
+package com.bcp.http.restclient.download;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.bcp.http.restclient.AsyncRestClient;
+import com.bcp.http.restclient.LocalServer;
+import com.bcp.http.restclient.request.RestRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class RangeDownloaderTest {
+
+  private static final byte[] CONTENT = new byte[100000];
+
+  static {
+    for (int i = 0; i < CONTENT.length; i++) {
+      CONTENT[i] = (byte) (i * 31);
+    }
+  }
+
+  private final AtomicInteger rangeRequests = new AtomicInteger();
+  private final AtomicInteger failuresLeft = new AtomicInteger();
+  @Rule
+  public final LocalServer server = new LocalServer();
+  private AsyncRestClient client;
+  private File target;
+
+  @Before
+  public void setUp() throws IOException {
+    server.handle("/file", exchange -> {
+      exchange.getResponseHeaders().add("ETag", "\"v1\"");
+      boolean ranges = !exchange.getRequestURI().getPath().endsWith("plain");
+      if (ranges) {
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+      }
+      if ("HEAD".equals(exchange.getRequestMethod()) && exchange.getRequestURI().getPath().endsWith("nohead")) {
+        exchange.sendResponseHeaders(405, -1);
+        exchange.close();
+        return;
+      }
+      if ("HEAD".equals(exchange.getRequestMethod())) {
+        exchange.getResponseHeaders().add("Content-Length", Integer.toString(CONTENT.length));
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+        return;
+      }
+      String range = exchange.getRequestHeaders().getFirst("Range");
+      int start = 0;
+      int end = CONTENT.length - 1;
+      int code = 200;
+      if (ranges && range != null) {
+        rangeRequests.incrementAndGet();
+        if (range.startsWith("bytes=" + 40000) && failuresLeft.getAndDecrement() > 0) {
+          exchange.sendResponseHeaders(500, -1);
+          exchange.close();
+          return;
+        }
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        start = Integer.parseInt(bounds[0]);
+        end = Integer.parseInt(bounds[1]);
+        code = 206;
+        exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + CONTENT.length);
+      }
+      exchange.sendResponseHeaders(code, end - start + 1);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(CONTENT, start, end - start + 1);
+      }
+    });
+    client = new AsyncRestClient(server.url(), 8);
+    target = File.createTempFile("download", ".bin");
+  }
+
+  @After
+  public void tearDown() {
+    client.shutDown();
+    target.delete();
+    RangeDownloader.progressFile(target).delete();
+  }
+
+  @Test
+  public void downloadsSegmentsConcurrently() throws IOException {
+    RangeDownloader downloader = RangeDownloader.builder().segmentSize(10000).parallelism(3).build();
+    File file = downloader.download(client, RestRequest.builder("file").build(), target).join();
+    assertArrayEquals(CONTENT, Files.readAllBytes(file.toPath()));
+    assertEquals(10, rangeRequests.get());
+    assertFalse(RangeDownloader.progressFile(target).exists());
+  }
+
+  @Test
+  public void resumesInterruptedDownloads() throws IOException {
+    failuresLeft.set(1);
+    RangeDownloader downloader = RangeDownloader.builder().segmentSize(10000).parallelism(1).build();
+    try {
+      downloader.download(client, RestRequest.builder("file").build(), target).join();
+      fail("the download should have failed");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+    assertTrue(RangeDownloader.progressFile(target).exists());
+    assertEquals(5, rangeRequests.get());
+
+    rangeRequests.set(0);
+    downloader.download(client, RestRequest.builder("file").build(), target).join();
+    assertArrayEquals(CONTENT, Files.readAllBytes(target.toPath()));
+    assertEquals(6, rangeRequests.get());
+    assertFalse(RangeDownloader.progressFile(target).exists());
+  }
+
+  @Test
+  public void downloadsWholeFileWithoutRangeSupport() throws IOException {
+    Files.write(target.toPath(), new byte[200000]);
+    RangeDownloader.builder().build().download(client, RestRequest.builder("file/plain").build(), target).join();
+    assertArrayEquals(CONTENT, Files.readAllBytes(target.toPath()));
+    assertEquals(0, rangeRequests.get());
+  }
+
+  @Test
+  public void downloadsWholeFileWhenProbeIsRefused() throws IOException {
+    RangeDownloader.builder().build().download(client, RestRequest.builder("file/nohead").build(), target).join();
+    assertArrayEquals(CONTENT, Files.readAllBytes(target.toPath()));
+    assertEquals(0, rangeRequests.get());
+  }
+}
@@ -0,0 +1,97 @@
+package com.bcp.http.restclient.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.bcp.http.restclient.LocalServer;
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.request.body.BodyProcessors;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+import com.bcp.http.restclient.util.IOUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ExchangeMetricsTest {
+
+  @Rule
+  public final LocalServer server = new LocalServer();
+
+  @Before
+  public void registerHandlers() {
+    server.handle("/echo", exchange -> {
+      byte[] body = IOUtils.toBytes(exchange.getRequestBody());
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      LocalServer.send(exchange, 200, body);
+    });
+  }
+
+  @Test
+  public void histogramPercentilesAreWithinBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 10000; i++) {
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+    }
+    assertEquals(10000, histogram.getCount());
+    assertEquals(10000, histogram.getMax(TimeUnit.MICROSECONDS));
+    assertWithin(5000, histogram.getPercentile(0.5, TimeUnit.MICROSECONDS), 0.07);
+    assertWithin(9900, histogram.getPercentile(0.99, TimeUnit.MICROSECONDS), 0.07);
+    assertEquals(10000, histogram.getPercentile(1, TimeUnit.MICROSECONDS));
+  }
+
+  @Test
+  public void bucketsCoverAllValues() {
+    for (long value : new long[] {0, 1, 31, 32, 33, 1000, 123456789, Long.MAX_VALUE}) {
+      int index = LatencyHistogram.index(value);
+      assertTrue(LatencyHistogram.upperBound(index) >= value);
+      assertTrue(index == 0 || LatencyHistogram.upperBound(index - 1) < value);
+    }
+  }
+
+  @Test
+  public void recordsPhasesOfEachExchange() {
+    ExchangeMetrics metrics = new ExchangeMetrics();
+    RestClient client = new RestClient(server.url());
+    client.setExchangeListener(metrics);
+    client.execute(RestRequest.builder("echo").parameter("id", 1).build(), ResponseHandlers.string());
+    client.execute(RestRequest.builder("echo").POST().body(BodyProcessors.string("payload")).build(),
+        ResponseHandlers.string());
+
+    ExchangeMetrics.EndpointMetrics echo = metrics.getEndpointMetrics("echo");
+    assertNotNull(echo);
+    assertEquals(2, echo.getTotal().getCount());
+    assertEquals(0, echo.getErrors());
+    assertEquals("payload".length(), echo.getBytesSent());
+    assertEquals("payload".length(), echo.getBytesReceived());
+    assertTrue(echo.getWait().getPercentile(0.5, TimeUnit.MILLISECONDS) >= 45);
+  }
+
+  @Test
+  public void groupsExchangesPastMaxKeys() {
+    ExchangeMetrics metrics = new ExchangeMetrics(ExchangeTimings::getEndpoint, 2);
+    RestClient client = new RestClient(server.url());
+    client.setExchangeListener(metrics);
+    for (int id = 1; id <= 4; id++) {
+      client.execute(RestRequest.builder("echo/" + id).build(), ResponseHandlers.string());
+    }
+    client.execute(RestRequest.builder("echo/1").build(), ResponseHandlers.string());
+
+    assertEquals(3, metrics.getEndpointMetrics().size());
+    assertEquals(2, metrics.getEndpointMetrics("echo/1").getTotal().getCount());
+    assertEquals(1, metrics.getEndpointMetrics("echo/2").getTotal().getCount());
+    assertEquals(2, metrics.getEndpointMetrics(ExchangeMetrics.OVERFLOW_KEY).getTotal().getCount());
+  }
+
+  private static void assertWithin(long expected, long actual, double tolerance) {
+    assertTrue(actual + " not within " + expected, Math.abs(actual - expected) <= expected * tolerance);
+  }
+}
@@ -0,0 +1,130 @@
+package com.bcp.http.restclient.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bcp.http.restclient.AsyncRestClient;
+import com.bcp.http.restclient.LocalServer;
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+  private final AtomicInteger served = new AtomicInteger();
+  @Rule
+  public final LocalServer server = new LocalServer();
+
+  @Before
+  public void registerHandlers() {
+    server.handle("/", exchange -> {
+      served.incrementAndGet();
+      if (exchange.getRequestURI().getPath().contains("throttled")) {
+        exchange.getResponseHeaders().add("Retry-After", "1");
+        exchange.sendResponseHeaders(429, -1);
+      } else {
+        exchange.sendResponseHeaders(204, -1);
+      }
+      exchange.close();
+    });
+  }
+
+  @Test
+  public void grantsBurstThenSustainedRate() throws InterruptedException {
+    RateLimiter limiter = new RateLimiter(20, 3);
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertFalse(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire(100, TimeUnit.MILLISECONDS));
+    assertEquals(4, limiter.getGranted());
+  }
+
+  @Test
+  public void pausesWhenThrottled() {
+    RateLimiter limiter = new RateLimiter(1000, 10);
+    limiter.pause(TimeUnit.SECONDS.toNanos(1));
+    assertFalse(limiter.tryAcquire());
+    assertTrue(limiter.reserve(TimeUnit.SECONDS.toNanos(2)) > TimeUnit.MILLISECONDS.toNanos(900));
+  }
+
+  @Test
+  public void rejectsOverQuotaRequestsWithoutWaiting() {
+    RestClient client = new RestClient(server.url());
+    client.setRateLimits(RateLimits.builder().endpoint("items/*", 1, 2).maxWait(0).build());
+    int limited = 0;
+    for (int i = 0; i < 4; i++) {
+      RestResponse<Void> response = client.execute(RestRequest.builder("items/" + i).build(), ResponseHandlers.noResponse());
+      if (response.getResponseCode() == RestResponse.RATE_LIMITED) {
+        limited++;
+      }
+    }
+    assertEquals(2, limited);
+    assertEquals(2, served.get());
+    assertEquals(204, client.execute(RestRequest.builder("other").build(), ResponseHandlers.noResponse()).getResponseCode());
+  }
+
+  @Test
+  public void rejectedRequestsDontConsumeOtherLimits() {
+    RestClient client = new RestClient(server.url());
+    RateLimits limits = RateLimits.builder().host(1, 3).endpoint("items/*", 1, 1).maxWait(0).build();
+    client.setRateLimits(limits);
+    assertEquals(204, client.execute(RestRequest.builder("items/1").build(), ResponseHandlers.noResponse()).getResponseCode());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(RestResponse.RATE_LIMITED,
+          client.execute(RestRequest.builder("items/1").build(), ResponseHandlers.noResponse()).getResponseCode());
+    }
+    assertEquals(204, client.execute(RestRequest.builder("other").build(), ResponseHandlers.noResponse()).getResponseCode());
+    assertEquals(204, client.execute(RestRequest.builder("other").build(), ResponseHandlers.noResponse()).getResponseCode());
+    assertEquals(3, limits.getHostLimiter().getGranted());
+  }
+
+  @Test
+  public void cancelledReservationsAreGivenBack() {
+    RateLimiter limiter = new RateLimiter(1, 1);
+    assertTrue(limiter.tryAcquire());
+    assertFalse(limiter.tryAcquire());
+    limiter.cancel();
+    assertTrue(limiter.tryAcquire());
+    assertEquals(1, limiter.getGranted());
+  }
+
+  @Test
+  public void adaptsToTooManyRequests() {
+    RestClient client = new RestClient(server.url());
+    RateLimits limits = RateLimits.builder().host(1000, 10).maxWait(100).build();
+    client.setRateLimits(limits);
+    assertEquals(429, client.execute(RestRequest.builder("throttled").build(), ResponseHandlers.noResponse()).getResponseCode());
+    assertEquals(RestResponse.RATE_LIMITED,
+        client.execute(RestRequest.builder("items").build(), ResponseHandlers.noResponse()).getResponseCode());
+    assertEquals(1, limits.getHostLimiter().getThrottled());
+  }
+
+  @Test
+  public void queuesAsyncRequestsWithoutHoldingWorkers() {
+    AsyncRestClient client = new AsyncRestClient(server.url(), 1);
+    client.setRateLimits(RateLimits.builder().host(20, 1).build());
+    long start = System.nanoTime();
+    List<CompletableFuture<RestResponse<Void>>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(client.executeAsync(RestRequest.builder("items").build()));
+    }
+    for (CompletableFuture<RestResponse<Void>> future : futures) {
+      assertEquals(204, future.join().getResponseCode());
+    }
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+    client.shutDown();
+  }
+}
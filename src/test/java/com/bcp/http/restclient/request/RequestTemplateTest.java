@@ -0,0 +1,56 @@
+package com.bcp.http.restclient.request;
+
+import static org.junit.Assert.assertEquals;
+
+import com.bcp.http.restclient.util.UrlEncoding;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class RequestTemplateTest {
+
+  @Test
+  public void expandsEncodedVariables() {
+    RequestTemplate template = RequestTemplate.compile("users/{id}/orders?status={status}&user={id}");
+    assertEquals(Arrays.asList("id", "status"), template.getVariables());
+    assertEquals("users/a%2Fb/orders?status=en%20curso&user=a%2Fb", template.expand("a/b", "en curso"));
+
+    Map<String, Object> values = new HashMap<>();
+    values.put("id", 7);
+    values.put("status", "año");
+    assertEquals("users/7/orders?status=a%C3%B1o&user=7", template.expand(values));
+  }
+
+  @Test
+  public void buildsRequestsWithTheDefaults() {
+    RequestTemplate template = RequestTemplate.compile("items/{id}",
+        RestRequest.builder("").PUT().acceptJson().timeout(500).build());
+    RestRequest request = template.request(3).parameter("b", 2).parameter("a", "x&y").build();
+    assertEquals("items/3?b=2&a=x%26y", request.getEndpoint());
+    assertEquals(HttpMethods.PUT, request.getMethod());
+    assertEquals(Integer.valueOf(500), request.getTimeout());
+    assertEquals(1, request.getHeaders().size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsMissingVariables() {
+    RequestTemplate.compile("users/{id}").expand(Collections.<String, Object>emptyMap());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnclosedVariables() {
+    RequestTemplate.compile("users/{id");
+  }
+
+  @Test
+  public void encodesOnlyReservedCharacters() {
+    String plain = "Plain-value_1.0~";
+    assertEquals(plain, UrlEncoding.encode(plain));
+    assertEquals("a%2Bb%3Dc%20d", UrlEncoding.encode("a+b=c d"));
+    assertEquals("%F0%9F%98%80", UrlEncoding.encode("😀"));
+  }
+}
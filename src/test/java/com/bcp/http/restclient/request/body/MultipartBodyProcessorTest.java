@@ -0,0 +1,97 @@
+package com.bcp.http.restclient.request.body;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.bcp.http.restclient.LocalServer;
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.util.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class MultipartBodyProcessorTest {
+
+  @Rule
+  public final LocalServer server = new LocalServer();
+
+  @Before
+  public void registerHandlers() {
+    server.handle("/upload", exchange -> {
+      byte[] body = IOUtils.toBytes(exchange.getRequestBody());
+      String length = exchange.getRequestHeaders().getFirst("Content-Length");
+      String response = exchange.getRequestHeaders().getFirst("Content-Type") + "\n"
+          + (length == null ? "chunked" : length) + "\n" + new String(body, "UTF-8");
+      LocalServer.send(exchange, 200, response.getBytes("UTF-8"));
+    });
+  }
+
+  @Test
+  public void sendsAllPartsWithPrecomputedLength() throws IOException {
+    File file = File.createTempFile("part", ".txt");
+    try {
+      Files.write(file.toPath(), "file content".getBytes());
+      MultipartBodyProcessor body = BodyProcessors.multipart()
+          .field("description", "lote \"1\"")
+          .file("document", file)
+          .bytes("data", "{}".getBytes(), "data.json", "application/json")
+          .build();
+      assertTrue(body.isReplayable());
+      String[] received = upload(body);
+      String boundary = body.getBoundary();
+      assertEquals("multipart/form-data;boundary=" + boundary, received[0]);
+      String expected = "--" + boundary + "\r\n"
+          + "Content-Disposition: form-data; name=\"description\"\r\n\r\n"
+          + "lote \"1\"\r\n"
+          + "--" + boundary + "\r\n"
+          + "Content-Disposition: form-data; name=\"document\";filename=\"" + file.getName() + "\"\r\n\r\n"
+          + "file content\r\n"
+          + "--" + boundary + "\r\n"
+          + "Content-Disposition: form-data; name=\"data\";filename=\"data.json\"\r\n"
+          + "Content-Type: application/json\r\n\r\n"
+          + "{}\r\n"
+          + "--" + boundary + "--\r\n";
+      assertEquals(expected, received[2]);
+      assertEquals(Integer.toString(expected.getBytes("UTF-8").length), received[1]);
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void streamsPartsOfUnknownLengthInChunks() {
+    MultipartBodyProcessor body = BodyProcessors.multipart()
+        .field("id", "7")
+        .stream("content", () -> new ByteArrayInputStream("streamed".getBytes()), "content.bin")
+        .build();
+    assertFalse(body.isReplayable());
+    String[] received = upload(body);
+    assertEquals("chunked", received[1]);
+    assertTrue(received[2].contains("\r\n\r\nstreamed\r\n--" + body.getBoundary() + "--\r\n"));
+  }
+
+  @Test
+  public void generatesRandomBoundaries() {
+    MultipartBodyProcessor first = BodyProcessors.multipart().field("a", "b").build();
+    MultipartBodyProcessor second = BodyProcessors.multipart().field("a", "b").build();
+    assertNotEquals(first.getBoundary(), second.getBoundary());
+  }
+
+  private String[] upload(BodyProcessor body) {
+    // the string handler would drop the line terminators of the body
+    RestResponse<byte[]> response = new RestClient(server.url()).execute(RestRequest.builder("upload").POST().body(body).build(),
+        IOUtils::toBytes);
+    return new String(response.getData(), StandardCharsets.UTF_8).split("\n", 3);
+  }
+}
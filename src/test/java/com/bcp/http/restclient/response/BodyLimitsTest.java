@@ -0,0 +1,124 @@
+package com.bcp.http.restclient.response;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bcp.http.restclient.LocalServer;
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+import com.bcp.http.restclient.util.BytesContainer;
+import com.bcp.http.restclient.util.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class BodyLimitsTest {
+
+  private static final byte[] PAGE = new byte[100000];
+
+  static {
+    Arrays.fill(PAGE, (byte) 'e');
+  }
+
+  @Rule
+  public final LocalServer server = new LocalServer();
+  private RestClient client;
+
+  @Before
+  public void setUp() {
+    server.handle("/error", exchange -> {
+      LocalServer.send(exchange, 500, PAGE);
+    });
+    server.handle("/small", exchange -> {
+      LocalServer.send(exchange, 400, "bad request".getBytes());
+    });
+    server.handle("/ok", exchange -> {
+      LocalServer.send(exchange, 200, PAGE);
+    });
+    client = new RestClient(server.url());
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+  }
+
+  @Test
+  public void keepsSmallErrorBodiesInMemory() {
+    RestResponse<String> response = client.execute(RestRequest.builder("small").build(), ResponseHandlers.string());
+    assertEquals(400, response.getResponseCode());
+    assertFalse(response.getErrorBody().isSpilled());
+    assertEquals("bad request", response.getErrorData(ResponseHandlers.string()));
+  }
+
+  @Test
+  public void spillsLargeErrorBodies() throws IOException {
+    client.setBodyLimits(BodyLimits.builder().memoryThreshold(1000).build());
+    RestResponse<String> response = client.execute(RestRequest.builder("error").build(), ResponseHandlers.string());
+    assertEquals(500, response.getResponseCode());
+    BytesContainer body = response.getErrorBody();
+    assertTrue(body.isSpilled());
+    assertEquals(PAGE.length, body.getLength());
+    assertEquals(PAGE.length, body.getFile().length());
+    try (InputStream is = body.openStream()) {
+      assertArrayEquals(PAGE, IOUtils.toBytes(is));
+    }
+    assertArrayEquals(PAGE, response.getRawErrorData());
+    assertEquals(PAGE.length, (long) response.getErrorData(ResponseHandlers.string()).length());
+
+    File file = body.getFile();
+    body.release();
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void truncatesErrorBodies() {
+    RestRequest request = RestRequest.builder("error")
+        .bodyLimits(BodyLimits.builder().maxErrorSize(5000).build())
+        .build();
+    RestResponse<String> response = client.execute(request, ResponseHandlers.string());
+    assertEquals(500, response.getResponseCode());
+    assertEquals(5000, response.getErrorBody().getLength());
+    assertFalse(response.getErrorBody().isSpilled());
+
+    // the connection dropped with the rest of the page doesn't affect the next request
+    response = client.execute(RestRequest.builder("small").build(), ResponseHandlers.string());
+    assertEquals("bad request", response.getErrorData(ResponseHandlers.string()));
+  }
+
+  @Test
+  public void failsSuccessfulBodiesLargerThanMaxSize() {
+    client.setBodyLimits(BodyLimits.builder().maxSize(1000).build());
+    RestResponse<String> response = client.execute(RestRequest.builder("ok").build(), ResponseHandlers.string());
+    assertEquals(200, response.getResponseCode());
+    assertTrue(response.isErrorResponse());
+    assertTrue(response.getErrorData(ResponseHandlers.string()).contains("larger than 1000 bytes"));
+
+    RestRequest request = RestRequest.builder("ok").bodyLimits(BodyLimits.defaults()).build();
+    assertEquals(PAGE.length, client.execute(request, ResponseHandlers.string()).getData().length());
+  }
+
+  @Test
+  public void spillsLargeSuccessfulBodies() throws IOException {
+    BytesContainer body = client.execute(RestRequest.builder("ok").build(), ResponseHandlers.bytes(1000)).getData();
+    try {
+      assertTrue(body.isSpilled());
+      assertArrayEquals(PAGE, body.getBytes());
+    } finally {
+      body.release();
+    }
+    body = client.execute(RestRequest.builder("ok").build(), ResponseHandlers.bytes(PAGE.length)).getData();
+    assertFalse(body.isSpilled());
+    assertArrayEquals(PAGE, body.getBytes());
+  }
+}
@@ -0,0 +1,96 @@
+package com.bcp.http.restclient.response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.bcp.http.restclient.LocalServer;
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+import com.bcp.http.restclient.transport.Transports;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+public class HttpHeadersTest {
+
+  @Rule
+  public final LocalServer server = new LocalServer();
+
+  @Test
+  public void looksUpNamesIgnoringCase() {
+    Map<String, List<String>> map = new LinkedHashMap<>();
+    map.put(null, Collections.singletonList("HTTP/1.1 200 OK"));
+    map.put("content-type", Collections.singletonList("application/json"));
+    map.put("Set-Cookie", Arrays.asList("a=1", "b=2"));
+    HttpHeaders headers = new HttpHeaders(map);
+
+    assertEquals(3, headers.size());
+    assertEquals("application/json", headers.getValue("Content-Type"));
+    assertEquals("application/json", headers.getValue("CONTENT-TYPE"));
+    assertEquals(Arrays.asList("a=1", "b=2"), headers.getAllValues("set-cookie"));
+    assertTrue(headers.hasValue("set-cookie"));
+    assertEquals(Arrays.asList("a=1", "b=2"), headers.getMap().get("SET-COOKIE"));
+    // common names are shared constants
+    assertSame(HttpHeaders.CONTENT_TYPE_HEADER, headers.getMap().keySet().iterator().next());
+  }
+
+  @Test
+  public void neverReturnsNullValueLists() {
+    HttpHeaders headers = HttpHeaders.empty();
+    assertTrue(headers.getAllValues("ETag").isEmpty());
+    assertTrue(headers.getAllValues(null).isEmpty());
+    assertNull(headers.getValue("ETag"));
+    assertFalse(headers.hasValue("ETag"));
+    assertTrue(headers.getMap().isEmpty());
+  }
+
+  @Test
+  public void updatesValuesOfTheSameNames() {
+    Map<String, List<String>> stored = new LinkedHashMap<>();
+    stored.put("Cache-Control", Collections.singletonList("max-age=60"));
+    stored.put("ETag", Collections.singletonList("\"v1\""));
+    stored.put("Content-Length", Collections.singletonList("42"));
+    Map<String, List<String>> updates = new LinkedHashMap<>();
+    updates.put("etag", Collections.singletonList("\"v2\""));
+    updates.put("content-length", Collections.singletonList("0"));
+    HttpHeaders headers = new HttpHeaders(stored).updatedWith(new HttpHeaders(updates), "Content-Length");
+
+    assertEquals("max-age=60", headers.getValue("Cache-Control"));
+    assertEquals(Collections.singletonList("\"v2\""), headers.getAllValues("ETag"));
+    assertEquals("42", headers.getValue("Content-Length"));
+  }
+
+  @Test
+  public void readsResponseHeaders() {
+    server.handle("/headers", exchange -> {
+      exchange.getResponseHeaders().add("Content-Type", "text/plain");
+      exchange.getResponseHeaders().add("X-Trace", "a");
+      exchange.getResponseHeaders().add("X-Trace", "b");
+      LocalServer.send(exchange, 200, "ok".getBytes());
+    });
+    String url = server.url();
+    for (RestClient client : Arrays.asList(new RestClient(url), new RestClient(url, Transports.nio()))) {
+      try {
+        RestResponse<String> response = client.execute(RestRequest.builder("headers").build(),
+            ResponseHandlers.string());
+        HttpHeaders headers = response.getHeaders();
+        assertEquals("text/plain", headers.getValue("content-type"));
+        assertEquals("2", headers.getValue("Content-Length"));
+        assertEquals(Arrays.asList("a", "b"), headers.getAllValues("x-trace"));
+        assertFalse(headers.getMap().containsKey(null));
+      } finally {
+        client.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.bcp.http.restclient.response.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.bcp.http.restclient.util.StreamObjectListParser;
+import com.bcp.http.restclient.util.StreamObjectParser;
+import com.bcp.http.restclient.util.StreamObjectSetParser;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ResponseHandlersTest {
+
+  private static final Gson GSON = new Gson();
+
+  private static final StreamObjectParser OBJECT_PARSER = new StreamObjectParser() {
+    @Override
+    public <T> T parse(Class<T> clazz, Reader reader) {
+      return GSON.fromJson(reader, clazz);
+    }
+  };
+
+  private static final StreamObjectListParser LIST_PARSER = new StreamObjectListParser() {
+    @Override
+    public <T> List<T> parse(Class<T> clazz, Reader reader) {
+      return GSON.fromJson(reader, TypeToken.getParameterized(List.class, clazz).getType());
+    }
+  };
+
+  private static final StreamObjectSetParser SET_PARSER = new StreamObjectSetParser() {
+    @Override
+    public <T> Set<T> parse(Class<T> clazz, Reader reader) {
+      return GSON.fromJson(reader, TypeToken.getParameterized(Set.class, clazz).getType());
+    }
+  };
+
+  @Test
+  public void parsesObjectFromStream() throws IOException {
+    Item item = ResponseHandlers.streamedObject(Item.class, OBJECT_PARSER)
+        .convert(stream("{\"id\":1,\"name\":\"caf\u00e9\"}"));
+    assertEquals(1, item.id);
+    assertEquals("caf\u00e9", item.name);
+  }
+
+  @Test
+  public void parsesListFromStream() throws IOException {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 5000; i++) {
+      json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append('}');
+    }
+    List<Item> items = ResponseHandlers.streamedObjectList(Item.class, LIST_PARSER)
+        .convert(stream(json.append(']').toString()));
+    assertEquals(5000, items.size());
+    assertEquals(4999, items.get(4999).id);
+  }
+
+  @Test
+  public void parsesSetFromStream() throws IOException {
+    Set<String> names = ResponseHandlers.streamedObjectSet(String.class, SET_PARSER)
+        .convert(stream("[\"a\",\"b\",\"a\"]"));
+    Set<String> expected = new HashSet<>();
+    expected.add("a");
+    expected.add("b");
+    assertEquals(expected, names);
+  }
+
+  @Test
+  public void decodesWithGivenCharset() throws IOException {
+    Item item = ResponseHandlers.streamedObject(Item.class, OBJECT_PARSER, StandardCharsets.ISO_8859_1)
+        .convert(new ByteArrayInputStream("{\"name\":\"caf\u00e9\"}".getBytes(StandardCharsets.ISO_8859_1)));
+    assertEquals("caf\u00e9", item.name);
+  }
+
+  @Test
+  public void handsEmptyBodiesToTheParser() throws IOException {
+    assertNull(ResponseHandlers.streamedObject(Item.class, OBJECT_PARSER).convert(stream("")));
+    assertNull(ResponseHandlers.streamedObjectList(Item.class, LIST_PARSER).convert(stream("")));
+    assertNull(ResponseHandlers.streamedObjectSet(Item.class, SET_PARSER).convert(stream("")));
+    assertTrue(ResponseHandlers.streamedObjectList(Item.class, LIST_PARSER).convert(stream("[]")).isEmpty());
+  }
+
+  private static ByteArrayInputStream stream(String body) {
+    return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static class Item {
+    int id;
+    String name;
+  }
+}
@@ -0,0 +1,152 @@
+package com.bcp.http.restclient.response.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.bcp.http.restclient.AsyncRestClient;
+import com.bcp.http.restclient.LocalServer;
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.response.BodyLimits;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.transport.Transports;
+import com.bcp.http.restclient.util.ObjectParser;
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class StreamingHandlersTest {
+
+  @Rule
+  public final LocalServer server = new LocalServer();
+
+  @Before
+  public void registerHandlers() {
+    server.handle("/records", exchange -> {
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream os = exchange.getResponseBody()) {
+        for (int i = 0; i < 1000; i++) {
+          os.write(("{\"id\":" + i + "}\n").getBytes());
+        }
+      }
+    });
+    server.handle("/endless", exchange -> {
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream os = exchange.getResponseBody()) {
+        for (int i = 0; ; i++) {
+          os.write(("data: " + i + "\n\n").getBytes());
+          os.flush();
+          Thread.sleep(5);
+        }
+      } catch (IOException | InterruptedException e) {
+        // the client closed the connection
+      }
+    });
+  }
+
+  @Test
+  public void parsesServerSentEvents() throws IOException {
+    String stream = ": keep-alive\r\n"
+        + "id: 1\r\nevent: update\r\ndata: first\r\ndata:second\r\n\r\n"
+        + "retry: 3000\ndata: {\"a\":1}\n\n"
+        + "event: ignored without data\n\n"
+        + "data: incomplete";
+    List<ServerSentEvent> events = new ArrayList<>();
+    long count = StreamingHandlers.serverSentEvents(events::add)
+        .convert(new ByteArrayInputStream(stream.getBytes()));
+    assertEquals(2, count);
+    assertEquals("1", events.get(0).getId());
+    assertEquals("update", events.get(0).getEvent());
+    assertEquals("first\nsecond", events.get(0).getData());
+    assertEquals("1", events.get(1).getId());
+    assertEquals("message", events.get(1).getEvent());
+    assertEquals("{\"a\":1}", events.get(1).getData());
+    assertEquals(3000, events.get(1).getRetry());
+  }
+
+  @Test
+  public void deliversJsonRecords() {
+    final Gson gson = new Gson();
+    List<Record> records = new ArrayList<>();
+    RestResponse<Long> response = new RestClient(server.url()).execute(RestRequest.builder("records").build(),
+        StreamingHandlers.ndjson(Record.class, new ObjectParser() {
+          @Override
+          public <T> T parse(Class<T> clazz, String data) {
+            return gson.fromJson(data, clazz);
+          }
+        }, records::add));
+    assertEquals(Long.valueOf(1000), response.getData());
+    assertEquals(999, records.get(999).id);
+  }
+
+  @Test
+  public void boundsRecordLength() {
+    RestResponse<Long> response = new RestClient(server.url()).execute(RestRequest.builder("records").build(),
+        StreamingHandlers.lines(line -> true, 4));
+    assertTrue(response.isErrorResponse());
+  }
+
+  @Test
+  public void stopsEndlessStreamsEarly() {
+    stopsEarly(new RestClient(server.url()));
+    stopsEarly(new RestClient(server.url(), Transports.nio()));
+  }
+
+  @Test
+  public void stopsBoundedStreamsEarly() {
+    for (RestClient client : Arrays.asList(new RestClient(server.url()), new RestClient(server.url(), Transports.nio()))) {
+      client.setBodyLimits(BodyLimits.builder().maxSize(1024 * 1024).build());
+      stopsEarly(client);
+    }
+  }
+
+  @Test
+  public void iteratesWithBackpressure() {
+    AsyncRestClient client = new AsyncRestClient(server.url(), 2);
+    try {
+      RecordQueue<String> lines = new RecordQueue<>(8);
+      client.executeAsync(RestRequest.builder("records").build(), StreamingHandlers.lines(lines))
+          .whenComplete(lines::complete);
+      int count = 0;
+      for (String line : lines) {
+        assertEquals("{\"id\":" + count + "}", line);
+        count++;
+      }
+      assertEquals(1000, count);
+
+      RecordQueue<ServerSentEvent> events = new RecordQueue<>(8);
+      client.executeAsync(RestRequest.builder("endless").build(), StreamingHandlers.serverSentEvents(events))
+          .whenComplete(events::complete);
+      assertEquals("0", events.next().getData());
+      events.close();
+      assertTrue(!events.hasNext());
+    } finally {
+      client.shutDown();
+    }
+  }
+
+  private void stopsEarly(RestClient client) {
+    List<ServerSentEvent> events = new ArrayList<>();
+    long start = System.nanoTime();
+    RestResponse<Long> response = client.execute(RestRequest.builder("endless").build(),
+        StreamingHandlers.serverSentEvents(event -> events.add(event) && events.size() < 3));
+    assertEquals(Long.valueOf(3), response.getData());
+    assertEquals("2", events.get(2).getData());
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    client.close();
+  }
+
+  static class Record {
+    int id;
+  }
+}
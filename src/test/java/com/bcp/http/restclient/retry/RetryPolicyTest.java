@@ -0,0 +1,89 @@
+package com.bcp.http.restclient.retry;
+
+import static org.junit.Assert.assertEquals;
+
+import com.bcp.http.restclient.LocalServer;
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.request.body.BodyProcessors;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+import com.bcp.http.restclient.util.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+  private final AtomicInteger attempts = new AtomicInteger();
+  private volatile int failures;
+  @Rule
+  public final LocalServer server = new LocalServer();
+  private RestClient client;
+
+  @Before
+  public void setUp() {
+    server.handle("/flaky", exchange -> {
+      byte[] body = IOUtils.toBytes(exchange.getRequestBody());
+      boolean fail = attempts.incrementAndGet() <= failures;
+      byte[] response = fail ? new byte[0] : body.length > 0 ? body : "ok".getBytes();
+      if (fail) {
+        exchange.getResponseHeaders().add("Retry-After", "0");
+      }
+      LocalServer.send(exchange, fail ? 503 : 200, response);
+    });
+    client = new RestClient(server.url());
+    client.setRetryPolicy(RetryPolicy.builder().maxAttempts(3).backoff(10, 2).build());
+  }
+
+  @Test
+  public void retriesIdempotentRequests() {
+    failures = 2;
+    RestResponse<String> response = client.execute(RestRequest.builder("flaky").build(), ResponseHandlers.string());
+    assertEquals("ok", response.getData());
+    assertEquals(3, attempts.get());
+    assertEquals(2, client.getRetryBudget().getRetries());
+  }
+
+  @Test
+  public void stopsAfterMaxAttempts() {
+    failures = 5;
+    RestResponse<String> response = client.execute(RestRequest.builder("flaky").build(), ResponseHandlers.string());
+    assertEquals(503, response.getResponseCode());
+    assertEquals(3, attempts.get());
+  }
+
+  @Test
+  public void doesNotRetryNonIdempotentRequestsByDefault() {
+    failures = 1;
+    RestResponse<String> response = client.execute(
+        RestRequest.builder("flaky").POST().body(BodyProcessors.string("data")).build(), ResponseHandlers.string());
+    assertEquals(503, response.getResponseCode());
+    assertEquals(1, attempts.get());
+  }
+
+  @Test
+  public void replaysBufferedBodies() {
+    failures = 1;
+    RestRequest request = RestRequest.builder("flaky").PUT()
+        .body(BodyProcessors.replayable(BodyProcessors.stream(() -> new ByteArrayInputStream("data".getBytes()))))
+        .build();
+    assertEquals("data", client.execute(request, ResponseHandlers.string()).getData());
+    assertEquals(2, attempts.get());
+  }
+
+  @Test
+  public void budgetLimitsRetries() {
+    failures = 100;
+    client.setRetryBudget(new RetryBudget(4, 0.1));
+    for (int i = 0; i < 5; i++) {
+      client.execute(RestRequest.builder("flaky").build(), ResponseHandlers.string());
+    }
+    assertEquals(1, client.getRetryBudget().getRetries());
+    assertEquals(6, attempts.get());
+  }
+}
@@ -0,0 +1,224 @@
+package com.bcp.http.restclient.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.bcp.http.restclient.LocalServer;
+import com.bcp.http.restclient.RestClient;
+import com.bcp.http.restclient.request.RestRequest;
+import com.bcp.http.restclient.request.body.AbstractBodyProcessor;
+import com.bcp.http.restclient.request.body.BodyProcessors;
+import com.bcp.http.restclient.response.RestResponse;
+import com.bcp.http.restclient.response.handler.ResponseHandlers;
+import com.bcp.http.restclient.util.IOUtils;
+import com.bcp.http.restclient.util.ISSupplier;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class NioTransportTest {
+
+  private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+  @Rule
+  public final LocalServer server = new LocalServer();
+  private RestClient client;
+
+  @Before
+  public void setUp() {
+    server.handle("/echo", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        byte[] body = IOUtils.toBytes(exchange.getRequestBody());
+        LocalServer.send(exchange, 200, (exchange.getRequestMethod() + ":" + new String(body)).getBytes());
+      }
+    });
+    server.handle("/chunked", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream os = exchange.getResponseBody()) {
+          for (int i = 0; i < 1000; i++) {
+            os.write("0123456789".getBytes());
+          }
+        }
+      }
+    });
+    server.handle("/missing", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        LocalServer.send(exchange, 404, "not here".getBytes());
+      }
+    });
+    server.handle("/framing", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        IOUtils.toBytes(exchange.getRequestBody());
+        LocalServer.send(exchange, 200, (exchange.getRequestHeaders().getFirst("Content-Length") + ","
+            + exchange.getRequestHeaders().getFirst("Transfer-Encoding")).getBytes());
+      }
+    });
+    client = new RestClient(server.url(), Transports.nio());
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+  }
+
+  @Test
+  public void reusesConnections() {
+    for (int i = 0; i < 5; i++) {
+      RestResponse<String> response = client.execute(
+          RestRequest.builder("echo").build(), ResponseHandlers.string());
+      assertTrue(response.isSuccessful());
+      assertEquals("GET:", response.getData());
+    }
+    assertEquals(1, clientPorts.size());
+    PoolStats stats = ((NioTransport) client.getTransport()).getConnectionPool().getStats();
+    assertEquals(0, stats.getLeased());
+    assertEquals(1, stats.getIdle());
+    assertEquals(5, stats.getCheckouts());
+    assertEquals(1, stats.getCreated());
+  }
+
+  @Test
+  public void timesOutWhenPoolIsExhausted() throws IOException {
+    NioTransport transport = Transports.nio(
+        ConnectionPool.builder().maxConnectionsPerHost(1).maxWait(50).build());
+    URL url = new URL(server.url() + "/echo");
+    HttpURLConnection first = transport.openConnection(url);
+    assertEquals(200, first.getResponseCode());
+    try {
+      transport.openConnection(url).getResponseCode();
+      fail("the pool should be exhausted");
+    } catch (IOException e) {
+      assertEquals(1, transport.getConnectionPool().getStats().getCheckoutTimeouts());
+    } finally {
+      transport.release(first, false);
+      transport.close();
+    }
+  }
+
+  @Test
+  public void sendsBody() {
+    RestResponse<String> response = client.execute(
+        RestRequest.builder("/echo").POST().body(BodyProcessors.string("hello")).build(),
+        ResponseHandlers.string());
+    assertEquals(200, response.getResponseCode());
+    assertEquals("POST:hello", response.getData());
+  }
+
+  @Test
+  public void streamsBodyOfUnknownLength() {
+    final byte[] content = new byte[30000];
+    Arrays.fill(content, (byte) 'x');
+    RestResponse<String> response = client.execute(
+        RestRequest.builder("echo").PUT().body(BodyProcessors.stream(new ISSupplier() {
+          @Override
+          public InputStream get() {
+            return new ByteArrayInputStream(content);
+          }
+        }, 4096)).build(),
+        ResponseHandlers.string());
+    assertEquals("PUT:" + new String(content), response.getData());
+  }
+
+  @Test
+  public void transfersFiles() throws IOException {
+    byte[] content = new byte[200000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) ('a' + i % 26);
+    }
+    File file = File.createTempFile("upload", ".txt");
+    try {
+      Files.write(file.toPath(), content);
+      RestResponse<String> response = client.execute(
+          RestRequest.builder("echo").POST().body(BodyProcessors.file(file)).build(),
+          ResponseHandlers.string());
+      assertEquals("POST:" + new String(content), response.getData());
+
+      response = client.execute(
+          RestRequest.builder("echo").POST().body(BodyProcessors.multipartFile(file, "part")).build(),
+          ResponseHandlers.string());
+      // the string handler drops the line terminators of the multipart envelope
+      assertTrue(response.getData().contains("name=\"part\";filename=\"" + file.getName() + "\""
+          + new String(content) + "--"));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void chunksOnlyTheBodiesThatOptIn() {
+    AbstractBodyProcessor custom = new AbstractBodyProcessor() {
+      @Override
+      protected void writeContent(OutputStream oStream) throws IOException {
+        oStream.write("custom".getBytes());
+      }
+    };
+    for (RestClient restClient : Arrays.asList(client, new RestClient(server.url()))) {
+      RestResponse<String> response = restClient.execute(
+          RestRequest.builder("framing").POST().body(custom).build(), ResponseHandlers.string());
+      assertEquals("6,null", response.getData());
+      response = restClient.execute(
+          RestRequest.builder("framing").POST().body(BodyProcessors.stream(new ISSupplier() {
+            @Override
+            public InputStream get() {
+              return new ByteArrayInputStream("streamed".getBytes());
+            }
+          }, 4096)).build(), ResponseHandlers.string());
+      assertEquals("null,chunked", response.getData());
+    }
+  }
+
+  @Test
+  public void releasesConnectionWhenHeadCantBeWritten() throws IOException {
+    File file = File.createTempFile("upload", ".txt");
+    try {
+      Files.write(file.toPath(), "hello".getBytes());
+      client.execute(RestRequest.builder("echo").POST().header("X-Note", "a\r\nb")
+          .body(BodyProcessors.file(file)).build(), ResponseHandlers.string());
+      fail("the header value should be rejected");
+    } catch (IllegalArgumentException e) {
+      PoolStats stats = ((NioTransport) client.getTransport()).getConnectionPool().getStats();
+      assertEquals(0, stats.getLeased());
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void readsChunkedBody() {
+    RestResponse<String> response = client.execute(
+        RestRequest.builder("chunked").build(), ResponseHandlers.string());
+    assertEquals(10000, response.getData().length());
+  }
+
+  @Test
+  public void readsErrorBody() {
+    RestResponse<String> response = client.execute(
+        RestRequest.builder("missing").build(), ResponseHandlers.string());
+    assertTrue(response.isErrorResponse());
+    assertEquals(404, response.getResponseCode());
+    assertEquals("not here", response.getErrorData(ResponseHandlers.string()));
+  }
+}
@@ -0,0 +1,50 @@
+package com.bcp.http.restclient.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IOUtilsTest {
+
+  @Test
+  public void readsAllBytes() throws IOException {
+    Random random = new Random(42);
+    for (int size : new int[] {0, 1, 1023, 1024, 8192, 8193, 100000}) {
+      byte[] data = new byte[size];
+      random.nextBytes(data);
+      assertArrayEquals(data, IOUtils.toBytes(new ByteArrayInputStream(data), 1024));
+    }
+  }
+
+  @Test
+  public void copiesAllBytes() throws IOException {
+    byte[] data = new byte[20000];
+    new Random(7).nextBytes(data);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    IOUtils.copy(new ByteArrayInputStream(data), os);
+    assertArrayEquals(data, os.toByteArray());
+  }
+
+  @Test
+  public void joinsLines() throws IOException {
+    assertEquals("abc", IOUtils.toString(new ByteArrayInputStream("a\r\nb\nc\n".getBytes())));
+  }
+
+  @Test
+  public void reusesReleasedBuffers() {
+    BufferPool pool = new BufferPool(new int[] {512, 4096}, 2);
+    byte[] buffer = pool.acquire(1000);
+    assertEquals(4096, buffer.length);
+    pool.release(buffer);
+    assertSame(buffer, pool.acquire(4096));
+    assertEquals(1, pool.getHits());
+    assertEquals(1, pool.getMisses());
+  }
+}